@@ -0,0 +1,263 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import blanco.rest.api.TelegramSample;
+import blanco.rest.common.ApiBase;
+import blanco.rest.common.ApiHttpClientTransport;
+import blanco.rest.common.ApiHttpTransport;
+import blanco.rest.common.ApiMetrics;
+import blanco.rest.common.ApiTelegramMetrics;
+import blanco.sample.restphp.RestSampleRequest;
+import blanco.sample.restphp.RestSampleResponse;
+import blanco.sample.valueobject.ObjectSample;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 実行時の送信処理 (ApiBase.send) のベンチマークです。
+ *
+ * 自動生成された電文 (RestSampleRequest / RestSampleResponse) を次の 3 種類の形で送信し、
+ * スループット、処理時間のパーセンタイル、1 回の送信あたりのメモリ割り当て量を計測します。
+ * <ul>
+ * <li>flat: 文字列・数値・真偽値の項目だけ
+ * <li>nested: TestClient と同様に ObjectSample を入れ子にしたもの
+ * <li>large: ObjectSample の大きな配列を持つもの
+ * </ul>
+ * 送信先は次のとおりです。
+ * <ul>
+ * <li>local: トランスポートを設定しない送信。要求電文の検査・検証・JSON への変換と
+ * 応答電文の生成だけを計測します。
+ * <li>http: 同じ JVM 内で起動した HTTP サーバ (com.sun.net.httpserver) に
+ * ApiHttpTransport で送信します。サーバは電文の種類ごとに用意した応答を返します。
+ * <li>httpclient: http と同じサーバに ApiHttpClientTransport (java.net.http.HttpClient) で
+ * sendAsync し、応答を待ちます。HttpClient の無い JVM では計測しません。
+ * <li>http+metrics: http と同じ送信を、ApiMetrics で計測値を記録しながら行います。
+ * 記録した計測値は最後に出力します。
+ * </ul>
+ * メモリ割り当て量は送信したスレッドの分だけで、サーバ側の割り当ては含みません。
+ *
+ * 使い方: java blanco.rest.bench.ApiBenchmark [large の配列の要素数] (標準は 1000)。
+ * ant -f build.xml bench-api からも実行できます。
+ */
+public class ApiBenchmark {
+    /**
+     * ベンチマークを実行します。
+     *
+     * @param args
+     *            large の配列の要素数 (省略可)。
+     * @throws Exception
+     *             処理に失敗した場合。
+     */
+    public static void main(final String[] args) throws Exception {
+        final int arraySize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        final String[] cases = { "flat", "nested", "large" };
+        final RestSampleRequest[] requests = { createRequest(0, false),
+                createRequest(2, true), createRequest(arraySize, true) };
+        final RestSampleResponse[] responses = { createResponse(0, false),
+                createResponse(2, true), createResponse(arraySize, true) };
+
+        // com.sun.net.httpserver は応答のヘッダと本文を別々に書き込むため、Nagle アルゴリズムと
+        // クライアントの遅延 ACK が重なると 1 回の送信ごとに約 40ms 待たされます。
+        // クライアント側の処理時間を計測するため、サーバ側では無効にします。
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        // ApiHttpTransport はシステムプロパティを変更しないため、keep-alive キャッシュに
+        // プールサイズ分の接続を保持するよう、ここで指定します。
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections",
+                    String.valueOf(ApiHttpTransport.DEFAULT_POOL_SIZE));
+        }
+
+        final ObjectMapper mapper = new ObjectMapper();
+        final HttpServer server = HttpServer.create(new InetSocketAddress(
+                "127.0.0.1", 0), 0);
+        for (int index = 0; index < cases.length; index++) {
+            server.createContext("/" + cases[index], new CannedHandler(
+                    mapper.writeValueAsBytes(responses[index])));
+        }
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+
+        final PrintStream out = System.out;
+        out.println("ApiBenchmark: large = " + arraySize
+                + " elements, server = http://127.0.0.1:"
+                + server.getAddress().getPort());
+
+        try {
+            final BenchmarkRunner runner = new BenchmarkRunner(out,
+                    ApiBenchmark.class, args);
+            runner.printHeader();
+
+            for (int index = 0; index < cases.length; index++) {
+                final TelegramSample api = new TelegramSample();
+                final RestSampleRequest request = requests[index];
+                runner.run("send/local " + cases[index], new BenchmarkRunner.Operation() {
+                    public Object run() throws Exception {
+                        return api.send(request);
+                    }
+                });
+            }
+
+            for (int index = 0; index < cases.length; index++) {
+                final TelegramSample api = new TelegramSample();
+                api.setTransport(new ApiHttpTransport("http://127.0.0.1:"
+                        + server.getAddress().getPort() + "/" + cases[index]));
+                final RestSampleRequest request = requests[index];
+                runner.run("send/http " + cases[index], new BenchmarkRunner.Operation() {
+                    public Object run() throws Exception {
+                        return api.send(request);
+                    }
+                });
+            }
+
+            for (int index = 0; ApiHttpClientTransport.isSupported() && index < cases.length; index++) {
+                final TelegramSample api = new TelegramSample();
+                api.setTransport(new ApiHttpClientTransport("http://127.0.0.1:"
+                        + server.getAddress().getPort() + "/" + cases[index]));
+                final RestSampleRequest request = requests[index];
+                runner.run("sendAsync/httpclient " + cases[index], new BenchmarkRunner.Operation() {
+                    public Object run() throws Exception {
+                        return api.sendAsync(request).get();
+                    }
+                });
+            }
+
+            // 計測値の記録による送信処理への影響を確認します。
+            final ApiMetrics metrics = new ApiMetrics();
+            ApiBase.setMetricsRegistry(metrics);
+            for (int index = 0; index < cases.length; index++) {
+                final TelegramSample api = new TelegramSample();
+                api.setTransport(new ApiHttpTransport("http://127.0.0.1:"
+                        + server.getAddress().getPort() + "/" + cases[index]));
+                final RestSampleRequest request = requests[index];
+                runner.run("send/http+metrics " + cases[index], new BenchmarkRunner.Operation() {
+                    public Object run() throws Exception {
+                        return api.send(request);
+                    }
+                });
+            }
+            ApiBase.setMetricsRegistry(null);
+            for (ApiTelegramMetrics telegram : metrics.getAll().values()) {
+                out.println(telegram);
+            }
+        } finally {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 要求電文を作成します。
+     *
+     * @param argArraySize
+     *            配列 (field5) の要素数。
+     * @param argNested
+     *            ObjectSample を入れ子にするかどうか。
+     * @return 要求電文。
+     */
+    private static RestSampleRequest createRequest(final int argArraySize,
+            final boolean argNested) {
+        final RestSampleRequest request = new RestSampleRequest();
+        request.setField1("Field1");
+        request.setField2(99);
+        request.setField3(false);
+        request.setField4(9.9999);
+        if (argNested) {
+            final ArrayList<ObjectSample> arrayObj = new ArrayList<ObjectSample>(argArraySize);
+            for (int index = 0; index < argArraySize; index++) {
+                arrayObj.add(createObject(index));
+            }
+            request.setField5(arrayObj);
+            request.setObjectSample(createObject(-1));
+        }
+        return request;
+    }
+
+    /**
+     * 応答電文を作成します。
+     *
+     * @param argArraySize
+     *            配列 (resultField5) の要素数。
+     * @param argNested
+     *            ObjectSample を入れ子にするかどうか。
+     * @return 応答電文。
+     */
+    private static RestSampleResponse createResponse(final int argArraySize,
+            final boolean argNested) {
+        final RestSampleResponse response = new RestSampleResponse();
+        response.setResultField1("ok");
+        response.setResultField2(42);
+        response.setResultField3(true);
+        response.setResultField4(1.5);
+        if (argNested) {
+            final ArrayList<ObjectSample> arrayObj = new ArrayList<ObjectSample>(argArraySize);
+            for (int index = 0; index < argArraySize; index++) {
+                arrayObj.add(createObject(index));
+            }
+            response.setResultField5(arrayObj);
+            response.setObjectSample(createObject(-1));
+        }
+        return response;
+    }
+
+    /**
+     * ObjectSample を作成します。
+     */
+    private static ObjectSample createObject(final int argIndex) {
+        final ObjectSample obj = new ObjectSample();
+        obj.setbooleanField1(true);
+        obj.setstringField1("hoge" + argIndex);
+        obj.setintField1(argIndex);
+        obj.setdoubleField1(argIndex * 0.5);
+        return obj;
+    }
+
+    /**
+     * 要求を読み捨てて、決まった応答を返すハンドラです。
+     */
+    private static final class CannedHandler implements HttpHandler {
+        private final byte[] fResponse;
+
+        CannedHandler(final byte[] argResponse) {
+            fResponse = argResponse;
+        }
+
+        public void handle(final HttpExchange argExchange) throws IOException {
+            final InputStream in = argExchange.getRequestBody();
+            final byte[] buf = new byte[8192];
+            while (in.read(buf) > 0) {
+                // 要求は読み捨てます。
+            }
+            in.close();
+
+            argExchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            argExchange.sendResponseHeaders(200, fResponse.length);
+            final OutputStream outStream = argExchange.getResponseBody();
+            outStream.write(fResponse);
+            outStream.close();
+        }
+    }
+}
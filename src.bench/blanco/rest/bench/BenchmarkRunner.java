@@ -0,0 +1,436 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ベンチマークを実行する簡易ハーネスです。
+ *
+ * 計測対象の処理をウォームアップの後、一定時間ずつ繰り返し実行し、スループット (ops/s)、
+ * 1 回あたりの処理時間の分布 (平均、50/90/99 パーセンタイル、最大) と、
+ * 1 回あたりのメモリ割り当て量を報告します。
+ *
+ * メモリ割り当て量は HotSpot の com.sun.management.ThreadMXBean から取得するため、
+ * 呼び出し元のスレッドの分だけを含み、ワーカースレッドでの割り当ては含みません。
+ * 取得できない JVM では -1 を報告します。
+ *
+ * 繰り返し回数と時間は次のシステムプロパティで指定します。
+ * <ul>
+ * <li>bench.warmup: ウォームアップの回数 (標準 3)
+ * <li>bench.iterations: 計測の回数 (標準 5)
+ * <li>bench.time: 1 回のウォームアップ・計測の時間 (ミリ秒、標準 1000)
+ * <li>bench.forks: 計測ごとに起動する JVM の数 (標準 0)。0 の場合は全ての計測を同じ JVM で行います。
+ * </ul>
+ *
+ * bench.forks を指定すると、計測ごとに新しい JVM を起動してその計測だけを実行させ、
+ * JVM ごとの結果を 1 行ずつ出力します。先に実行した計測の JIT コンパイルの結果や
+ * プロファイル、ヒープの状態が後の計測に影響しなくなります。
+ * 新しい JVM はベンチマークの main を同じ引数で実行し、bench.only で指定された計測以外を
+ * 読み飛ばします。このため、計測以外の準備処理 (定義書の作成など) は JVM ごとに行われます。
+ *
+ * 処理の結果は JMH の Blackhole と同様に、volatile 変数との比較で消費して最適化で
+ * 処理が省かれないようにします。ただし JMH とは異なり、計測値の誤差 (信頼区間) は報告せず、
+ * タイマーの呼び出しのコストも処理時間に含みます。数マイクロ秒より短い処理の計測には向きません。
+ */
+public class BenchmarkRunner {
+    /**
+     * 計測対象の処理です。
+     */
+    public interface Operation {
+        /**
+         * 処理を 1 回実行します。
+         *
+         * @return 処理の結果。最適化で処理が省かれないよう、ハーネスが保持します。
+         * @throws Exception
+         *             処理に失敗した場合。
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * 計測結果です。
+     */
+    public static class Result {
+        private final String fName;
+        private final long[] fSamples;
+        private final long fTotalNanos;
+        private final long fAllocatedBytes;
+
+        Result(final String argName, final long[] argSamples,
+                final long argTotalNanos, final long argAllocatedBytes) {
+            fName = argName;
+            fSamples = argSamples;
+            fTotalNanos = argTotalNanos;
+            fAllocatedBytes = argAllocatedBytes;
+        }
+
+        /**
+         * @return 計測の名前。
+         */
+        public String getName() {
+            return fName;
+        }
+
+        /**
+         * @return 計測した処理の回数。
+         */
+        public int getCount() {
+            return fSamples.length;
+        }
+
+        /**
+         * @return 1 秒あたりの処理回数。
+         */
+        public double getOpsPerSecond() {
+            return fTotalNanos == 0 ? 0 : fSamples.length * 1e9 / fTotalNanos;
+        }
+
+        /**
+         * @return 1 回あたりの平均処理時間 (ナノ秒)。
+         */
+        public double getMeanNanos() {
+            return fSamples.length == 0 ? 0 : (double) fTotalNanos / fSamples.length;
+        }
+
+        /**
+         * 処理時間のパーセンタイルを取得します。
+         *
+         * @param argPercentile
+         *            パーセンタイル (0 より大きく 100 以下)。
+         * @return 処理時間 (ナノ秒)。
+         */
+        public long getPercentileNanos(final double argPercentile) {
+            if (fSamples.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(argPercentile / 100.0 * fSamples.length) - 1;
+            return fSamples[Math.max(0, Math.min(index, fSamples.length - 1))];
+        }
+
+        /**
+         * @return 1 回あたりのメモリ割り当て量 (バイト)。取得できない場合は -1。
+         */
+        public long getAllocatedBytesPerOperation() {
+            if (fAllocatedBytes < 0 || fSamples.length == 0) {
+                return -1;
+            }
+            return fAllocatedBytes / fSamples.length;
+        }
+    }
+
+    /**
+     * ウォームアップの回数。
+     */
+    private final int fWarmup = Integer.getInteger("bench.warmup", 3).intValue();
+
+    /**
+     * 計測の回数。
+     */
+    private final int fIterations = Integer.getInteger("bench.iterations", 5).intValue();
+
+    /**
+     * 1 回のウォームアップ・計測の時間 (ナノ秒)。
+     */
+    private final long fIterationNanos = Long.getLong("bench.time", 1000).longValue() * 1000000L;
+
+    /**
+     * 結果の出力先。
+     */
+    private final PrintStream fOut;
+
+    /**
+     * 計測ごとに起動する JVM の数。
+     */
+    private final int fForks = Integer.getInteger("bench.forks", 0).intValue();
+
+    /**
+     * この JVM で実行する計測の名前。null の場合は全ての計測を実行します。
+     */
+    private final String fOnly = System.getProperty("bench.only");
+
+    /**
+     * 結果の名前に付ける JVM の番号。起動された JVM でだけ指定されます。
+     */
+    private final String fForkLabel = System.getProperty("bench.fork");
+
+    /**
+     * ベンチマークの main を持つクラス。null の場合は JVM を起動しません。
+     */
+    private final Class<?> fMainClass;
+
+    /**
+     * ベンチマークの main の引数。
+     */
+    private final String[] fMainArgs;
+
+    /**
+     * 処理の結果と比較する値です。処理の結果と一致することはありません。
+     */
+    private volatile Object fSinkGuard = new Object();
+
+    /**
+     * 処理の結果がありえない値と一致した場合の書き込み先です。
+     */
+    private volatile Object fSink = null;
+
+    /**
+     * 計測ごとに JVM を起動しないハーネスを作成します。
+     *
+     * @param argOut
+     *            結果の出力先。計測中に System.out を差し替えても影響を受けないよう、
+     *            生成時に渡します。
+     */
+    public BenchmarkRunner(final PrintStream argOut) {
+        this(argOut, null, null);
+    }
+
+    /**
+     * bench.forks の指定に従って、計測ごとに JVM を起動するハーネスを作成します。
+     *
+     * @param argOut
+     *            結果の出力先。
+     * @param argMainClass
+     *            ベンチマークの main を持つクラス。
+     * @param argMainArgs
+     *            ベンチマークの main の引数。
+     */
+    public BenchmarkRunner(final PrintStream argOut, final Class<?> argMainClass,
+            final String[] argMainArgs) {
+        fOut = argOut;
+        fMainClass = argMainClass;
+        fMainArgs = argMainArgs == null ? new String[0] : argMainArgs.clone();
+    }
+
+    /**
+     * 結果の見出しを出力します。起動された JVM では出力しません。
+     */
+    public void printHeader() {
+        if (fOnly != null) {
+            return;
+        }
+        fOut.println(String.format(Locale.US, "%-40s %8s %12s %12s %12s %12s %12s %12s %14s",
+                "benchmark", "count", "ops/s", "mean(us)", "p50(us)",
+                "p90(us)", "p99(us)", "max(us)", "alloc(B/op)"));
+    }
+
+    /**
+     * 処理を計測し、結果を出力します。
+     *
+     * @param argName
+     *            計測の名前。
+     * @param argOperation
+     *            計測対象の処理。
+     * @return 計測結果。読み飛ばした場合と、別の JVM で計測した場合は null。
+     * @throws Exception
+     *             処理に失敗した場合。
+     */
+    public Result run(final String argName, final Operation argOperation)
+            throws Exception {
+        if (fOnly != null) {
+            if (fOnly.equals(argName) == false) {
+                return null;
+            }
+        } else if (fForks > 0 && fMainClass != null) {
+            for (int index = 1; index <= fForks; index++) {
+                fork(argName, index);
+            }
+            return null;
+        }
+
+        for (int index = 0; index < fWarmup; index++) {
+            iterate(argOperation, null);
+        }
+
+        final LongBuffer samples = new LongBuffer();
+        long totalNanos = 0;
+        long allocatedBytes = 0;
+        for (int index = 0; index < fIterations; index++) {
+            final long allocatedBefore = getAllocatedBytes();
+            totalNanos += iterate(argOperation, samples);
+            final long allocatedAfter = getAllocatedBytes();
+            if (allocatedBefore < 0 || allocatedAfter < 0 || allocatedBytes < 0) {
+                allocatedBytes = -1;
+            } else {
+                allocatedBytes += allocatedAfter - allocatedBefore;
+            }
+        }
+
+        final long[] sorted = samples.toArray();
+        Arrays.sort(sorted);
+        final Result result = new Result(fForkLabel == null ? argName
+                : argName + " [fork " + fForkLabel + "]", sorted, totalNanos,
+                allocatedBytes);
+        print(result);
+        return result;
+    }
+
+    /**
+     * 結果を 1 行出力します。
+     *
+     * @param argResult
+     *            計測結果。
+     */
+    public void print(final Result argResult) {
+        fOut.println(String.format(Locale.US, "%-40s %8d %12.1f %12.1f %12.1f %12.1f %12.1f %12.1f %14d",
+                argResult.getName(), argResult.getCount(),
+                argResult.getOpsPerSecond(), argResult.getMeanNanos() / 1000.0,
+                argResult.getPercentileNanos(50) / 1000.0,
+                argResult.getPercentileNanos(90) / 1000.0,
+                argResult.getPercentileNanos(99) / 1000.0,
+                argResult.getPercentileNanos(100) / 1000.0,
+                argResult.getAllocatedBytesPerOperation()));
+    }
+
+    /**
+     * 処理を 1 回分の時間だけ繰り返し実行します。
+     *
+     * @param argOperation
+     *            計測対象の処理。
+     * @param argSamples
+     *            1 回ごとの処理時間の追加先。ウォームアップの場合は null。
+     * @return 処理時間の合計 (ナノ秒)。
+     * @throws Exception
+     *             処理に失敗した場合。
+     */
+    private long iterate(final Operation argOperation,
+            final LongBuffer argSamples) throws Exception {
+        long totalNanos = 0;
+        // 1 回の処理が時間を超える場合にも、少なくとも 1 回は実行します。
+        do {
+            final long start = System.nanoTime();
+            consume(argOperation.run());
+            final long elapsed = System.nanoTime() - start;
+            totalNanos += elapsed;
+            if (argSamples != null) {
+                argSamples.add(elapsed);
+            }
+        } while (totalNanos < fIterationNanos);
+        return totalNanos;
+    }
+
+    /**
+     * 処理の結果を消費します。
+     *
+     * 結果を volatile 変数と比較するため、JIT コンパイラは結果を求める処理を省けません。
+     * 比較は常に不一致となるため、計測のたびに volatile 変数へ書き込むコストはかかりません。
+     *
+     * @param argResult
+     *            処理の結果。
+     */
+    private void consume(final Object argResult) {
+        if (argResult == fSinkGuard) {
+            fSink = argResult;
+        }
+    }
+
+    /**
+     * 新しい JVM を起動して計測を 1 つだけ実行させ、その結果を出力します。
+     *
+     * @param argName
+     *            計測の名前。
+     * @param argFork
+     *            JVM の番号。
+     * @throws IOException
+     *             JVM の起動に失敗した場合。
+     * @throws InterruptedException
+     *             JVM の終了を待つ間に割り込まれた場合。
+     */
+    private void fork(final String argName, final int argFork)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        for (Map.Entry<Object, Object> entry : System.getProperties().entrySet()) {
+            final String key = String.valueOf(entry.getKey());
+            if (key.startsWith("bench.") && key.equals("bench.forks") == false) {
+                command.add("-D" + key + "=" + entry.getValue());
+            }
+        }
+        command.add("-Dbench.only=" + argName);
+        command.add("-Dbench.fork=" + argFork);
+        command.add(fMainClass.getName());
+        command.addAll(Arrays.asList(fMainArgs));
+
+        final ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        final Process process = builder.start();
+        process.getOutputStream().close();
+
+        // 起動した JVM の出力のうち、計測結果の行だけを出力します。
+        final String prefix = argName + " [fork " + argFork + "]";
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), "UTF-8"));
+        try {
+            for (String line; (line = reader.readLine()) != null;) {
+                if (line.startsWith(prefix)) {
+                    fOut.println(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        final int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IOException("BenchmarkRunner: [" + argName + "] fork "
+                    + argFork + " exited with " + exitCode);
+        }
+    }
+
+    /**
+     * 呼び出し元のスレッドがこれまでに割り当てたメモリ量を取得します。
+     *
+     * @return メモリ量 (バイト)。取得できない場合は -1。
+     */
+    private static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean == false) {
+            return -1;
+        }
+        final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (sunBean.isThreadAllocatedMemorySupported() == false
+                || sunBean.isThreadAllocatedMemoryEnabled() == false) {
+            return -1;
+        }
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 処理時間を記録する可変長の long 配列です。
+     */
+    private static final class LongBuffer {
+        private long[] fValues = new long[1024];
+        private int fSize = 0;
+
+        void add(final long argValue) {
+            if (fSize == fValues.length) {
+                fValues = Arrays.copyOf(fValues, fSize * 2);
+            }
+            fValues[fSize++] = argValue;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(fValues, fSize);
+        }
+    }
+}
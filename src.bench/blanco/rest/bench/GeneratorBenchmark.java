@@ -0,0 +1,246 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import blanco.cg.BlancoCgSupportedLang;
+import blanco.rest.BlancoRestConstants;
+import blanco.rest.BlancoRestMeta2Xml;
+import blanco.rest.BlancoRestObjectsIndex;
+import blanco.rest.BlancoRestObjectsInfo;
+import blanco.rest.BlancoRestObjectsRegistry;
+import blanco.rest.BlancoRestXml2SourceFile;
+import blanco.rest.task.BlancoRestProcessImpl;
+import blanco.rest.task.valueobject.BlancoRestProcessInput;
+import blanco.valueobject.BlancoValueObjectConstants;
+import blanco.valueobject.valueobject.BlancoValueObjectClassStructure;
+
+/**
+ * 自動生成処理のベンチマークです。
+ *
+ * SyntheticDefinitions で N 個の定義書 (電文 1 つあたり M 項目) と ValueObject を作成し、
+ * 次の段階ごとのスループットと 1 回あたりのメモリ割り当て量を計測します。
+ * <ul>
+ * <li>meta2xml: 定義書から中間XMLファイルへの変換 (BlancoRestMeta2Xml)
+ * <li>objects: ValueObject の中間XMLファイルの読み込み (BlancoRestObjectsInfo)。
+ * 索引を毎回削除する場合と、索引を使う場合
+ * <li>xml2source: 中間XMLファイルからのソースコード生成 (BlancoRestXml2SourceFile)。
+ * 定義書を直接読み込む場合 (direct) は meta2xml を含みます。xlsx は同じ定義書を xlsx 形式に変換したものです
+ * <li>end-to-end: BlancoRestProcessImpl による全体の処理。逐次、並列、インクリメンタル、直接読み込み
+ * </ul>
+ * 生成したソースファイルは毎回同じディレクトリに出力するため、2 回目以降は
+ * 内容が変わらないファイルの書き込みを省く定常状態を計測します。
+ *
+ * 使い方: java blanco.rest.bench.GeneratorBenchmark [定義書の数] [項目数] [作業ディレクトリ]
+ * (標準は 20、30、テンポラリディレクトリ)。ant -f build.xml bench からも実行できます。
+ */
+public class GeneratorBenchmark {
+    /**
+     * ベンチマークを実行します。
+     *
+     * @param args
+     *            定義書の数、電文 1 つあたりの項目数、作業ディレクトリ (いずれも省略可)。
+     * @throws Exception
+     *             処理に失敗した場合。
+     */
+    public static void main(final String[] args) throws Exception {
+        final int apis = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final int fields = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        final File workdir = args.length > 2 ? new File(args[2]) : new File(
+                System.getProperty("java.io.tmpdir"), "blancorest-bench");
+        final int objects = Math.max(1, apis / 2);
+
+        final PrintStream out = System.out;
+        out.println("GeneratorBenchmark: " + apis + " definitions x " + fields
+                + " fields, " + objects + " value objects, workdir = "
+                + workdir.getAbsolutePath());
+
+        deleteRecursive(workdir);
+        final File fileMetadir = new File(workdir, "meta/api");
+        final File fileTmpdir = new File(workdir, "tmp");
+        final File fileTargetdir = new File(workdir, "target");
+        final File fileRestTmpdir = new File(fileTmpdir.getPath()
+                + BlancoRestConstants.TARGET_SUBDIRECTORY);
+        SyntheticDefinitions.writeApiWorkbooks(fileMetadir, apis, fields, objects);
+        final File fileXlsxdir = new File(workdir, "xlsx");
+        SyntheticDefinitions.convertToXlsx(fileMetadir, fileXlsxdir);
+        SyntheticDefinitions.writeObjectXmls(new File(fileTmpdir.getPath()
+                + BlancoValueObjectConstants.TARGET_SUBDIRECTORY), objects, fields);
+
+        final BlancoRestProcessInput input = new BlancoRestProcessInput();
+        input.setMetadir(fileMetadir.getPath());
+        input.setTmpdir(fileTmpdir.getPath());
+        input.setTargetdir(fileTargetdir.getPath());
+        input.setSheetType("php");
+        input.setNameAdjust("true");
+        input.setEncoding("UTF-8");
+
+        // 生成処理の進捗表示は計測の妨げになるため、計測中は捨てます。
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(final int b) {
+            }
+
+            public void write(final byte[] b, final int off, final int len) {
+            }
+        }));
+        try {
+            final BenchmarkRunner runner = new BenchmarkRunner(out,
+                    GeneratorBenchmark.class, args);
+            runner.printHeader();
+
+            final BlancoRestMeta2Xml meta2xml = new BlancoRestMeta2Xml();
+            final BenchmarkRunner.Operation operationMeta2xml = new BenchmarkRunner.Operation() {
+                public Object run() throws Exception {
+                    meta2xml.processDirectory(fileMetadir, fileRestTmpdir.getPath());
+                    return meta2xml;
+                }
+            };
+            if (runner.run("meta2xml", operationMeta2xml) == null) {
+                // この JVM で計測しなかった場合も、後の計測が使う中間XMLファイルを作成します。
+                operationMeta2xml.run();
+            }
+
+            final File fileIndex = new File(fileRestTmpdir, BlancoRestObjectsIndex.FILE_NAME);
+            runner.run("objects (no index)", new BenchmarkRunner.Operation() {
+                public Object run() throws Exception {
+                    fileIndex.delete();
+                    final BlancoRestObjectsInfo objectsInfo = new BlancoRestObjectsInfo(
+                            new BlancoRestObjectsRegistry());
+                    objectsInfo.process(input);
+                    return objectsInfo;
+                }
+            });
+
+            final BlancoRestObjectsRegistry registry = new BlancoRestObjectsRegistry();
+            final BenchmarkRunner.Operation operationIndexed = new BenchmarkRunner.Operation() {
+                public Object run() throws Exception {
+                    final BlancoRestObjectsInfo objectsInfo = new BlancoRestObjectsInfo(registry);
+                    objectsInfo.process(input);
+                    return objectsInfo;
+                }
+            };
+            if (runner.run("objects (indexed)", operationIndexed) == null) {
+                // この JVM で計測しなかった場合も、後の計測が使う ValueObject の一覧を読み込みます。
+                operationIndexed.run();
+            }
+
+            final Map<String, BlancoValueObjectClassStructure> mapObjects = registry.snapshot();
+            final List<File> listXml = listFiles(fileRestTmpdir, ".xml");
+            runner.run("xml2source", new BenchmarkRunner.Operation() {
+                public Object run() throws Exception {
+                    for (File fileXml : listXml) {
+                        final BlancoRestXml2SourceFile xml2source = new BlancoRestXml2SourceFile();
+                        xml2source.setEncoding("UTF-8");
+                        xml2source.setSheetLang(BlancoCgSupportedLang.PHP);
+                        xml2source.setObjects(mapObjects);
+                        xml2source.process(fileXml, true, fileTargetdir);
+                    }
+                    return listXml;
+                }
+            });
+
+            final List<File> listWorkbook = listFiles(fileMetadir, ".xls");
+            runner.run("xml2source (direct)", new BenchmarkRunner.Operation() {
+                public Object run() throws Exception {
+                    for (File fileWorkbook : listWorkbook) {
+                        final BlancoRestXml2SourceFile xml2source = new BlancoRestXml2SourceFile();
+                        xml2source.setEncoding("UTF-8");
+                        xml2source.setSheetLang(BlancoCgSupportedLang.PHP);
+                        xml2source.setObjects(mapObjects);
+                        xml2source.process(fileWorkbook, true, fileTargetdir);
+                    }
+                    return listWorkbook;
+                }
+            });
+
+            final List<File> listXlsx = listFiles(fileXlsxdir, ".xlsx");
+            runner.run("xml2source (xlsx)", new BenchmarkRunner.Operation() {
+                public Object run() throws Exception {
+                    for (File fileXlsx : listXlsx) {
+                        final BlancoRestXml2SourceFile xml2source = new BlancoRestXml2SourceFile();
+                        xml2source.setEncoding("UTF-8");
+                        xml2source.setSheetLang(BlancoCgSupportedLang.PHP);
+                        xml2source.setObjects(mapObjects);
+                        xml2source.process(fileXlsx, true, fileTargetdir);
+                    }
+                    return listXlsx;
+                }
+            });
+
+            runEndToEnd(runner, "end-to-end (parallel=1)", input, 1, false, false);
+            final int parallel = Runtime.getRuntime().availableProcessors();
+            if (parallel > 1) {
+                runEndToEnd(runner, "end-to-end (parallel=" + parallel + ")",
+                        input, parallel, false, false);
+            }
+            runEndToEnd(runner, "end-to-end (incremental)", input, parallel, true, false);
+            runEndToEnd(runner, "end-to-end (direct, parallel=1)", input, 1, false, true);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * BlancoRestProcessImpl による全体の処理を計測します。
+     */
+    private static void runEndToEnd(final BenchmarkRunner argRunner,
+            final String argName, final BlancoRestProcessInput argInput,
+            final int argParallel, final boolean argIncremental,
+            final boolean argDirect) throws Exception {
+        final BlancoRestProcessImpl process = new BlancoRestProcessImpl();
+        process.setParallel(argParallel);
+        process.setIncremental(argIncremental);
+        process.setDirect(argDirect);
+        argRunner.run(argName, new BenchmarkRunner.Operation() {
+            public Object run() throws Exception {
+                return Integer.valueOf(process.execute(argInput));
+            }
+        });
+    }
+
+    /**
+     * ディレクトリ内の指定された拡張子のファイルをファイル名順に取得します。
+     */
+    private static List<File> listFiles(final File argDirectory,
+            final String argExtension) {
+        final File[] files = argDirectory.listFiles();
+        final List<File> listFile = new ArrayList<File>();
+        if (files == null) {
+            return listFile;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.getName().endsWith(argExtension)) {
+                listFile.add(file);
+            }
+        }
+        return listFile;
+    }
+
+    /**
+     * ディレクトリを中身ごと削除します。
+     */
+    private static void deleteRecursive(final File argFile) {
+        final File[] files = argFile.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteRecursive(file);
+            }
+        }
+        argFile.delete();
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import jxl.Cell;
+import jxl.CellType;
+import jxl.NumberCell;
+import jxl.Sheet;
+import jxl.Workbook;
+import jxl.read.biff.BiffException;
+import jxl.write.Label;
+import jxl.write.WritableSheet;
+import jxl.write.WritableWorkbook;
+import jxl.write.WriteException;
+
+/**
+ * ベンチマーク用の定義書を生成します。
+ *
+ * meta/api のサンプルと同じ様式の電文処理定義書 (process、input、output の 3 シート) と、
+ * blancoValueObject が出力するものと同じ形式の ValueObject の中間XMLファイルを、
+ * 指定された数だけ作成します。項目の型は文字列、整数、真偽値、浮動小数点、
+ * 要素の型を指定した配列、オブジェクト、ValueObject を順に繰り返し、
+ * 文字列と整数には長さ・値範囲・正規表現の制約を付けます。
+ *
+ * 作成した定義書は xlsx 形式に変換することもできます。
+ */
+public class SyntheticDefinitions {
+    /**
+     * 生成する電文・ValueObject のパッケージ。
+     */
+    public static final String PACKAGE = "blanco.bench.api";
+
+    /**
+     * 電文処理定義書の項目の型 (PHP 用のシートの型名)。
+     */
+    private static final String[] FIELD_TYPES = { "string", "integer",
+            "boolean", "float", "array", "object", null };
+
+    /**
+     * 電文処理定義書を作成します。
+     *
+     * @param argDirectory
+     *            出力先ディレクトリ。
+     * @param argApis
+     *            定義書の数。
+     * @param argFields
+     *            電文 1 つあたりの項目数。
+     * @param argObjects
+     *            参照する ValueObject の数。0 の場合は ValueObject を参照しません。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public static void writeApiWorkbooks(final File argDirectory,
+            final int argApis, final int argFields, final int argObjects)
+            throws IOException {
+        argDirectory.mkdirs();
+        for (int index = 0; index < argApis; index++) {
+            final String name = "BenchApi" + index;
+            final WritableWorkbook workbook = Workbook.createWorkbook(new File(
+                    argDirectory, name + ".xls"));
+            try {
+                writeProcessSheet(workbook.createSheet("process", 0), name);
+                writeTelegramSheet(workbook.createSheet("input", 1), name
+                        + "Request", "要求電文(C→S)", argFields, argObjects, index);
+                writeTelegramSheet(workbook.createSheet("output", 2), name
+                        + "Response", "応答電文(S→C)", argFields, argObjects, index + 1);
+                workbook.write();
+            } catch (WriteException ex) {
+                throw new IOException(ex.toString());
+            } finally {
+                try {
+                    workbook.close();
+                } catch (WriteException ex) {
+                    throw new IOException(ex.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * ディレクトリ内の xls 形式の定義書を xlsx 形式に変換します。
+     *
+     * 文字列のセルは共有文字列、数値のセルは数値として書き込みます。書式は変換しません。
+     *
+     * @param argDirectory
+     *            xls 形式の定義書のディレクトリ。
+     * @param argDirectoryXlsx
+     *            出力先ディレクトリ。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public static void convertToXlsx(final File argDirectory,
+            final File argDirectoryXlsx) throws IOException {
+        argDirectoryXlsx.mkdirs();
+        final File[] files = argDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(".xls") == false) {
+                continue;
+            }
+            final Workbook workbook;
+            try {
+                workbook = Workbook.getWorkbook(file);
+            } catch (BiffException ex) {
+                throw new IOException(ex.toString());
+            }
+            try {
+                writeXlsx(workbook, new File(argDirectoryXlsx, file.getName() + "x"));
+            } finally {
+                workbook.close();
+            }
+        }
+    }
+
+    /**
+     * ブックを xlsx 形式で書き込みます。
+     */
+    private static void writeXlsx(final Workbook argWorkbook, final File argFile)
+            throws IOException {
+        final List<String> listSharedString = new ArrayList<String>();
+        final Map<String, Integer> mapSharedString = new HashMap<String, Integer>();
+        final ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(argFile));
+        try {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(zipStream, "UTF-8"));
+            final StringBuilder contentTypes = new StringBuilder();
+            final StringBuilder workbook = new StringBuilder();
+            final StringBuilder workbookRels = new StringBuilder();
+            for (int indexSheet = 0; indexSheet < argWorkbook.getNumberOfSheets(); indexSheet++) {
+                final Sheet sheet = argWorkbook.getSheet(indexSheet);
+                final String entryName = "worksheets/sheet" + (indexSheet + 1) + ".xml";
+                contentTypes.append("<Override PartName=\"/xl/" + entryName
+                        + "\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+                workbook.append("<sheet name=\"" + escape(sheet.getName()) + "\" sheetId=\""
+                        + (indexSheet + 1) + "\" r:id=\"rId" + (indexSheet + 1) + "\"/>");
+                workbookRels.append("<Relationship Id=\"rId" + (indexSheet + 1)
+                        + "\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\""
+                        + entryName + "\"/>");
+
+                zipStream.putNextEntry(new ZipEntry("xl/" + entryName));
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                        + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+                for (int row = 0; row < sheet.getRows(); row++) {
+                    final Cell[] cells = sheet.getRow(row);
+                    writer.write("<row r=\"" + (row + 1) + "\">");
+                    for (int column = 0; column < cells.length; column++) {
+                        final String ref = toCellRef(column, row);
+                        if (cells[column].getType() == CellType.NUMBER) {
+                            writer.write("<c r=\"" + ref + "\"><v>"
+                                    + ((NumberCell) cells[column]).getValue() + "</v></c>");
+                        } else if (cells[column].getContents().length() > 0) {
+                            final String value = cells[column].getContents();
+                            Integer index = mapSharedString.get(value);
+                            if (index == null) {
+                                index = Integer.valueOf(listSharedString.size());
+                                listSharedString.add(value);
+                                mapSharedString.put(value, index);
+                            }
+                            writer.write("<c r=\"" + ref + "\" t=\"s\"><v>" + index + "</v></c>");
+                        }
+                    }
+                    writer.write("</row>");
+                }
+                writer.write("</sheetData></worksheet>");
+                writer.flush();
+                zipStream.closeEntry();
+            }
+
+            zipStream.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" uniqueCount=\""
+                    + listSharedString.size() + "\">");
+            for (String value : listSharedString) {
+                writer.write("<si><t xml:space=\"preserve\">" + escape(value) + "</t></si>");
+            }
+            writer.write("</sst>");
+            writer.flush();
+            zipStream.closeEntry();
+
+            zipStream.putNextEntry(new ZipEntry("xl/workbook.xml"));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+                    + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>"
+                    + workbook + "</sheets></workbook>");
+            writer.flush();
+            zipStream.closeEntry();
+
+            zipStream.putNextEntry(new ZipEntry("xl/_rels/workbook.xml.rels"));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + workbookRels + "<Relationship Id=\"rIdSst\""
+                    + " Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings\""
+                    + " Target=\"sharedStrings.xml\"/></Relationships>");
+            writer.flush();
+            zipStream.closeEntry();
+
+            zipStream.putNextEntry(new ZipEntry("_rels/.rels"));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\""
+                    + " Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\""
+                    + " Target=\"xl/workbook.xml\"/></Relationships>");
+            writer.flush();
+            zipStream.closeEntry();
+
+            zipStream.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/xl/workbook.xml\""
+                    + " ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                    + "<Override PartName=\"/xl/sharedStrings.xml\""
+                    + " ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>"
+                    + contentTypes + "</Types>");
+            writer.flush();
+            zipStream.closeEntry();
+        } finally {
+            zipStream.close();
+        }
+    }
+
+    /**
+     * 列と行 (0 オリジン) からセル参照 (例: AB12) を求めます。
+     */
+    private static String toCellRef(final int argColumn, final int argRow) {
+        final StringBuilder buf = new StringBuilder();
+        for (int column = argColumn + 1; column > 0; column = (column - 1) / 26) {
+            buf.insert(0, (char) ('A' + (column - 1) % 26));
+        }
+        return buf.append(argRow + 1).toString();
+    }
+
+    /**
+     * XML の特殊文字をエスケープします。
+     */
+    private static String escape(final String argValue) {
+        return argValue.replace("&", "&amp;").replace("<", "&lt;")
+                .replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * ValueObject の中間XMLファイルを作成します。
+     *
+     * @param argDirectory
+     *            出力先ディレクトリ (テンポラリディレクトリの /valueobject)。
+     * @param argObjects
+     *            ValueObject の数。
+     * @param argFields
+     *            ValueObject 1 つあたりの項目数。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public static void writeObjectXmls(final File argDirectory,
+            final int argObjects, final int argFields) throws IOException {
+        argDirectory.mkdirs();
+        for (int index = 0; index < argObjects; index++) {
+            final String name = getObjectName(index);
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(argDirectory, name + ".xls.xml")), "UTF-8"));
+            try {
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><workbook><sheet name=\"valueObject\">");
+                writer.write("<blancovalueobjectphp-common><name>" + name + "</name><package>"
+                        + PACKAGE + "</package><description>ベンチマーク用の ValueObject です。</description>"
+                        + "</blancovalueobjectphp-common><blancovalueobjectphp-extends/><blancovalueobjectphp-list>");
+                for (int indexField = 0; indexField < argFields; indexField++) {
+                    writer.write("<field><no>" + (indexField + 1) + "</no><name>field" + indexField
+                            + "</name><type>" + FIELD_TYPES[indexField % 4] + "</type></field>");
+                }
+                writer.write("</blancovalueobjectphp-list></sheet></workbook>");
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * ValueObject の名前を取得します。
+     *
+     * @param argIndex
+     *            ValueObject の番号。
+     * @return ValueObject の名前。
+     */
+    public static String getObjectName(final int argIndex) {
+        return "BenchObject" + argIndex;
+    }
+
+    /**
+     * 電文処理定義のシートを書き込みます。
+     */
+    private static void writeProcessSheet(final WritableSheet argSheet,
+            final String argName) throws WriteException {
+        argSheet.addCell(new Label(0, 0, "電文処理定義書"));
+        argSheet.addCell(new Label(0, 4, "電文処理定義・共通"));
+        final String[][] properties = { { "電文処理ID", argName },
+                { "説明", "ベンチマーク用の API です。" },
+                { "要求電文ID", argName + "Request" },
+                { "応答電文ID", argName + "Response" },
+                { "認証が不要なAPI", "" }, { "ウェブサービスID", argName },
+                { "名前空間", "BlancoRestBench" }, { "パッケージ", PACKAGE },
+                { "ロケーション", "/bench/" + argName } };
+        for (int index = 0; index < properties.length; index++) {
+            argSheet.addCell(new Label(0, 5 + index, properties[index][0]));
+            argSheet.addCell(new Label(1, 5 + index, properties[index][1]));
+        }
+        argSheet.addCell(new Label(0, 15, "電文処理定義・内容"));
+        argSheet.addCell(new Label(0, 16, "入力"));
+        argSheet.addCell(new Label(1, 16, "処理"));
+        argSheet.addCell(new Label(4, 16, "出力"));
+    }
+
+    /**
+     * 電文定義のシートを書き込みます。
+     */
+    private static void writeTelegramSheet(final WritableSheet argSheet,
+            final String argName, final String argType, final int argFields,
+            final int argObjects, final int argSeed) throws WriteException {
+        argSheet.addCell(new Label(0, 0, "電文定義書"));
+        argSheet.addCell(new Label(0, 4, "電文定義・共通"));
+        final String[][] properties = { { "電文ID", argName },
+                { "説明", "ベンチマーク用の電文です。" }, { "電文種類", argType },
+                { "電文の親クラス", "ApiTelegram" },
+                { "名前空間", "BlancoRestBench" }, { "パッケージ", PACKAGE } };
+        for (int index = 0; index < properties.length; index++) {
+            argSheet.addCell(new Label(0, 5 + index, properties[index][0]));
+            argSheet.addCell(new Label(2, 5 + index, properties[index][1]));
+        }
+
+        argSheet.addCell(new Label(0, 13, "電文定義・一覧"));
+        final String[] titles = { "No.", "項目名", "項目の説明", "型", "必須",
+                "デフォルト", "長さ", null, "値範囲Check", null, "形式Check",
+                "備考", "要素の型" };
+        for (int index = 0; index < titles.length; index++) {
+            if (titles[index] != null) {
+                argSheet.addCell(new Label(index, 14, titles[index]));
+            }
+        }
+        final String[] subTitles = { "Min長", "Max長", "Min値", "Max値", "正規表現" };
+        for (int index = 0; index < subTitles.length; index++) {
+            argSheet.addCell(new Label(6 + index, 15, subTitles[index]));
+        }
+
+        for (int index = 0; index < argFields; index++) {
+            final int row = 16 + index;
+            String type = FIELD_TYPES[index % FIELD_TYPES.length];
+            if (type == null) {
+                type = argObjects > 0 ? getObjectName((argSeed + index) % argObjects)
+                        : "object";
+            }
+            argSheet.addCell(new Label(0, row, String.valueOf(index + 1)));
+            argSheet.addCell(new Label(1, row, "field_" + index));
+            argSheet.addCell(new Label(2, row, "項目 " + index));
+            argSheet.addCell(new Label(3, row, type));
+            if ("string".equals(type)) {
+                argSheet.addCell(new Label(4, row, "YES"));
+                argSheet.addCell(new Label(6, row, "1"));
+                argSheet.addCell(new Label(7, row, "64"));
+                argSheet.addCell(new Label(10, row, "^[0-9A-Za-z_]*$"));
+            } else if ("integer".equals(type)) {
+                argSheet.addCell(new Label(8, row, "0"));
+                argSheet.addCell(new Label(9, row, "10000"));
+            } else if ("array".equals(type)) {
+                argSheet.addCell(new Label(12, row, "integer"));
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package blanco.rest.common;
+
+/**
+ * 文字列表現を StringBuilder に追記できる電文です．
+ *
+ * 自動生成された電文クラスが実装し，toString や ApiToString から呼び出されます．
+ * 入れ子になった電文も文字列を作り直さずに同じ StringBuilder に追記します．
+ */
+public interface ApiAppendable {
+
+    /**
+     * この電文の文字列表現を追記します．
+     *
+     * @param buf 追記先
+     * @param depth 入れ子になったオブジェクトを展開する残りの深さ．0 の場合は展開しません．
+     */
+    void appendTo(StringBuilder buf, int depth);
+}
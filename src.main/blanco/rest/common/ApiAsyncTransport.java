@@ -0,0 +1,25 @@
+package blanco.rest.common;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 非同期の送受信に対応したトランスポートです．
+ *
+ * ApiBase.sendAsync は，設定されたトランスポートがこのインタフェースを実装している場合，
+ * 送受信をトランスポートに任せます．実装していない場合は ApiBase の Executor 上で
+ * ApiTransport.send を呼び出します．
+ * 標準の実装は java.net.http.HttpClient を使う ApiHttpClientTransport です．
+ */
+public interface ApiAsyncTransport extends ApiTransport {
+
+    /**
+     * 要求電文を送信し，応答電文の受信を待たずに戻ります．
+     *
+     * 送受信に失敗した場合，戻り値は BlancoRestException で異常終了します．
+     *
+     * @param location 送信先 (API クラスの getLocation() の値)
+     * @param request JSON に変換済みの要求電文
+     * @return JSON 形式の応答電文を受け取る CompletableFuture
+     */
+    CompletableFuture<byte[]> sendAsync(String location, byte[] request);
+}
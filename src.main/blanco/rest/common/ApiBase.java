@@ -3,11 +3,32 @@ package blanco.rest.common;
 import blanco.rest.Exception.BlancoRestException;
 import blanco.rest.resourcebundle.BlancoRestResourceBundle;
 import blanco.sample.valueobject.ApiTelegram;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 
 /**
  * Created by tueda on 15/10/05.
@@ -16,15 +37,922 @@ abstract public class ApiBase {
 
     private BlancoRestResourceBundle fBundle = new BlancoRestResourceBundle();
 
+    /*
+     * 全ての API クラスで共有する ObjectMapper です．
+     * ObjectMapper は生成コストが高く，シリアライザのキャッシュも持つため使い回します．
+     */
+    private static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
+
+    /*
+     * API クラスごとに解決済みの ObjectWriter / ObjectReader です．
+     */
+    private static final ConcurrentMap<Class<?>, Codec> CODECS = new ConcurrentHashMap<Class<?>, Codec>();
+
+    /*
+     * newResponse を override していない API クラスごとの，応答電文のコンストラクタです．
+     */
+    private static final ConcurrentMap<Class<?>, MethodHandle> RESPONSE_CONSTRUCTORS = new ConcurrentHashMap<Class<?>, MethodHandle>();
+
+    /*
+     * 送信先を個別に設定していない API クラスが使うトランスポートです．
+     */
+    private static volatile ApiTransport defaultTransport = null;
+
+    /*
+     * この API クラスのインスタンスが使うトランスポートです．
+     */
+    private volatile ApiTransport fTransport = null;
+
+    /*
+     * sendBatch の送信方法を個別に設定していない API クラスが使う送信方法です．
+     */
+    private static volatile ApiBatchMode defaultBatchMode = ApiBatchMode.SEQUENTIAL;
+
+    /*
+     * この API クラスのインスタンスが使う sendBatch の送信方法です．
+     */
+    private volatile ApiBatchMode fBatchMode = null;
+
+    /*
+     * 送信前の検証方法を個別に設定していない API クラスが使う検証方法です．
+     */
+    private static volatile ApiValidationMode defaultValidationMode = ApiValidationMode.NONE;
+
+    /*
+     * この API クラスのインスタンスが使う送信前の検証方法です．
+     */
+    private volatile ApiValidationMode fValidationMode = null;
+
+    /**
+     * 標準の Executor で同時に実行する送受信の数の上限です．
+     */
+    public static final int DEFAULT_ASYNC_CONCURRENCY = 64;
+
+    /*
+     * ApiAsyncTransport を実装していないトランスポートで sendAsync する場合に使う Executor です．
+     * null の場合は DefaultAsyncExecutor を使います．
+     */
+    private static volatile Executor asyncExecutor = null;
+
+    /*
+     * send の実行方法を個別に設定していない API クラスが使う実行方法です．
+     */
+    private static volatile ApiExecutionMode defaultExecutionMode = ApiExecutionMode.DIRECT;
+
+    /*
+     * この API クラスのインスタンスが使う send の実行方法です．
+     */
+    private volatile ApiExecutionMode fExecutionMode = null;
+
+    /*
+     * 同時送信数の上限を個別に設定していない API クラスが使う，送信先 (location) ごとの
+     * 同時送信数の上限です．0 以下の場合は制限しません．
+     */
+    private static volatile int defaultMaxConcurrentPerEndpoint = 0;
+
+    /*
+     * 送信先 (location) ごとの同時送信数を制限するセマフォです．
+     * 同時送信数の上限を個別に設定していない全ての API クラスで共有します．
+     */
+    private static volatile ConcurrentMap<String, Semaphore> endpointPermits = new ConcurrentHashMap<String, Semaphore>();
+
+    /*
+     * この API クラスのインスタンスの同時送信数を制限するセマフォです．
+     * null の場合は setDefaultMaxConcurrentPerEndpoint の値に従い，UNLIMITED の場合は制限しません．
+     */
+    private volatile Semaphore fEndpointPermit = null;
+
+    /*
+     * インスタンスで同時送信数を制限しないことを表す目印です．
+     */
+    private static final Semaphore UNLIMITED = new Semaphore(0);
+
+    /*
+     * 送信の計測値の記録先と，API クラスごとに解決済みの記録先です．null の場合は記録しません．
+     */
+    private static volatile MetricsBinding metricsBinding = null;
+
+    /*
+     * ApiMetricsRegistry が記録先を返さなかった API クラスの目印です．
+     */
+    private static final ApiMetricsRecorder NO_RECORDER = new ApiMetricsRecorder() {
+        public void record(long serializeNanos, long transportNanos, long latencyNanos,
+                           int requestBytes, int responseBytes, boolean success) {
+        }
+    };
+
     /*
      * 自動生成された API クラスで override されます
      */
     abstract protected String getRequestId();
     abstract protected String getResponseId();
 
+    /**
+     * API の配置場所 (URL のパス，または URL) です．
+     * 定義書に location が記述されている場合，自動生成された API クラスで override されます．
+     *
+     * @return API の配置場所
+     */
+    protected String getLocation() {
+        return null;
+    }
+
+    /**
+     * 全ての API クラスで共通に使うトランスポートを設定します．
+     *
+     * @param transport トランスポート．null の場合は送信せずにダミーの応答電文を返します．
+     */
+    public static void setDefaultTransport(ApiTransport transport) {
+        defaultTransport = transport;
+    }
+
+    /**
+     * この API クラスのインスタンスが使うトランスポートを設定します．
+     *
+     * @param transport トランスポート．null の場合は setDefaultTransport の値を使います．
+     */
+    public void setTransport(ApiTransport transport) {
+        fTransport = transport;
+    }
+
+    /**
+     * @return この API クラスのインスタンスが使うトランスポート．未設定の場合は null
+     */
+    public ApiTransport getTransport() {
+        ApiTransport transport = fTransport;
+        return transport != null ? transport : defaultTransport;
+    }
+
+    /**
+     * 全ての API クラスで共通に使う sendBatch の送信方法を設定します．
+     *
+     * @param mode 送信方法．null の場合は SEQUENTIAL
+     */
+    public static void setDefaultBatchMode(ApiBatchMode mode) {
+        defaultBatchMode = mode == null ? ApiBatchMode.SEQUENTIAL : mode;
+    }
+
+    /**
+     * この API クラスのインスタンスが使う sendBatch の送信方法を設定します．
+     *
+     * @param mode 送信方法．null の場合は setDefaultBatchMode の値を使います．
+     */
+    public void setBatchMode(ApiBatchMode mode) {
+        fBatchMode = mode;
+    }
+
+    /**
+     * @return この API クラスのインスタンスが使う sendBatch の送信方法
+     */
+    public ApiBatchMode getBatchMode() {
+        ApiBatchMode mode = fBatchMode;
+        return mode != null ? mode : defaultBatchMode;
+    }
+
+    /**
+     * 全ての API クラスで共通に使う，送信前の要求電文の検証方法を設定します．
+     *
+     * 既存の呼び出し元の動作を変えないよう，標準では検証しません (NONE)．
+     *
+     * @param mode 検証方法．null の場合は NONE
+     */
+    public static void setDefaultValidationMode(ApiValidationMode mode) {
+        defaultValidationMode = mode == null ? ApiValidationMode.NONE : mode;
+    }
+
+    /**
+     * この API クラスのインスタンスが使う，送信前の要求電文の検証方法を設定します．
+     *
+     * @param mode 検証方法．null の場合は setDefaultValidationMode の値を使います．
+     */
+    public void setValidationMode(ApiValidationMode mode) {
+        fValidationMode = mode;
+    }
+
+    /**
+     * @return この API クラスのインスタンスが使う送信前の検証方法
+     */
+    public ApiValidationMode getValidationMode() {
+        ApiValidationMode mode = fValidationMode;
+        return mode != null ? mode : defaultValidationMode;
+    }
+
+    /**
+     * ApiAsyncTransport を実装していないトランスポートで sendAsync する場合に，
+     * 送受信を実行する Executor を設定します．
+     *
+     * @param executor Executor．null の場合は標準の Executor (同時実行数が DEFAULT_ASYNC_CONCURRENCY までの
+     *                 仮想スレッド，または daemon スレッドのプール) を使います．
+     */
+    public static void setAsyncExecutor(Executor executor) {
+        asyncExecutor = executor;
+    }
+
+    /*
+     * sendAsync で使う Executor を取得します．
+     * 実行方法が VIRTUAL_THREAD の場合は setAsyncExecutor の設定より優先して仮想スレッドを使います．
+     */
+    Executor getAsyncExecutor() {
+        if (getExecutionMode() == ApiExecutionMode.VIRTUAL_THREAD) {
+            return VirtualThreadExecutor.INSTANCE;
+        }
+        Executor executor = asyncExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        return DefaultAsyncExecutor.INSTANCE;
+    }
+
+    /**
+     * 全ての API クラスで共通に使う send の実行方法を設定します．
+     *
+     * VIRTUAL_THREAD の場合，send は送受信を仮想スレッドで実行し，呼び出したスレッドは結果を待ちます．
+     * sendAsync も setAsyncExecutor の設定に関わらず仮想スレッドで送受信します．
+     * 同時送信数の上限 (setDefaultMaxConcurrentPerEndpoint) と組み合わせると，
+     * 送信先ごとの負荷を抑えたまま多数の呼び出しを少ないヒープで並行させることができます．
+     *
+     * @param mode 実行方法．null の場合は DIRECT
+     * @throws IllegalStateException 仮想スレッドの使えない JVM で VIRTUAL_THREAD を指定した場合
+     */
+    public static void setDefaultExecutionMode(ApiExecutionMode mode) {
+        checkExecutionMode(mode);
+        defaultExecutionMode = mode == null ? ApiExecutionMode.DIRECT : mode;
+    }
+
+    /**
+     * この API クラスのインスタンスが使う send の実行方法を設定します．
+     *
+     * @param mode 実行方法．null の場合は setDefaultExecutionMode の値を使います．
+     * @throws IllegalStateException 仮想スレッドの使えない JVM で VIRTUAL_THREAD を指定した場合
+     */
+    public void setExecutionMode(ApiExecutionMode mode) {
+        checkExecutionMode(mode);
+        fExecutionMode = mode;
+    }
+
+    /**
+     * @return この API クラスのインスタンスが使う send の実行方法
+     */
+    public ApiExecutionMode getExecutionMode() {
+        ApiExecutionMode mode = fExecutionMode;
+        return mode != null ? mode : defaultExecutionMode;
+    }
+
+    /*
+     * 実行方法がこの JVM で使えることを確認します．
+     */
+    private static void checkExecutionMode(ApiExecutionMode mode) {
+        if (mode == ApiExecutionMode.VIRTUAL_THREAD && VirtualThreadExecutor.INSTANCE == null) {
+            throw new IllegalStateException("virtual threads are not available in this JVM");
+        }
+    }
+
+    /**
+     * 全ての API クラスで共通に使う，送信先 (location) ごとの同時送信数の上限を設定します．
+     * 上限に達している場合，送信は空きが出るまで待ちます．
+     * 送信中に変更した場合，変更前に取得された枠は変更前のセマフォに返されます．
+     * ApiAsyncTransport の sendAsync による送信も制限の対象です．この場合，空きを待つのは
+     * 呼び出したスレッドではなく sendAsync の Executor です．
+     *
+     * @param max 同時送信数の上限．0 以下の場合は制限しません．
+     */
+    public static void setDefaultMaxConcurrentPerEndpoint(int max) {
+        defaultMaxConcurrentPerEndpoint = max;
+        endpointPermits = new ConcurrentHashMap<String, Semaphore>();
+    }
+
+    /**
+     * この API クラスのインスタンスの同時送信数の上限を設定します．
+     * 上限はこのインスタンスからの送信だけに適用し，他のインスタンスとは共有しません．
+     * 送信中に変更した場合，変更前に取得された枠は変更前のセマフォに返されます．
+     *
+     * @param max 同時送信数の上限．0 以下の場合は制限しません．
+     *            null の場合は setDefaultMaxConcurrentPerEndpoint の値を使います．
+     */
+    public void setMaxConcurrentPerEndpoint(Integer max) {
+        if (max == null) {
+            fEndpointPermit = null;
+        } else if (max.intValue() <= 0) {
+            fEndpointPermit = UNLIMITED;
+        } else {
+            fEndpointPermit = new Semaphore(max.intValue());
+        }
+    }
+
+    /**
+     * 送信の計測値の記録先を設定します．
+     *
+     * 設定すると，送信ごとに要求電文の変換時間，送受信時間，全体の時間，要求電文と応答電文の
+     * バイト数，成否を電文の種類ごとに記録します．標準の記録先は ApiMetrics です．
+     * sendBatch の ARRAY では，一つの JSON 配列の送受信を一件として記録します．
+     *
+     * @param registry 記録先．null の場合は記録しません (標準)．
+     */
+    public static void setMetricsRegistry(ApiMetricsRegistry registry) {
+        metricsBinding = registry == null ? null : new MetricsBinding(registry);
+    }
+
+    /**
+     * @return 送信の計測値の記録先．設定されていない場合は null
+     */
+    public static ApiMetricsRegistry getMetricsRegistry() {
+        MetricsBinding binding = metricsBinding;
+        return binding == null ? null : binding.registry;
+    }
+
+    /*
+     * 記録先と，記録先から API クラスごとに取得した記録先の組です．
+     * 記録先を変更した場合に古い解決結果が残らないよう，組にして差し替えます．
+     */
+    private static final class MetricsBinding {
+        final ApiMetricsRegistry registry;
+        final ConcurrentMap<Class<?>, ApiMetricsRecorder> recorders = new ConcurrentHashMap<Class<?>, ApiMetricsRecorder>();
+
+        MetricsBinding(ApiMetricsRegistry registry) {
+            this.registry = registry;
+        }
+    }
+
+    /*
+     * この API クラスの送信の計測を開始します．記録先が無い場合は null を返します．
+     */
+    private Measurement startMeasurement() {
+        MetricsBinding binding = metricsBinding;
+        if (binding == null) {
+            return null;
+        }
+        ApiMetricsRecorder recorder = binding.recorders.get(this.getClass());
+        if (recorder == null) {
+            recorder = binding.registry.getRecorder(this.getRequestId());
+            if (recorder == null) {
+                recorder = NO_RECORDER;
+            }
+            binding.recorders.putIfAbsent(this.getClass(), recorder);
+        }
+        return recorder == NO_RECORDER ? null : new Measurement(recorder);
+    }
+
+    /*
+     * 一件の送信の計測値です．段階が終わるたびに経過時間を記録し，finish で記録先に渡します．
+     * 送信したスレッドで作成し，応答を受信したスレッドで完了することがあります．
+     */
+    private static final class Measurement {
+        private final ApiMetricsRecorder recorder;
+        private long start = System.nanoTime();
+        private long mark = start;
+        private long serializeNanos = 0;
+        private long transportNanos = 0;
+        private int requestBytes = 0;
+        private int responseBytes = 0;
+
+        Measurement(ApiMetricsRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        /*
+         * 要求電文の変換を開始します．
+         */
+        void serializing() {
+            mark = System.nanoTime();
+        }
+
+        /*
+         * 要求電文の変換が終わりました．
+         */
+        void serialized(byte[] json) {
+            long now = System.nanoTime();
+            serializeNanos = now - mark;
+            requestBytes = json.length;
+            mark = now;
+        }
+
+        /*
+         * 計測の開始前に変換済みの要求電文の計測値を設定します．全体の時間には変換時間を含めます．
+         */
+        void serialized(byte[] json, long nanos) {
+            serializeNanos = nanos;
+            requestBytes = json.length;
+            start -= nanos;
+        }
+
+        /*
+         * 送受信が終わりました．
+         */
+        void transported(byte[] body) {
+            long now = System.nanoTime();
+            transportNanos = now - mark;
+            responseBytes = body == null ? 0 : body.length;
+            mark = now;
+        }
+
+        void finish(boolean success) {
+            recorder.record(serializeNanos, transportNanos, System.nanoTime() - start,
+                    requestBytes, responseBytes, success);
+        }
+    }
+
+    /*
+     * 仮想スレッドの Executor です．最初に使われた時に生成します．
+     * 仮想スレッドの無い JVM では null です．
+     */
+    private static final class VirtualThreadExecutor {
+        static final ExecutorService INSTANCE = ApiExecutors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /*
+     * 標準の Executor です．最初に使われた時に生成します．
+     * 仮想スレッドが使える JVM では仮想スレッドで，使えない JVM では daemon スレッドのプールで実行します．
+     * いずれも同時に実行する送受信の数は DEFAULT_ASYNC_CONCURRENCY までで，超えた分はキューで待ちます．
+     */
+    private static final class DefaultAsyncExecutor {
+        static final Executor INSTANCE = VirtualThreadExecutor.INSTANCE != null
+                ? ApiExecutors.newBoundedExecutor(VirtualThreadExecutor.INSTANCE, DEFAULT_ASYNC_CONCURRENCY)
+                : ApiExecutors.newDaemonThreadPool("blanco-rest-async-", DEFAULT_ASYNC_CONCURRENCY);
+    }
+
+    /**
+     * 電文の変換に使う ObjectMapper を取得します．
+     *
+     * 設定を変えたい場合は override して，設定済みの ObjectMapper を返します．
+     * API クラスごとに最初の送信時に一度だけ呼び出され，以後は結果がキャッシュされます．
+     * 呼び出しのたびに生成するのではなく，static に保持したものを返してください．
+     *
+     * @return ObjectMapper
+     */
+    protected ObjectMapper getObjectMapper() {
+        return DEFAULT_MAPPER;
+    }
+
+    /*
+     * この API クラス用の ObjectWriter / ObjectReader を取得します．
+     */
+    final protected Codec getCodec() throws BlancoRestException {
+        Codec codec = CODECS.get(this.getClass());
+        if (codec == null) {
+            ObjectMapper mapper = this.getObjectMapper();
+            TypeFactory types = mapper.getTypeFactory();
+            ClassLoader loader = this.getClass().getClassLoader();
+            try {
+                Class<?> requestClass = Class.forName(this.getRequestId(), true, loader);
+                Class<?> responseClass = Class.forName(this.getResponseId(), true, loader);
+                codec = new Codec(
+                        mapper.writerFor(requestClass),
+                        mapper.readerFor(responseClass),
+                        mapper.writerFor(types.constructCollectionType(List.class, requestClass)),
+                        mapper.readerFor(types.constructCollectionType(List.class, responseClass)),
+                        mapper.getFactory(),
+                        ApiJsonTelegram.class.isAssignableFrom(requestClass),
+                        ApiJsonTelegram.class.isAssignableFrom(responseClass));
+            } catch (ClassNotFoundException e) {
+                throw new BlancoRestException(e);
+            }
+            Codec past = CODECS.putIfAbsent(this.getClass(), codec);
+            if (past != null) {
+                codec = past;
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * 要求電文・応答電文の型に対して解決済みの ObjectWriter / ObjectReader の組です．
+     */
+    protected static final class Codec {
+        private final ObjectWriter writer;
+        private final ObjectReader reader;
+        private final ObjectWriter listWriter;
+        private final ObjectReader listReader;
+        private final JsonFactory factory;
+        private final boolean requestJsonTelegram;
+        private final boolean responseJsonTelegram;
+
+        Codec(ObjectWriter writer, ObjectReader reader, ObjectWriter listWriter, ObjectReader listReader,
+              JsonFactory factory, boolean requestJsonTelegram, boolean responseJsonTelegram) {
+            this.writer = writer;
+            this.reader = reader;
+            this.listWriter = listWriter;
+            this.listReader = listReader;
+            this.factory = factory;
+            this.requestJsonTelegram = requestJsonTelegram;
+            this.responseJsonTelegram = responseJsonTelegram;
+        }
+
+        /**
+         * @return 要求電文用の ObjectWriter
+         */
+        public ObjectWriter getWriter() {
+            return writer;
+        }
+
+        /**
+         * @return 応答電文用の ObjectReader
+         */
+        public ObjectReader getReader() {
+            return reader;
+        }
+
+        /**
+         * @return 要求電文の一覧 (JSON 配列) 用の ObjectWriter
+         */
+        public ObjectWriter getListWriter() {
+            return listWriter;
+        }
+
+        /**
+         * @return 応答電文の一覧 (JSON 配列) 用の ObjectReader
+         */
+        public ObjectReader getListReader() {
+            return listReader;
+        }
+
+        /**
+         * @return ApiJsonTelegram で変換する場合に使う JsonFactory
+         */
+        public JsonFactory getFactory() {
+            return factory;
+        }
+
+        /**
+         * @return 要求電文が ApiJsonTelegram を実装している場合は true
+         */
+        public boolean isRequestJsonTelegram() {
+            return requestJsonTelegram;
+        }
+
+        /**
+         * @return 応答電文が ApiJsonTelegram を実装している場合は true
+         */
+        public boolean isResponseJsonTelegram() {
+            return responseJsonTelegram;
+        }
+    }
+
     final public ApiTelegram send(ApiTelegram request) throws BlancoRestException {
-        ApiTelegram response = null;
+        if (getExecutionMode() == ApiExecutionMode.VIRTUAL_THREAD) {
+            return await(sendAsync(request));
+        }
+
+        Measurement measurement = startMeasurement();
+        boolean success = false;
+        try {
+            byte[] json = toJson(request, measurement);
+
+            ApiTransport transport = getTransport();
+            if (transport == null) {
+                // トランスポートが設定されていない場合は送信しません．
+                success = true;
+                return getDummyResponse();
+            }
+
+            byte[] body = exchange(transport, this.getLocation(), json);
+            if (measurement != null) {
+                measurement.transported(body);
+            }
+            ApiTelegram response = fromJson(body);
+            success = true;
+            return response;
+        } finally {
+            if (measurement != null) {
+                measurement.finish(success);
+            }
+        }
+    }
+
+    /**
+     * 複数の要求電文をまとめて送信し，全ての応答電文を受け取ります．
+     *
+     * 要求電文は sendAsync で並行して送信し，応答電文は要求電文と同じ順番で返します．
+     * 並行度は Executor と同時送信数の上限 (setMaxConcurrentPerEndpoint) に従います．
+     *
+     * @param requests 要求電文の一覧
+     * @return 応答電文の一覧
+     * @throws BlancoRestException いずれかの送信に失敗した場合．最初に失敗した要求電文の例外です．
+     */
+    public List<ApiTelegram> sendAll(List<? extends ApiTelegram> requests) throws BlancoRestException {
+        List<CompletableFuture<ApiTelegram>> futures = new ArrayList<CompletableFuture<ApiTelegram>>(requests.size());
+        for (ApiTelegram request : requests) {
+            futures.add(sendAsync(request));
+        }
+
+        List<ApiTelegram> responses = new ArrayList<ApiTelegram>(futures.size());
+        for (CompletableFuture<ApiTelegram> future : futures) {
+            responses.add(await(future));
+        }
+        return responses;
+    }
+
+    /**
+     * 同じ種類の要求電文をまとめて送信し，全ての応答電文を受け取ります．
+     *
+     * 要求電文の検査 (型の確認と検証) と JSON への変換は送信前に全件まとめて行い，
+     * 一件でも不正な要求電文があれば何も送信しません．
+     * 送信方法は getBatchMode に従います．ARRAY の場合は一つの JSON 配列として一度に送信し，
+     * SEQUENTIAL の場合は呼び出したスレッドから一件ずつ，前の応答を受信してから送信します．
+     * 応答電文は要求電文と同じ順番で返します．
+     *
+     * @param requests 要求電文の一覧
+     * @return 応答電文の一覧
+     * @throws BlancoRestException 検査，変換，送受信のいずれかに失敗した場合
+     */
+    public List<ApiTelegram> sendBatch(List<? extends ApiTelegram> requests) throws BlancoRestException {
+        if (requests == null) {
+            throw new BlancoRestException(
+                fBundle.getBlancorestErrorMsg01()
+            );
+        }
+
+        // 要求電文の型は，同じクラスが続く限り一度だけ確認します．
+        Class<?> checkedClass = null;
+        for (ApiTelegram request : requests) {
+            if (request == null) {
+                throw new BlancoRestException(
+                    fBundle.getBlancorestErrorMsg01()
+                );
+            }
+            if (request.getClass() != checkedClass) {
+                checkRequest(request);
+                checkedClass = request.getClass();
+            }
+            validateRequest(request);
+        }
+
+        ApiTransport transport = getTransport();
+        if (transport == null) {
+            // トランスポートが設定されていない場合は送信しません．
+            List<ApiTelegram> responses = new ArrayList<ApiTelegram>(requests.size());
+            for (int index = 0; index < requests.size(); index++) {
+                responses.add(getDummyResponse());
+            }
+            return responses;
+        }
+
+        Codec codec = getCodec();
+        String location = this.getLocation();
+        if (getBatchMode() == ApiBatchMode.ARRAY) {
+            Measurement measurement = startMeasurement();
+            boolean success = false;
+            try {
+                List<ApiTelegram> responses;
+                try {
+                    byte[] json = serializeArray(codec, requests);
+                    if (measurement != null) {
+                        measurement.serialized(json);
+                    }
+                    byte[] body = exchange(transport, location, json);
+                    if (measurement != null) {
+                        measurement.transported(body);
+                    }
+                    responses = deserializeArray(codec, body);
+                } catch (IOException e) {
+                    throw new BlancoRestException(e);
+                } catch (IllegalStateException e) {
+                    // newResponse で応答電文を生成できなかった場合です．
+                    throw new BlancoRestException(e);
+                }
+                if (responses == null || responses.size() != requests.size()) {
+                    throw new BlancoRestException("batch response count mismatch: expected "
+                            + requests.size() + " but was " + (responses == null ? 0 : responses.size()));
+                }
+                success = true;
+                return responses;
+            } finally {
+                if (measurement != null) {
+                    measurement.finish(success);
+                }
+            }
+        }
+
+        // 計測する場合は，要求電文ごとの変換時間を送信時に記録します．
+        boolean measured = metricsBinding != null;
+        List<byte[]> jsons = new ArrayList<byte[]>(requests.size());
+        long[] serializeNanos = measured ? new long[requests.size()] : null;
+        try {
+            for (ApiTelegram request : requests) {
+                long serializeStart = measured ? System.nanoTime() : 0;
+                jsons.add(serialize(codec, request));
+                if (measured) {
+                    serializeNanos[jsons.size() - 1] = System.nanoTime() - serializeStart;
+                }
+            }
+        } catch (IOException e) {
+            throw new BlancoRestException(e);
+        }
+
+        List<ApiTelegram> responses = new ArrayList<ApiTelegram>(jsons.size());
+        for (int index = 0; index < jsons.size(); index++) {
+            byte[] json = jsons.get(index);
+            Measurement measurement = measured ? startMeasurement() : null;
+            if (measurement == null) {
+                responses.add(fromJson(exchange(transport, location, json)));
+                continue;
+            }
+
+            measurement.serialized(json, serializeNanos[index]);
+            boolean success = false;
+            try {
+                byte[] body = exchange(transport, location, json);
+                measurement.transported(body);
+                responses.add(fromJson(body));
+                success = true;
+            } finally {
+                measurement.finish(success);
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * 要求電文を非同期に送信します．
+     *
+     * 要求電文の検査と JSON への変換は呼び出したスレッドで行い，送受信と応答電文の変換は
+     * 応答を受信した後で行います．失敗した場合，戻り値は BlancoRestException で異常終了します．
+     * トランスポートが設定されていない場合は，ダミーの応答電文で完了済みの値を返します．
+     *
+     * @param request 要求電文
+     * @return 応答電文を受け取る CompletableFuture
+     */
+    public CompletableFuture<ApiTelegram> sendAsync(ApiTelegram request) {
+        final Measurement measurement = startMeasurement();
+        final byte[] json;
+        try {
+            json = toJson(request, measurement);
+        } catch (BlancoRestException e) {
+            if (measurement != null) {
+                measurement.finish(false);
+            }
+            CompletableFuture<ApiTelegram> failed = new CompletableFuture<ApiTelegram>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        final ApiTransport transport = getTransport();
+        if (transport == null) {
+            // トランスポートが設定されていない場合は送信しません．
+            if (measurement != null) {
+                measurement.finish(true);
+            }
+            return CompletableFuture.completedFuture(getDummyResponse());
+        }
 
+        final String location = this.getLocation();
+        CompletableFuture<byte[]> body;
+        if (transport instanceof ApiAsyncTransport) {
+            body = exchangeAsync((ApiAsyncTransport) transport, location, json);
+        } else {
+            body = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return exchange(transport, location, json);
+                } catch (BlancoRestException e) {
+                    throw new CompletionException(e);
+                }
+            }, getAsyncExecutor());
+        }
+
+        CompletableFuture<ApiTelegram> response = body.thenApply(bytes -> {
+            if (measurement != null) {
+                measurement.transported(bytes);
+            }
+            try {
+                return fromJson(bytes);
+            } catch (BlancoRestException e) {
+                throw new CompletionException(e);
+            }
+        });
+        if (measurement == null) {
+            return response;
+        }
+        return response.whenComplete((result, error) -> measurement.finish(error == null));
+    }
+
+    /**
+     * 要求電文を非同期に送信し，応答電文を指定された型で受け取ります．
+     * 自動生成された API クラスの型付きの sendAsync から呼び出されます．
+     *
+     * @param request 要求電文
+     * @param responseType 応答電文の型
+     * @return 応答電文を受け取る CompletableFuture
+     */
+    final protected <T extends ApiTelegram> CompletableFuture<T> sendAsync(ApiTelegram request, final Class<T> responseType) {
+        return sendAsync(request).thenApply(responseType::cast);
+    }
+
+    /*
+     * 送信先ごとの同時送信数の上限に従って，トランスポートで送受信します．
+     */
+    private byte[] exchange(ApiTransport transport, String location, byte[] json) throws BlancoRestException {
+        Semaphore permit = getEndpointPermit(location);
+        if (permit == null) {
+            return transport.send(location, json);
+        }
+
+        try {
+            permit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlancoRestException(e);
+        }
+        try {
+            return transport.send(location, json);
+        } finally {
+            permit.release();
+        }
+    }
+
+    /*
+     * 送信先ごとの同時送信数の上限に従って，非同期のトランスポートで送受信します．
+     * 上限に達している場合は呼び出したスレッドでは待たず，Executor 上で空きを待ってから送信します．
+     */
+    private CompletableFuture<byte[]> exchangeAsync(final ApiAsyncTransport transport,
+                                                    final String location, final byte[] json) {
+        final Semaphore permit = getEndpointPermit(location);
+        if (permit == null) {
+            return transport.sendAsync(location, json);
+        }
+
+        if (permit.tryAcquire()) {
+            return dispatchAsync(transport, location, json, permit);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(new BlancoRestException(e));
+            }
+            return permit;
+        }, getAsyncExecutor()).thenCompose(acquired -> dispatchAsync(transport, location, json, acquired));
+    }
+
+    /*
+     * 取得済みの枠で非同期のトランスポートに送信し，送受信が終わったら枠を返します．
+     * トランスポートが例外を投げた場合も，異常終了した値を返します．
+     */
+    private static CompletableFuture<byte[]> dispatchAsync(ApiAsyncTransport transport, String location,
+                                                           byte[] json, final Semaphore permit) {
+        CompletableFuture<byte[]> body;
+        try {
+            body = transport.sendAsync(location, json);
+        } catch (RuntimeException e) {
+            body = new CompletableFuture<byte[]>();
+            body.completeExceptionally(e);
+        }
+        return body.whenComplete((result, error) -> permit.release());
+    }
+
+    /*
+     * 送信先の同時送信数を制限するセマフォを取得します．制限しない場合は null を返します．
+     */
+    private Semaphore getEndpointPermit(String location) {
+        Semaphore permit = fEndpointPermit;
+        if (permit != null) {
+            return permit == UNLIMITED ? null : permit;
+        }
+
+        int max = defaultMaxConcurrentPerEndpoint;
+        if (max <= 0) {
+            return null;
+        }
+        ConcurrentMap<String, Semaphore> permits = endpointPermits;
+        String key = location == null ? "" : location;
+        permit = permits.get(key);
+        if (permit == null) {
+            permit = new Semaphore(max);
+            Semaphore past = permits.putIfAbsent(key, permit);
+            if (past != null) {
+                permit = past;
+            }
+        }
+        return permit;
+    }
+
+    /*
+     * 非同期の送信の完了を待ちます．
+     */
+    private static ApiTelegram await(CompletableFuture<ApiTelegram> future) throws BlancoRestException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlancoRestException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BlancoRestException) {
+                throw (BlancoRestException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BlancoRestException((Exception) cause);
+        }
+    }
+
+    /*
+     * 要求電文がこの API クラスの要求電文であることを確認します．
+     */
+    private void checkRequest(ApiTelegram request) throws BlancoRestException {
         if (request == null) {
             throw new BlancoRestException(
                 fBundle.getBlancorestErrorMsg01()
@@ -37,46 +965,190 @@ abstract public class ApiBase {
                             this.getRequestId(), request.getClass().getCanonicalName())
             );
         }
+    }
+
+    /*
+     * 要求電文が定義書の制約を満たしていることを，getValidationMode の方法で検証します．
+     */
+    private void validateRequest(ApiTelegram request) throws BlancoRestException {
+        ApiValidationMode mode = getValidationMode();
+        if (mode == ApiValidationMode.NONE || !(request instanceof ApiValidatable)) {
+            return;
+        }
+
+        List<String> errors = new ArrayList<String>(4);
+        if (((ApiValidatable) request).validate(errors, mode == ApiValidationMode.FAIL_FAST)) {
+            return;
+        }
 
-        ObjectMapper mapper = new ObjectMapper();
+        StringBuilder message = new StringBuilder(64 * errors.size() + 64);
+        message.append("validation failed: ").append(request.getClass().getCanonicalName());
+        for (String error : errors) {
+            message.append("\n  ").append(error);
+        }
+        throw new BlancoRestException(message.toString());
+    }
+
+    /*
+     * 要求電文を検査し，JSON に変換します．計測する場合は変換時間を記録します．
+     */
+    private byte[] toJson(ApiTelegram request, Measurement measurement) throws BlancoRestException {
+        checkRequest(request);
+        validateRequest(request);
+
+        Codec codec = getCodec();
+        byte[] json;
         try {
-            String json = mapper.writeValueAsString(request);
-            System.out.println("JSON: " + json);
+            if (measurement != null) {
+                measurement.serializing();
+            }
+            json = serialize(codec, request);
+            if (measurement != null) {
+                measurement.serialized(json);
+            }
         } catch (JsonProcessingException e) {
             throw new BlancoRestException(e);
+        } catch (IOException e) {
+            throw new BlancoRestException(e);
         }
+        return json;
+    }
 
-        response = getDummyResponse();
+    /*
+     * 要求電文を JSON に変換します．ApiJsonTelegram を実装している場合はその writeJson を使います．
+     */
+    private static byte[] serialize(Codec codec, ApiTelegram request) throws IOException {
+        if (!codec.isRequestJsonTelegram()) {
+            return codec.getWriter().writeValueAsBytes(request);
+        }
 
-        return response;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        JsonGenerator generator = codec.getFactory().createGenerator(out);
+        try {
+            ((ApiJsonTelegram) request).writeJson(generator);
+        } finally {
+            generator.close();
+        }
+        return out.toByteArray();
     }
 
-    final public ApiTelegram getDummyResponse() {
-        ApiTelegram response = null;
-
-        String responseId = this.getResponseId();
+    /*
+     * 要求電文の一覧を JSON 配列に変換します．ApiJsonTelegram を実装している場合はその writeJson を使います．
+     */
+    private static byte[] serializeArray(Codec codec, List<? extends ApiTelegram> requests) throws IOException {
+        if (!codec.isRequestJsonTelegram()) {
+            return codec.getListWriter().writeValueAsBytes(requests);
+        }
 
-        Class<?> clazz;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * requests.size() + 2);
+        JsonGenerator generator = codec.getFactory().createGenerator(out);
         try {
-            clazz = Class.forName(responseId);
+            generator.writeStartArray();
+            for (ApiTelegram request : requests) {
+                ((ApiJsonTelegram) request).writeJson(generator);
+            }
+            generator.writeEndArray();
+        } finally {
+            generator.close();
+        }
+        return out.toByteArray();
+    }
 
-            Constructor<?> constructor =
-                    clazz.getConstructor(new Class<?>[0]);
+    /*
+     * JSON 配列の応答電文の一覧を変換します．ApiJsonTelegram を実装している場合はその readJson を使います．
+     */
+    private List<ApiTelegram> deserializeArray(Codec codec, byte[] body) throws IOException {
+        if (!codec.isResponseJsonTelegram()) {
+            return codec.getListReader().readValue(body);
+        }
 
-            // インスタンス生成
-            response = (ApiTelegram)constructor.newInstance();
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (NoSuchMethodException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+        JsonParser parser = codec.getFactory().createParser(body);
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new JsonParseException("START_ARRAY expected: " + token, parser.getCurrentLocation());
+            }
+            List<ApiTelegram> responses = new ArrayList<ApiTelegram>();
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.VALUE_NULL) {
+                    responses.add(null);
+                    continue;
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException("START_OBJECT expected: " + token, parser.getCurrentLocation());
+                }
+                ApiTelegram response = this.newResponse();
+                ((ApiJsonTelegram) response).readJson(parser);
+                responses.add(response);
+            }
+            return responses;
+        } finally {
+            parser.close();
         }
+    }
 
+    /*
+     * JSON 形式の応答電文を変換します．ApiJsonTelegram を実装している場合はその readJson を使います．
+     */
+    private ApiTelegram fromJson(byte[] body) throws BlancoRestException {
+        Codec codec = getCodec();
+        ApiTelegram response = null;
+        try {
+            if (codec.isResponseJsonTelegram()) {
+                response = this.newResponse();
+                JsonParser parser = codec.getFactory().createParser(body);
+                try {
+                    ((ApiJsonTelegram) response).readJson(parser);
+                } finally {
+                    parser.close();
+                }
+            } else {
+                response = codec.getReader().readValue(body);
+            }
+        } catch (IOException e) {
+            throw new BlancoRestException(e);
+        } catch (IllegalStateException e) {
+            // newResponse で応答電文を生成できなかった場合です．
+            throw new BlancoRestException(e);
+        }
         return response;
     }
+
+    final public ApiTelegram getDummyResponse() {
+        return this.newResponse();
+    }
+
+    /**
+     * 空の応答電文を生成します．
+     *
+     * 自動生成された API クラスでは，応答電文のコンストラクタを直接呼び出すように override されます．
+     * override されていない場合は，getResponseId のクラスのコンストラクタを
+     * API クラスごとに一度だけ解決して MethodHandle で呼び出します．
+     *
+     * @return 応答電文
+     * @throws IllegalStateException 応答電文のクラスが見つからない，公開された引数なしのコンストラクタが無い，
+     *                               またはコンストラクタで例外が発生した場合
+     */
+    protected ApiTelegram newResponse() {
+        try {
+            MethodHandle constructor = RESPONSE_CONSTRUCTORS.get(this.getClass());
+            if (constructor == null) {
+                Class<?> clazz = Class.forName(this.getResponseId(), true, this.getClass().getClassLoader());
+                constructor = MethodHandles.publicLookup().findConstructor(
+                        clazz, MethodType.methodType(void.class)).asType(MethodType.methodType(ApiTelegram.class));
+                RESPONSE_CONSTRUCTORS.putIfAbsent(this.getClass(), constructor);
+            }
+
+            // インスタンス生成
+            return (ApiTelegram) constructor.invokeExact();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // クラスやコンストラクタの解決の失敗，またはコンストラクタで発生した例外です．
+            throw new IllegalStateException("cannot create response: " + this.getResponseId(), e);
+        }
+    }
 }
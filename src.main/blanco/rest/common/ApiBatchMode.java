@@ -0,0 +1,20 @@
+package blanco.rest.common;
+
+/**
+ * ApiBase.sendBatch の送信方法です．
+ */
+public enum ApiBatchMode {
+    /**
+     * 全ての要求電文を一つの JSON 配列にまとめて一度に送信し，応答電文も JSON 配列で受け取ります．
+     * サーバ側が配列の電文に対応している必要があります．
+     */
+    ARRAY,
+
+    /**
+     * 要求電文を一件ずつ，前の応答を受信してから順に送信します (標準)．
+     * トランスポートが keep-alive に対応していれば同じ接続を使い回します．
+     * HTTP パイプライン (応答を待たずに続けて送信すること) は行いません．
+     * サーバ側の対応は不要です．
+     */
+    SEQUENTIAL
+}
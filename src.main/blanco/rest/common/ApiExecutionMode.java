@@ -0,0 +1,18 @@
+package blanco.rest.common;
+
+/**
+ * ApiBase.send の実行方法です．
+ */
+public enum ApiExecutionMode {
+    /**
+     * 呼び出したスレッドで送受信します (標準)．
+     */
+    DIRECT,
+
+    /**
+     * 送受信を仮想スレッド (タスクごとに一つ) で実行し，呼び出したスレッドは結果を待ちます．
+     * sendAsync も ApiBase.setAsyncExecutor の設定に関わらず仮想スレッドで送受信します．
+     * 仮想スレッドの無い JVM では設定できません (ApiExecutors.isVirtualThreadSupported で確認できます)．
+     */
+    VIRTUAL_THREAD
+}
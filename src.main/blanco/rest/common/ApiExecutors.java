@@ -0,0 +1,162 @@
+package blanco.rest.common;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ApiBase が使う Executor を生成します．
+ *
+ * blancoRest は Java 8 でコンパイルするため，仮想スレッドの API はリフレクションで呼び出します．
+ */
+public final class ApiExecutors {
+
+    private ApiExecutors() {
+    }
+
+    /**
+     * @return この JVM で仮想スレッドが使える場合は true
+     */
+    public static boolean isVirtualThreadSupported() {
+        return findVirtualThreadFactoryMethod() != null;
+    }
+
+    /**
+     * タスクごとに仮想スレッドを生成する Executor を生成します．
+     *
+     * @return Executor．仮想スレッドが使えない JVM の場合は null
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method method = findVirtualThreadFactoryMethod();
+        if (method == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // preview 機能として無効になっている JVM などです．
+            return null;
+        }
+    }
+
+    /**
+     * 同時に実行するタスクの数を制限する Executor を生成します．
+     *
+     * 上限を超えたタスクはキューに入れ，実行中のタスクが終わるたびに順に executor に渡します．
+     * 仮想スレッドのようにタスクごとにスレッドを生成する Executor と組み合わせて使います．
+     *
+     * @param executor タスクを実行する Executor
+     * @param maxConcurrency 同時に実行するタスクの数の上限
+     * @return Executor
+     */
+    public static Executor newBoundedExecutor(Executor executor, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency: " + maxConcurrency);
+        }
+        return new BoundedExecutor(executor, maxConcurrency);
+    }
+
+    /**
+     * 固定数の daemon スレッドでタスクを実行する Executor を生成します．
+     *
+     * スレッドは必要になった時に生成し，一定時間使われなければ終了します．
+     * スレッドが全て使用中の場合，タスクはキューで待ちます．
+     * daemon スレッドなので，アプリケーションの終了を妨げません．
+     *
+     * @param name スレッド名の接頭辞
+     * @param threads スレッド数の上限
+     * @return Executor
+     */
+    public static ExecutorService newDaemonThreadPool(final String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /*
+     * 同時に実行するタスクの数を制限する Executor です．
+     */
+    private static final class BoundedExecutor implements Executor {
+        private final Executor executor;
+        private final int maxConcurrency;
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicInteger running = new AtomicInteger();
+
+        BoundedExecutor(Executor executor, int maxConcurrency) {
+            this.executor = executor;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public void execute(Runnable task) {
+            queue.add(task);
+            drain();
+        }
+
+        /*
+         * 上限に空きがある間，キューのタスクを executor に渡します．
+         */
+        private void drain() {
+            for (;;) {
+                int current = running.get();
+                if (current >= maxConcurrency) {
+                    return;
+                }
+                if (!running.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                final Runnable task = queue.poll();
+                if (task == null) {
+                    running.decrementAndGet();
+                    // 枠を返す間に追加されたタスクを取りこぼさないよう，キューを確認し直します．
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            try {
+                                task.run();
+                            } finally {
+                                running.decrementAndGet();
+                                drain();
+                            }
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    running.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static Method findVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
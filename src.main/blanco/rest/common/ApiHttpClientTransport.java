@@ -0,0 +1,283 @@
+package blanco.rest.common;
+
+import blanco.rest.Exception.BlancoRestException;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * java.net.http.HttpClient (Java 11 以降) で電文を送受信する非同期のトランスポートです．
+ *
+ * ApiBase.sendAsync は送受信をこのトランスポートに任せるため，応答を待つ間にスレッドを占有しません．
+ * HttpClient は HTTP/2 に対応しており，送信先が HTTP/2 に対応している場合は一つの接続に
+ * 複数の要求を多重化します．対応していない場合は HTTP/1.1 で送受信します．
+ *
+ * blancoRest は Java 8 でコンパイルするため，HttpClient の API はリフレクションで呼び出します．
+ * HttpClient の無い JVM では生成できません．isSupported で確認してから生成してください．
+ */
+public class ApiHttpClientTransport implements ApiAsyncTransport {
+
+    /*
+     * デフォルトの接続タイムアウト (ミリ秒) です．
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = ApiHttpTransport.DEFAULT_CONNECT_TIMEOUT;
+
+    /*
+     * デフォルトの読み込みタイムアウト (ミリ秒) です．要求の送信から応答の受信までの時間に使います．
+     */
+    public static final int DEFAULT_READ_TIMEOUT = ApiHttpTransport.DEFAULT_READ_TIMEOUT;
+
+    private final String baseUrl;
+    private final Object client;
+    private volatile Duration readTimeout = Duration.ofMillis(DEFAULT_READ_TIMEOUT);
+
+    /**
+     * 接続タイムアウトがデフォルトのトランスポートを生成します．
+     *
+     * @param baseUrl location の前に付ける URL (例: http://localhost:8080)．
+     *                location が http:// などで始まる場合は使いません．
+     * @throws IllegalStateException HttpClient の無い JVM の場合
+     */
+    public ApiHttpClientTransport(String baseUrl) {
+        this(baseUrl, DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * @param baseUrl location の前に付ける URL (例: http://localhost:8080)．
+     *                location が http:// などで始まる場合は使いません．
+     * @param connectTimeout 接続タイムアウト (ミリ秒)
+     * @throws IllegalStateException HttpClient の無い JVM の場合
+     */
+    public ApiHttpClientTransport(String baseUrl, int connectTimeout) {
+        if (HttpClientApi.INSTANCE == null) {
+            throw new IllegalStateException("java.net.http.HttpClient is not available");
+        }
+        this.baseUrl = baseUrl == null ? "" : baseUrl;
+        this.client = HttpClientApi.INSTANCE.newClient(Duration.ofMillis(connectTimeout));
+    }
+
+    /**
+     * @return この JVM で HttpClient が使える場合は true
+     */
+    public static boolean isSupported() {
+        return HttpClientApi.INSTANCE != null;
+    }
+
+    /**
+     * @param readTimeout 読み込みタイムアウト (ミリ秒)
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = Duration.ofMillis(readTimeout);
+    }
+
+    public byte[] send(String location, byte[] request) throws BlancoRestException {
+        try {
+            return sendAsync(location, request).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlancoRestException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BlancoRestException) {
+                throw (BlancoRestException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BlancoRestException((Exception) cause);
+        }
+    }
+
+    public CompletableFuture<byte[]> sendAsync(String location, byte[] request) {
+        final URI uri;
+        final CompletableFuture<?> response;
+        try {
+            uri = toUri(location);
+            response = HttpClientApi.INSTANCE.sendAsync(client, uri, readTimeout, request);
+        } catch (BlancoRestException e) {
+            CompletableFuture<byte[]> failed = new CompletableFuture<byte[]>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        return response.handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CompletionException(cause instanceof BlancoRestException
+                        ? cause : new BlancoRestException((Exception) cause));
+            }
+            int status = HttpClientApi.INSTANCE.statusCode(result);
+            byte[] body = HttpClientApi.INSTANCE.body(result);
+            if (status >= 400) {
+                throw new CompletionException(new BlancoRestException("HTTP " + status + " " + uri + ": "
+                        + new String(body, StandardCharsets.UTF_8)));
+            }
+            return body;
+        });
+    }
+
+    /*
+     * location から送信先の URI を組み立てます．
+     */
+    protected URI toUri(String location) throws BlancoRestException {
+        if (location == null) {
+            location = "";
+        }
+        try {
+            if (location.startsWith("http://") || location.startsWith("https://")) {
+                return new URI(location);
+            }
+            return new URI(baseUrl + location);
+        } catch (URISyntaxException e) {
+            throw new BlancoRestException(e);
+        }
+    }
+
+    /*
+     * リフレクションで解決した HttpClient の API です．最初に使われた時に解決します．
+     * HttpClient の無い JVM では INSTANCE は null です．
+     */
+    private static final class HttpClientApi {
+        static final HttpClientApi INSTANCE = resolve();
+
+        private final MethodHandle newClientBuilder;
+        private final MethodHandle clientConnectTimeout;
+        private final MethodHandle clientBuild;
+        private final MethodHandle newRequestBuilder;
+        private final MethodHandle requestTimeout;
+        private final MethodHandle requestHeader;
+        private final MethodHandle requestPost;
+        private final MethodHandle requestBuild;
+        private final MethodHandle ofByteArray;
+        private final Object bodyHandler;
+        private final MethodHandle sendAsync;
+        private final MethodHandle statusCode;
+        private final MethodHandle body;
+
+        private HttpClientApi(MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+            ClassLoader loader = ClassLoader.getSystemClassLoader();
+            Class<?> client = Class.forName("java.net.http.HttpClient", false, loader);
+            Class<?> clientBuilder = Class.forName("java.net.http.HttpClient$Builder", false, loader);
+            Class<?> request = Class.forName("java.net.http.HttpRequest", false, loader);
+            Class<?> requestBuilder = Class.forName("java.net.http.HttpRequest$Builder", false, loader);
+            Class<?> bodyPublisher = Class.forName("java.net.http.HttpRequest$BodyPublisher", false, loader);
+            Class<?> bodyPublishers = Class.forName("java.net.http.HttpRequest$BodyPublishers", false, loader);
+            Class<?> response = Class.forName("java.net.http.HttpResponse", false, loader);
+            Class<?> bodyHandler = Class.forName("java.net.http.HttpResponse$BodyHandler", false, loader);
+            Class<?> bodyHandlers = Class.forName("java.net.http.HttpResponse$BodyHandlers", false, loader);
+
+            newClientBuilder = lookup.findStatic(client, "newBuilder", MethodType.methodType(clientBuilder));
+            clientConnectTimeout = lookup.findVirtual(clientBuilder, "connectTimeout",
+                    MethodType.methodType(clientBuilder, Duration.class));
+            clientBuild = lookup.findVirtual(clientBuilder, "build", MethodType.methodType(client));
+            newRequestBuilder = lookup.findStatic(request, "newBuilder",
+                    MethodType.methodType(requestBuilder, URI.class));
+            requestTimeout = lookup.findVirtual(requestBuilder, "timeout",
+                    MethodType.methodType(requestBuilder, Duration.class));
+            requestHeader = lookup.findVirtual(requestBuilder, "header",
+                    MethodType.methodType(requestBuilder, String.class, String.class));
+            requestPost = lookup.findVirtual(requestBuilder, "POST",
+                    MethodType.methodType(requestBuilder, bodyPublisher));
+            requestBuild = lookup.findVirtual(requestBuilder, "build", MethodType.methodType(request));
+            ofByteArray = lookup.findStatic(bodyPublishers, "ofByteArray",
+                    MethodType.methodType(bodyPublisher, byte[].class));
+            try {
+                this.bodyHandler = lookup.findStatic(bodyHandlers, "ofByteArray",
+                        MethodType.methodType(bodyHandler)).invoke();
+            } catch (ReflectiveOperationException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ReflectiveOperationException(e);
+            }
+            sendAsync = lookup.findVirtual(client, "sendAsync",
+                    MethodType.methodType(CompletableFuture.class, request, bodyHandler));
+            statusCode = lookup.findVirtual(response, "statusCode", MethodType.methodType(int.class));
+            body = lookup.findVirtual(response, "body", MethodType.methodType(Object.class));
+        }
+
+        private static HttpClientApi resolve() {
+            try {
+                return new HttpClientApi(MethodHandles.publicLookup());
+            } catch (ReflectiveOperationException e) {
+                // Java 8 など，HttpClient の無い JVM です．
+                return null;
+            }
+        }
+
+        Object newClient(Duration connectTimeout) {
+            try {
+                Object builder = newClientBuilder.invoke();
+                builder = clientConnectTimeout.invoke(builder, connectTimeout);
+                return clientBuild.invoke(builder);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        CompletableFuture<?> sendAsync(Object client, URI uri, Duration timeout, byte[] json)
+                throws BlancoRestException {
+            try {
+                Object builder = newRequestBuilder.invoke(uri);
+                builder = requestTimeout.invoke(builder, timeout);
+                builder = requestHeader.invoke(builder, "Content-Type", "application/json; charset=UTF-8");
+                builder = requestHeader.invoke(builder, "Accept", "application/json");
+                builder = requestPost.invoke(builder, ofByteArray.invoke(json));
+                return (CompletableFuture<?>) sendAsync.invoke(client, requestBuild.invoke(builder), bodyHandler);
+            } catch (IllegalArgumentException e) {
+                // URI のスキームが http / https でない場合などです．
+                throw new BlancoRestException(e);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new BlancoRestException(e instanceof Exception ? (Exception) e : new IOException(e));
+            }
+        }
+
+        int statusCode(Object response) {
+            try {
+                return (int) statusCode.invoke(response);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        byte[] body(Object response) {
+            try {
+                byte[] bytes = (byte[]) body.invoke(response);
+                return bytes == null ? new byte[0] : bytes;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package blanco.rest.common;
+
+import blanco.rest.Exception.BlancoRestException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP で電文を送受信する標準のトランスポートです．
+ *
+ * JDK の HttpURLConnection を使い，要求電文を JSON として POST します．
+ * 応答を最後まで読み切ってから閉じるため，接続は JDK の keep-alive キャッシュに戻され
+ * 同じホストへの次の送信で再利用されます．同時に使用する接続数はプールサイズで制限し，
+ * 空きが無い場合はプールの待ち時間 (setPoolTimeout) まで待ちます．
+ *
+ * 接続そのものは JDK の keep-alive キャッシュが管理し，このクラスは管理しません．
+ * キャッシュが送信先ごとに保持する空き接続の数はシステムプロパティ http.maxConnections
+ * (JDK の標準は 5) で決まり，それを超えた接続は使用後に閉じられます．
+ * このクラスはシステムプロパティを変更しないため，http.maxConnections にはプールサイズ以上の値を
+ * 利用者が指定してください (例: -Dhttp.maxConnections=20)．JDK はこの値を最初の HTTP 接続の時に
+ * 一度だけ読み込みます．
+ *
+ * HttpURLConnection は HTTP/1.1 のみに対応しており，このクラスは HTTP/2 を使いません．
+ * また，送受信の間は呼び出したスレッドを占有します．Java 11 以降で HTTP/2 や
+ * ノンブロッキングの sendAsync を使う場合は ApiHttpClientTransport を設定してください．
+ */
+public class ApiHttpTransport implements ApiTransport {
+
+    /*
+     * デフォルトのプールサイズ (同時接続数) です．
+     */
+    public static final int DEFAULT_POOL_SIZE = 20;
+
+    /*
+     * デフォルトの接続タイムアウト (ミリ秒) です．
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /*
+     * デフォルトの読み込みタイムアウト (ミリ秒) です．
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    /*
+     * デフォルトのプールの空き待ちのタイムアウト (ミリ秒) です．
+     */
+    public static final int DEFAULT_POOL_TIMEOUT = 10000;
+
+    private final String baseUrl;
+    private volatile Semaphore pool = new Semaphore(DEFAULT_POOL_SIZE);
+    private volatile int poolTimeout = DEFAULT_POOL_TIMEOUT;
+    private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+
+    /**
+     * @param baseUrl location の前に付ける URL (例: http://localhost:8080)．
+     *                location が http:// などで始まる場合は使いません．
+     */
+    public ApiHttpTransport(String baseUrl) {
+        this.baseUrl = baseUrl == null ? "" : baseUrl;
+    }
+
+    /**
+     * プールサイズ (同時に使用する接続数の上限) を設定します．
+     * 送信中に変更した場合，変更前に取得された接続は変更前のプールに返されます．
+     * 使用後の接続を再利用するには，http.maxConnections もプールサイズ以上にしてください．
+     *
+     * @param poolSize プールサイズ
+     */
+    public void setPoolSize(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize: " + poolSize);
+        }
+        this.pool = new Semaphore(poolSize);
+    }
+
+    /**
+     * @param poolTimeout プールの空きを待つ時間 (ミリ秒)．0 の場合は空きが出るまで待ち続けます．
+     */
+    public void setPoolTimeout(int poolTimeout) {
+        if (poolTimeout < 0) {
+            throw new IllegalArgumentException("poolTimeout: " + poolTimeout);
+        }
+        this.poolTimeout = poolTimeout;
+    }
+
+    /**
+     * @param connectTimeout 接続タイムアウト (ミリ秒)
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @param readTimeout 読み込みタイムアウト (ミリ秒)
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public byte[] send(String location, byte[] request) throws BlancoRestException {
+        Semaphore pool = this.pool;
+        int poolTimeout = this.poolTimeout;
+        try {
+            if (poolTimeout == 0) {
+                pool.acquire();
+            } else if (!pool.tryAcquire(poolTimeout, TimeUnit.MILLISECONDS)) {
+                throw new BlancoRestException("connection pool timeout: " + location);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlancoRestException(e);
+        }
+
+        try {
+            return post(toUrl(location), request);
+        } catch (IOException e) {
+            throw new BlancoRestException(e);
+        } finally {
+            pool.release();
+        }
+    }
+
+    /*
+     * location から送信先の URL を組み立てます．
+     */
+    protected URL toUrl(String location) throws IOException {
+        if (location == null) {
+            location = "";
+        }
+        if (location.startsWith("http://") || location.startsWith("https://")) {
+            return new URL(location);
+        }
+        return new URL(baseUrl + location);
+    }
+
+    private byte[] post(URL url, byte[] request) throws IOException, BlancoRestException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setUseCaches(false);
+        connection.setFixedLengthStreamingMode(request.length);
+        connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        connection.setRequestProperty("Accept", "application/json");
+
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(request);
+        } finally {
+            out.close();
+        }
+
+        int status = connection.getResponseCode();
+        if (status >= 400) {
+            // エラー応答も読み切って接続を keep-alive キャッシュに戻します．
+            byte[] body = readFully(connection.getErrorStream());
+            throw new BlancoRestException("HTTP " + status + " " + url + ": "
+                    + new String(body, "UTF-8"));
+        }
+        return readFully(connection.getInputStream());
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            byte[] buf = new byte[4096];
+            for (int length; (length = in.read(buf)) > 0;) {
+                out.write(buf, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package blanco.rest.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * JSON との変換を自前で行う電文です．
+ *
+ * blancoRest の jsonCodec オプションを有効にすると，生成される電文クラスがこのインタフェースを実装します．
+ * ApiBase は要求電文・応答電文がこのインタフェースを実装している場合，
+ * Jackson databind のイントロスペクションを使わずにこれらのメソッドで変換します．
+ */
+public interface ApiJsonTelegram {
+
+    /**
+     * この電文を JSON オブジェクトとして書き出します．
+     *
+     * @param generator 書き出し先
+     * @throws IOException 書き出しに失敗した場合
+     */
+    void writeJson(JsonGenerator generator) throws IOException;
+
+    /**
+     * JSON オブジェクトを読み込んでこの電文に設定します．
+     * パーサは読み込むオブジェクトの START_OBJECT の位置，またはその直前にある必要があります．
+     *
+     * @param parser 読み込み元
+     * @throws IOException 読み込みに失敗した場合
+     */
+    void readJson(JsonParser parser) throws IOException;
+}
@@ -0,0 +1,146 @@
+package blanco.rest.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 応答時間の分布を記録するヒストグラムです．
+ *
+ * HdrHistogram と同じく，2 のべき乗ごとの区間をさらに 64 等分した対数線形のバケットを使います．
+ * 1 ナノ秒から約 18 分までの値を相対誤差 1/64 (約 1.6%) 以内で記録でき，
+ * メモリ使用量は記録件数によらず一定 (約 18KB) です．範囲を超える値は最大のバケットに記録します．
+ *
+ * 記録はロックを使わないため，複数のスレッドから同時に呼び出せます．
+ * 集計値の取得は記録と並行して行えますが，取得中の記録が反映されるかどうかは不定です．
+ */
+public final class ApiLatencyHistogram {
+
+    /*
+     * 2 のべき乗ごとの区間を分割するバケット数の対数です．
+     * 値が 2^SUB_BUCKET_BITS 未満の場合は 1 ナノ秒単位で記録します．
+     */
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_BITS = SUB_BUCKET_BITS - 1;
+
+    /**
+     * 区別して記録できる最大の値 (ナノ秒) です．
+     */
+    public static final long MAX_TRACKABLE_VALUE = (1L << 40) - 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(bucketIndex(MAX_TRACKABLE_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 値を記録します．
+     *
+     * @param nanos 応答時間 (ナノ秒)．負の値は 0 として記録します．
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : nanos;
+        buckets.incrementAndGet(bucketIndex(value > MAX_TRACKABLE_VALUE ? MAX_TRACKABLE_VALUE : value));
+        count.increment();
+        total.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return 記録した件数
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return 記録した値の最大値 (ナノ秒)
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return 記録した値の平均値 (ナノ秒)．記録が無い場合は 0
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * 指定されたパーセンタイルの値を返します．
+     *
+     * 値はバケットの上限です．記録した値の最大値を超えることはありません．
+     *
+     * @param percentile パーセンタイル (0 から 100)
+     * @return 値 (ナノ秒)．記録が無い場合は 0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[buckets.length()];
+        long n = 0;
+        for (int index = 0; index < snapshot.length; index++) {
+            snapshot[index] = buckets.get(index);
+            n += snapshot[index];
+        }
+        if (n == 0) {
+            return 0;
+        }
+
+        double p = percentile < 0 ? 0 : (percentile > 100 ? 100 : percentile);
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+        long seen = 0;
+        for (int index = 0; index < snapshot.length; index++) {
+            seen += snapshot[index];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(index), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * 集計値を一行の文字列で返します．時間はミリ秒です．
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                getCount(), getMean() / TimeUnit.MILLISECONDS.toNanos(1),
+                toMillis(getValueAtPercentile(50)), toMillis(getValueAtPercentile(90)),
+                toMillis(getValueAtPercentile(99)), toMillis(getValueAtPercentile(99.9)),
+                toMillis(getMax()));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /*
+     * 値を記録するバケットの位置を返します．
+     * 値が 2^s * 64 以上 2^s * 128 未満の場合 (s >= 1)，位置は (s + 1) * 64 + (値 >> s) - 64 です．
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_HALF_BITS;
+        return (shift << SUB_BUCKET_HALF_BITS) + (int) (value >>> shift);
+    }
+
+    /*
+     * バケットに記録される値の上限を返します．
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_HALF_BITS) - 1;
+        long lowest = (long) (index - (shift << SUB_BUCKET_HALF_BITS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,55 @@
+package blanco.rest.common;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 送信の計測値をメモリ上に電文の種類ごとに集計する，標準の ApiMetricsRegistry です．
+ *
+ * <pre>
+ * ApiMetrics metrics = new ApiMetrics();
+ * ApiBase.setMetricsRegistry(metrics);
+ * ...
+ * for (ApiTelegramMetrics telegram : metrics.getAll().values()) {
+ *     System.out.println(telegram);
+ * }
+ * </pre>
+ */
+public class ApiMetrics implements ApiMetricsRegistry {
+
+    private final ConcurrentMap<String, ApiTelegramMetrics> telegrams = new ConcurrentHashMap<String, ApiTelegramMetrics>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public ApiMetricsRecorder getRecorder(String requestId) {
+        return getTelegramMetrics(requestId);
+    }
+
+    /**
+     * 電文の種類の計測値を返します．まだ無い場合は生成します．
+     *
+     * @param requestId 要求電文のクラス名
+     * @return 計測値
+     */
+    public ApiTelegramMetrics getTelegramMetrics(String requestId) {
+        ApiTelegramMetrics metrics = telegrams.get(requestId);
+        if (metrics == null) {
+            metrics = new ApiTelegramMetrics(requestId);
+            ApiTelegramMetrics past = telegrams.putIfAbsent(requestId, metrics);
+            if (past != null) {
+                metrics = past;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return 要求電文のクラス名と計測値の対応 (クラス名順)
+     */
+    public Map<String, ApiTelegramMetrics> getAll() {
+        return new TreeMap<String, ApiTelegramMetrics>(telegrams);
+    }
+}
@@ -0,0 +1,25 @@
+package blanco.rest.common;
+
+/**
+ * 一種類の電文の送信ごとの計測値を記録します．
+ *
+ * 送信のたびに，送信したスレッドまたは応答を受信したスレッドから呼び出されます．
+ * 実装はスレッドセーフで，ロックを使わずに短時間で戻る必要があります．
+ */
+public interface ApiMetricsRecorder {
+
+    /**
+     * 一件の送信の計測値を記録します．
+     *
+     * 失敗した送信では，失敗するまでに完了した段階の値だけが設定され，残りは 0 です．
+     *
+     * @param serializeNanos 要求電文の JSON への変換時間 (ナノ秒)
+     * @param transportNanos トランスポートでの送受信時間 (ナノ秒)
+     * @param latencyNanos 検査から応答電文の変換までの全体の時間 (ナノ秒)
+     * @param requestBytes 要求電文の JSON のバイト数
+     * @param responseBytes 応答電文の JSON のバイト数
+     * @param success 応答電文を受け取れた場合は true
+     */
+    void record(long serializeNanos, long transportNanos, long latencyNanos,
+                int requestBytes, int responseBytes, boolean success);
+}
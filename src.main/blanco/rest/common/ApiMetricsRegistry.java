@@ -0,0 +1,21 @@
+package blanco.rest.common;
+
+/**
+ * ApiBase が送信ごとの計測値を記録する先を提供します．
+ *
+ * ApiBase.setMetricsRegistry で設定します．標準の実装は ApiMetrics です．
+ * 監視システムに直接記録する場合は，このインタフェースを実装して設定してください．
+ */
+public interface ApiMetricsRegistry {
+
+    /**
+     * 電文の種類ごとの記録先を返します．
+     *
+     * API クラスごとに最初の送信時に一度だけ呼び出され，以後は結果がキャッシュされます．
+     * 複数のスレッドから同時に呼び出されることがあります．
+     *
+     * @param requestId 要求電文のクラス名 (API クラスの getRequestId() の値)
+     * @return 記録先．null の場合，その電文は記録しません．
+     */
+    ApiMetricsRecorder getRecorder(String requestId);
+}
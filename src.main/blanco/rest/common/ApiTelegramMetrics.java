@@ -0,0 +1,118 @@
+package blanco.rest.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一種類の電文の送信の計測値です．ApiMetrics が電文の種類ごとに生成します．
+ *
+ * 件数と時間の合計は LongAdder で記録するため，多数のスレッドから同時に送信しても
+ * 同じ値を奪い合うことがありません．
+ */
+public final class ApiTelegramMetrics implements ApiMetricsRecorder {
+
+    private final String requestId;
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder serializeNanos = new LongAdder();
+    private final LongAdder transportNanos = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final ApiLatencyHistogram latency = new ApiLatencyHistogram();
+
+    /**
+     * @param requestId 要求電文のクラス名
+     */
+    public ApiTelegramMetrics(String requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void record(long serializeNanos, long transportNanos, long latencyNanos,
+                       int requestBytes, int responseBytes, boolean success) {
+        this.requestCount.increment();
+        if (!success) {
+            this.errorCount.increment();
+        }
+        this.serializeNanos.add(serializeNanos);
+        this.transportNanos.add(transportNanos);
+        this.requestBytes.add(requestBytes);
+        this.responseBytes.add(responseBytes);
+        this.latency.record(latencyNanos);
+    }
+
+    /**
+     * @return 要求電文のクラス名
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return 送信件数 (失敗を含む)
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * @return 失敗した送信の件数
+     */
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    /**
+     * @return 要求電文の JSON への変換時間の合計 (ナノ秒)
+     */
+    public long getSerializeNanos() {
+        return serializeNanos.sum();
+    }
+
+    /**
+     * @return トランスポートでの送受信時間の合計 (ナノ秒)
+     */
+    public long getTransportNanos() {
+        return transportNanos.sum();
+    }
+
+    /**
+     * @return 要求電文の JSON のバイト数の合計
+     */
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    /**
+     * @return 応答電文の JSON のバイト数の合計
+     */
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    /**
+     * @return 検査から応答電文の変換までの全体の時間の分布
+     */
+    public ApiLatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * 計測値を一行の文字列で返します．時間はミリ秒です．
+     */
+    @Override
+    public String toString() {
+        long n = getRequestCount();
+        double millis = TimeUnit.MILLISECONDS.toNanos(1);
+        return String.format("%s: requests=%d errors=%d serialize=%.3fms/req transport=%.3fms/req"
+                        + " request=%dB/req response=%dB/req latency[%s]",
+                requestId, n, getErrorCount(),
+                n == 0 ? 0 : getSerializeNanos() / millis / n,
+                n == 0 ? 0 : getTransportNanos() / millis / n,
+                n == 0 ? 0 : getRequestBytes() / n,
+                n == 0 ? 0 : getResponseBytes() / n,
+                latency);
+    }
+}
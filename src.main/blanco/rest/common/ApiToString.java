@@ -0,0 +1,215 @@
+package blanco.rest.common;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 自動生成された電文クラスの toString が使う，値の文字列表現の追記処理です．
+ *
+ * 配列，コレクション，入れ子になった電文や ValueObject を展開します．
+ * 循環参照や巨大なオブジェクトでログが膨らまないよう，展開する深さを制限します．
+ * 配列，コレクション，Map も一段の入れ子として数え，深さが尽きた場合は [...] と表示します．
+ * また，表示する要素は先頭の MAX_ELEMENTS 件までとし，残りは ... と表示します．
+ */
+public final class ApiToString {
+
+    /**
+     * toString で入れ子のオブジェクトを展開する深さの既定値です．
+     */
+    public static final int DEFAULT_DEPTH = 3;
+
+    /**
+     * 配列，コレクション，Map で表示する要素の数の上限です．
+     */
+    public static final int MAX_ELEMENTS = 100;
+
+    /*
+     * toString を持たないクラスごとの，表示に使う getter の一覧です．
+     */
+    private static final ConcurrentMap<Class<?>, Method[]> GETTERS = new ConcurrentHashMap<Class<?>, Method[]>();
+
+    /*
+     * toString をそのまま使うクラスを表す目印です．
+     */
+    private static final Method[] USE_TO_STRING = new Method[0];
+
+    private ApiToString() {
+    }
+
+    /**
+     * 値の文字列表現を追記します．
+     *
+     * @param buf 追記先
+     * @param value 値
+     * @param depth 入れ子になったオブジェクトを展開する残りの深さ
+     */
+    public static void appendValue(StringBuilder buf, Object value, int depth) {
+        if (value == null) {
+            buf.append("null");
+        } else if (value instanceof CharSequence || value instanceof Number
+                || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+            buf.append(value);
+        } else if (value instanceof ApiAppendable) {
+            if (depth <= 0) {
+                buf.append(value.getClass().getName()).append("[...]");
+            } else {
+                ((ApiAppendable) value).appendTo(buf, depth - 1);
+            }
+        } else if (value.getClass().isArray()) {
+            appendArray(buf, value, depth);
+        } else if (value instanceof Iterable) {
+            appendIterable(buf, (Iterable<?>) value, depth);
+        } else if (value instanceof Map) {
+            appendMap(buf, (Map<?, ?>) value, depth);
+        } else {
+            appendObject(buf, value, depth);
+        }
+    }
+
+    private static void appendIterable(StringBuilder buf, Iterable<?> value, int depth) {
+        if (depth <= 0) {
+            buf.append("[...]");
+            return;
+        }
+        buf.append('[');
+        int count = 0;
+        for (Object element : value) {
+            if (count > 0) {
+                buf.append(", ");
+            }
+            if (count++ == MAX_ELEMENTS) {
+                buf.append("...");
+                break;
+            }
+            appendValue(buf, element, depth - 1);
+        }
+        buf.append(']');
+    }
+
+    private static void appendMap(StringBuilder buf, Map<?, ?> value, int depth) {
+        if (depth <= 0) {
+            buf.append("{...}");
+            return;
+        }
+        buf.append('{');
+        int count = 0;
+        for (Map.Entry<?, ?> entry : value.entrySet()) {
+            if (count > 0) {
+                buf.append(", ");
+            }
+            if (count++ == MAX_ELEMENTS) {
+                buf.append("...");
+                break;
+            }
+            appendValue(buf, entry.getKey(), depth - 1);
+            buf.append('=');
+            appendValue(buf, entry.getValue(), depth - 1);
+        }
+        buf.append('}');
+    }
+
+    private static void appendArray(StringBuilder buf, Object value, int depth) {
+        if (depth <= 0) {
+            buf.append("[...]");
+            return;
+        }
+        buf.append('[');
+        int length = Array.getLength(value);
+        for (int index = 0; index < length; index++) {
+            if (index > 0) {
+                buf.append(", ");
+            }
+            if (index == MAX_ELEMENTS) {
+                buf.append("...");
+                break;
+            }
+            // プリミティブ型の配列の要素はラッパーとして取り出され，そのまま追記されます．
+            appendValue(buf, Array.get(value, index), depth - 1);
+        }
+        buf.append(']');
+    }
+
+    /*
+     * toString を持つクラスはそのまま，持たないクラス (ValueObject など) は getter の値を展開します．
+     */
+    private static void appendObject(StringBuilder buf, Object value, int depth) {
+        Method[] getters = getGetters(value.getClass());
+        if (getters == null) {
+            buf.append(value);
+            return;
+        }
+        if (depth <= 0) {
+            buf.append(value.getClass().getName()).append("[...]");
+            return;
+        }
+
+        buf.append(value.getClass().getName()).append('[');
+        for (int index = 0; index < getters.length; index++) {
+            if (index > 0) {
+                buf.append(',');
+            }
+            String name = getters[index].getName();
+            buf.append(name, name.startsWith("is") ? 2 : 3, name.length()).append('=');
+            try {
+                appendValue(buf, getters[index].invoke(value), depth - 1);
+            } catch (IllegalAccessException e) {
+                buf.append('?');
+            } catch (InvocationTargetException e) {
+                buf.append('?');
+            }
+        }
+        buf.append(']');
+    }
+
+    /*
+     * 表示に使う getter の一覧を取得します．toString を持つクラスの場合は null です．
+     */
+    private static Method[] getGetters(Class<?> clazz) {
+        Method[] getters = GETTERS.get(clazz);
+        if (getters == null) {
+            getters = hasToString(clazz) || !Modifier.isPublic(clazz.getModifiers())
+                    ? USE_TO_STRING : findGetters(clazz);
+            GETTERS.putIfAbsent(clazz, getters);
+        }
+        return getters == USE_TO_STRING ? null : getters;
+    }
+
+    private static boolean hasToString(Class<?> clazz) {
+        try {
+            return clazz.getMethod("toString").getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Method[] findGetters(Class<?> clazz) {
+        List<Method> getters = new ArrayList<Method>();
+        for (Method method : clazz.getMethods()) {
+            String name = method.getName();
+            if (method.getParameterTypes().length != 0 || Modifier.isStatic(method.getModifiers())
+                    || method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            if ((name.startsWith("get") && name.length() > 3)
+                    || (name.startsWith("is") && name.length() > 2
+                    && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class))) {
+                getters.add(method);
+            }
+        }
+        Collections.sort(getters, new Comparator<Method>() {
+            public int compare(Method left, Method right) {
+                return left.getName().compareTo(right.getName());
+            }
+        });
+        return getters.toArray(new Method[getters.size()]);
+    }
+}
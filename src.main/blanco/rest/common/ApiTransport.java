@@ -0,0 +1,22 @@
+package blanco.rest.common;
+
+import blanco.rest.Exception.BlancoRestException;
+
+/**
+ * ApiBase が電文を送受信するためのトランスポートです．
+ *
+ * 実装はスレッドセーフである必要があります．
+ * 複数の API クラス，複数のスレッドから同時に呼び出されます．
+ */
+public interface ApiTransport {
+
+    /**
+     * 要求電文を送信し，応答電文を受信します．
+     *
+     * @param location 送信先 (API クラスの getLocation() の値)
+     * @param request JSON に変換済みの要求電文
+     * @return JSON 形式の応答電文
+     * @throws BlancoRestException 送受信に失敗した場合
+     */
+    byte[] send(String location, byte[] request) throws BlancoRestException;
+}
@@ -0,0 +1,21 @@
+package blanco.rest.common;
+
+import java.util.List;
+
+/**
+ * 定義書に記述された制約 (必須，最小長，最大長，最小値，最大値，パターン) を検証できる電文です．
+ *
+ * 自動生成された電文クラスが実装し，ApiBase が送信前に呼び出します．
+ * 正規表現は電文クラスの static final な Pattern としてコンパイル済みのものを使います．
+ */
+public interface ApiValidatable {
+
+    /**
+     * この電文を検証します．
+     *
+     * @param errors 違反の内容を追加する一覧
+     * @param failFast true の場合，最初の違反で検証を打ち切ります．
+     * @return 違反が無い場合は true
+     */
+    boolean validate(List<String> errors, boolean failFast);
+}
@@ -0,0 +1,21 @@
+package blanco.rest.common;
+
+/**
+ * ApiBase が送信前に要求電文を検証する方法です．
+ */
+public enum ApiValidationMode {
+    /**
+     * 検証しません (標準)．
+     */
+    NONE,
+
+    /**
+     * 最初に見つかった違反で検証を打ち切り，送信せずに失敗します．
+     */
+    FAIL_FAST,
+
+    /**
+     * 全ての項目を検証し，見つかった違反をまとめて報告してから失敗します．
+     */
+    COLLECT_ALL
+}
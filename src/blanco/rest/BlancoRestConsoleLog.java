@@ -0,0 +1,70 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.PrintStream;
+
+/**
+ * 指定された重要度以上のメッセージをコンソールに出力するリスナーです。
+ *
+ * INFO のメッセージはそのまま、WARNING と DEBUG のメッセージは重要度と出力元を付けて出力します。
+ * 処理時間と件数は出力しません。
+ */
+public class BlancoRestConsoleLog implements BlancoRestEventListener {
+    /**
+     * 出力先。
+     */
+    private final PrintStream fOut;
+
+    /**
+     * 出力する最低の重要度。
+     */
+    private final Level fLevel;
+
+    /**
+     * @param argOut
+     *            出力先。
+     * @param argLevel
+     *            出力する最低の重要度。
+     */
+    public BlancoRestConsoleLog(final PrintStream argOut, final Level argLevel) {
+        fOut = argOut;
+        fLevel = argLevel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void stage(final String argStage, final String argSubject,
+            final long argStartNanos, final long argElapsedNanos) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void count(final String argName, final long argDelta) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void message(final Level argLevel, final String argSource,
+            final String argMessage) {
+        if (argLevel.compareTo(fLevel) < 0) {
+            return;
+        }
+        if (argLevel == Level.INFO) {
+            fOut.println(argMessage);
+        } else {
+            fOut.println(argLevel.name().toLowerCase() + ": " + argSource
+                    + ": " + argMessage);
+        }
+    }
+}
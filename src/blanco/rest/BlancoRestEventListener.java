@@ -0,0 +1,76 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+/**
+ * 自動生成処理のイベントを受け取るリスナーです。
+ *
+ * BlancoRestEvents に登録すると、段階ごとの処理時間、件数、メッセージを受け取ります。
+ * 並列生成では複数のワーカースレッドから同時に呼び出されるため、実装はスレッドセーフである
+ * 必要があります。
+ */
+public interface BlancoRestEventListener {
+    /**
+     * メッセージの重要度。
+     */
+    enum Level {
+        /**
+         * 開発者向けの詳細な情報。BlancoRestEvents で有効にした場合にだけ通知されます。
+         */
+        DEBUG,
+
+        /**
+         * 処理の経過や結果。
+         */
+        INFO,
+
+        /**
+         * 生成は継続できるが、定義書の誤りなどが疑われる状況。
+         */
+        WARNING
+    }
+
+    /**
+     * 段階の処理が終了したことを受け取ります。
+     *
+     * @param argStage
+     *            段階の名前 (例: xml2source.file)。
+     * @param argSubject
+     *            処理の対象 (ファイル名など)。対象が無い場合は null。
+     * @param argStartNanos
+     *            開始時刻 (System.nanoTime の値)。
+     * @param argElapsedNanos
+     *            処理時間 (ナノ秒)。
+     */
+    void stage(String argStage, String argSubject, long argStartNanos,
+            long argElapsedNanos);
+
+    /**
+     * 件数の増加を受け取ります。
+     *
+     * @param argName
+     *            件数の名前 (例: fields)。
+     * @param argDelta
+     *            増加した件数。
+     */
+    void count(String argName, long argDelta);
+
+    /**
+     * メッセージを受け取ります。
+     *
+     * @param argLevel
+     *            重要度。
+     * @param argSource
+     *            メッセージを出したクラスなどの名前。
+     * @param argMessage
+     *            メッセージ。
+     */
+    void message(Level argLevel, String argSource, String argMessage);
+}
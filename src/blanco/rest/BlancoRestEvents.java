@@ -0,0 +1,180 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 自動生成処理のイベントを登録されたリスナーに配信します。
+ *
+ * 生成処理ごとにインスタンスを作成して、BlancoRestObjectsInfo、BlancoRestXml2SourceFile、
+ * BlancoRestSourceWriter に引き回します。リスナーが登録されていない場合は何も出力せず、
+ * 時刻の取得やメッセージの組み立ても省きます。DEBUG のメッセージは setDebugEnabled で
+ * 有効にした場合にだけ配信します。
+ *
+ * 呼び出し側は次のように使います。
+ * <pre>
+ * final long start = events.start();
+ * ...
+ * events.stage("xml2source.file", fileXml.getName(), start);
+ * if (events.isDebugEnabled()) {
+ *     events.debug("BlancoRestXml2SourceFile", "name = " + name);
+ * }
+ * </pre>
+ */
+public class BlancoRestEvents {
+    /**
+     * 登録されたリスナー。
+     */
+    private final CopyOnWriteArrayList<BlancoRestEventListener> fListeners = new CopyOnWriteArrayList<BlancoRestEventListener>();
+
+    /**
+     * リスナーが一つ以上登録されているかどうか。
+     */
+    private volatile boolean fEnabled = false;
+
+    /**
+     * DEBUG のメッセージを配信するかどうか。
+     */
+    private volatile boolean fDebug = false;
+
+    /**
+     * リスナーを登録します。
+     *
+     * @param argListener
+     *            リスナー。
+     */
+    public void addListener(final BlancoRestEventListener argListener) {
+        fListeners.add(argListener);
+        fEnabled = true;
+    }
+
+    /**
+     * DEBUG のメッセージを配信するかどうかを指定します。
+     *
+     * @param argDebug
+     *            配信する場合は true。
+     */
+    public void setDebugEnabled(final boolean argDebug) {
+        fDebug = argDebug;
+    }
+
+    /**
+     * @return リスナーが一つ以上登録されている場合は true。
+     */
+    public boolean isEnabled() {
+        return fEnabled;
+    }
+
+    /**
+     * @return DEBUG のメッセージを配信する場合は true。
+     */
+    public boolean isDebugEnabled() {
+        return fEnabled && fDebug;
+    }
+
+    /**
+     * 段階の開始時刻を取得します。
+     *
+     * @return 開始時刻 (System.nanoTime の値)。リスナーが登録されていない場合は 0。
+     */
+    public long start() {
+        return fEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 段階の処理が終了したことを通知します。
+     *
+     * @param argStage
+     *            段階の名前。
+     * @param argSubject
+     *            処理の対象。対象が無い場合は null。
+     * @param argStartNanos
+     *            start で取得した開始時刻。
+     */
+    public void stage(final String argStage, final String argSubject,
+            final long argStartNanos) {
+        if (fEnabled == false) {
+            return;
+        }
+        final long elapsed = System.nanoTime() - argStartNanos;
+        for (BlancoRestEventListener listener : fListeners) {
+            listener.stage(argStage, argSubject, argStartNanos, elapsed);
+        }
+    }
+
+    /**
+     * 件数の増加を通知します。
+     *
+     * @param argName
+     *            件数の名前。
+     * @param argDelta
+     *            増加した件数。
+     */
+    public void count(final String argName, final long argDelta) {
+        if (fEnabled == false) {
+            return;
+        }
+        for (BlancoRestEventListener listener : fListeners) {
+            listener.count(argName, argDelta);
+        }
+    }
+
+    /**
+     * DEBUG のメッセージを通知します。
+     *
+     * @param argSource
+     *            メッセージを出したクラスなどの名前。
+     * @param argMessage
+     *            メッセージ。
+     */
+    public void debug(final String argSource, final String argMessage) {
+        if (isDebugEnabled()) {
+            message(BlancoRestEventListener.Level.DEBUG, argSource, argMessage);
+        }
+    }
+
+    /**
+     * INFO のメッセージを通知します。
+     *
+     * @param argSource
+     *            メッセージを出したクラスなどの名前。
+     * @param argMessage
+     *            メッセージ。
+     */
+    public void info(final String argSource, final String argMessage) {
+        message(BlancoRestEventListener.Level.INFO, argSource, argMessage);
+    }
+
+    /**
+     * WARNING のメッセージを通知します。
+     *
+     * @param argSource
+     *            メッセージを出したクラスなどの名前。
+     * @param argMessage
+     *            メッセージ。
+     */
+    public void warning(final String argSource, final String argMessage) {
+        message(BlancoRestEventListener.Level.WARNING, argSource, argMessage);
+    }
+
+    /**
+     * メッセージを通知します。
+     */
+    private void message(final BlancoRestEventListener.Level argLevel,
+            final String argSource, final String argMessage) {
+        if (fEnabled == false) {
+            return;
+        }
+        for (BlancoRestEventListener listener : fListeners) {
+            listener.message(argLevel, argSource, argMessage);
+        }
+    }
+}
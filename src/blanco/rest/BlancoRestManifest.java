@@ -0,0 +1,451 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import blanco.valueobject.valueobject.BlancoValueObjectClassStructure;
+import blanco.valueobject.valueobject.BlancoValueObjectFieldStructure;
+
+/**
+ * インクリメンタル生成のためのマニフェストです。
+ *
+ * 定義書ファイル (シート) のハッシュ、中間XMLファイルのハッシュ、参照している
+ * ValueObject のハッシュ、および生成したソースファイルのハッシュを、定義書ファイル名を
+ * キーとしてテンポラリディレクトリに保存します。次回の処理ではこれらが全て一致する
+ * 定義書について、中間XMLへの変換とソースコードの生成をスキップします。
+ *
+ * 各メソッドは並列に生成を行うワーカーから呼び出されるため、同期化されています。
+ */
+public class BlancoRestManifest {
+    /**
+     * マニフェストのファイル名。
+     */
+    public static final String FILE_NAME = "blancorest-manifest.properties";
+
+    /**
+     * ハッシュ値を計算する際のアルゴリズム。
+     */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * 生成条件を保存するキー。
+     */
+    private static final String KEY_CONFIG = "config";
+
+    /**
+     * 定義書ファイルのハッシュを保存するキーの接尾辞。
+     */
+    private static final String SUFFIX_SHEET = ".sheet";
+
+    /**
+     * 中間XMLファイルのハッシュを保存するキーの接尾辞。
+     */
+    private static final String SUFFIX_XML = ".xml";
+
+    /**
+     * 参照している ValueObject のハッシュを保存するキーの接尾辞。
+     */
+    private static final String SUFFIX_OBJECTS = ".objects";
+
+    /**
+     * 生成したソースファイルのハッシュを保存するキーの接尾辞。
+     */
+    private static final String SUFFIX_FILES = ".files";
+
+    /**
+     * 一覧を保存する際の要素の区切り文字。
+     */
+    private static final String SEPARATOR_LIST = "|";
+
+    /**
+     * 一覧を保存する際の名前とハッシュの区切り文字。
+     */
+    private static final String SEPARATOR_ENTRY = "*";
+
+    /**
+     * ValueObject が見つからなかった場合に保存するハッシュ。
+     */
+    private static final String DIGEST_NOT_FOUND = "-";
+
+    /**
+     * マニフェストファイル。
+     */
+    private final File fFileManifest;
+
+    /**
+     * マニフェストの内容。
+     */
+    private final Properties fProperties = new Properties();
+
+    /**
+     * マニフェストのインスタンスを作成します。
+     *
+     * @param argFileManifest
+     *            マニフェストファイル。
+     */
+    public BlancoRestManifest(final File argFileManifest) {
+        fFileManifest = argFileManifest;
+    }
+
+    /**
+     * マニフェストファイルを読み込みます。
+     *
+     * ファイルが存在しない場合には空のマニフェストとして扱います。
+     *
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public synchronized void load() throws IOException {
+        fProperties.clear();
+        if (fFileManifest.exists() == false) {
+            return;
+        }
+        final InputStream inStream = new BufferedInputStream(
+                new FileInputStream(fFileManifest), 8192);
+        try {
+            fProperties.load(inStream);
+        } finally {
+            inStream.close();
+        }
+    }
+
+    /**
+     * マニフェストファイルを保存します。
+     *
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public synchronized void store() throws IOException {
+        final OutputStream outStream = new BufferedOutputStream(
+                new FileOutputStream(fFileManifest), 8192);
+        try {
+            fProperties.store(outStream, BlancoRestConstants.PRODUCT_NAME
+                    + " manifest");
+        } finally {
+            outStream.close();
+        }
+    }
+
+    /**
+     * 生成条件を照合します。
+     *
+     * 前回と生成条件が異なる場合には、前回の記録は全て破棄します。
+     *
+     * @param argConfig
+     *            生成条件を表す文字列。
+     */
+    public synchronized void checkConfig(final String argConfig) {
+        if (argConfig.equals(fProperties.getProperty(KEY_CONFIG)) == false) {
+            fProperties.clear();
+            fProperties.setProperty(KEY_CONFIG, argConfig);
+        }
+    }
+
+    /**
+     * 指定されたキー以外の記録を破棄します。
+     *
+     * @param argKeys
+     *            残すべき定義書ファイル名の一覧。
+     */
+    public synchronized void retain(final Collection<String> argKeys) {
+        final List<Object> listRemove = new ArrayList<Object>();
+        for (Object key : fProperties.keySet()) {
+            final String strKey = (String) key;
+            if (KEY_CONFIG.equals(strKey)) {
+                continue;
+            }
+            final int find = strKey.lastIndexOf('.');
+            if (find < 0 || argKeys.contains(strKey.substring(0, find)) == false) {
+                listRemove.add(key);
+            }
+        }
+        for (Object key : listRemove) {
+            fProperties.remove(key);
+        }
+    }
+
+    /**
+     * 定義書ファイルから中間XMLファイルへの変換が不要かどうかを判定します。
+     *
+     * @param argKey
+     *            定義書ファイル名。
+     * @param argSheetDigest
+     *            現在の定義書ファイルのハッシュ。
+     * @param argFileXml
+     *            中間XMLファイル。
+     * @return 変換が不要であれば true。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public synchronized boolean isSheetUpToDate(final String argKey,
+            final String argSheetDigest, final File argFileXml)
+            throws IOException {
+        if (argSheetDigest.equals(fProperties.getProperty(argKey
+                + SUFFIX_SHEET)) == false) {
+            return false;
+        }
+        final String xmlDigest = fProperties.getProperty(argKey + SUFFIX_XML);
+        return xmlDigest != null && argFileXml.exists()
+                && xmlDigest.equals(digest(argFileXml));
+    }
+
+    /**
+     * 定義書ファイルのハッシュを記録します。
+     *
+     * @param argKey
+     *            定義書ファイル名。
+     * @param argSheetDigest
+     *            定義書ファイルのハッシュ。
+     */
+    public synchronized void putSheet(final String argKey,
+            final String argSheetDigest) {
+        fProperties.setProperty(argKey + SUFFIX_SHEET, argSheetDigest);
+    }
+
+    /**
+     * 中間XMLファイルからのソースコード生成が不要かどうかを判定します。
+     *
+     * 中間XMLファイル、参照している ValueObject、生成済みのソースファイルの
+     * いずれかが前回の記録と異なる場合には生成が必要と判定します。
+     *
+     * @param argKey
+     *            定義書ファイル名。
+     * @param argXmlDigest
+     *            現在の中間XMLファイルのハッシュ。
+     * @param argObjects
+     *            現在の ValueObject の一覧。
+     * @return 生成が不要であれば true。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public synchronized boolean isSourceUpToDate(final String argKey,
+            final String argXmlDigest,
+            final Map<String, BlancoValueObjectClassStructure> argObjects)
+            throws IOException {
+        if (argXmlDigest.equals(fProperties.getProperty(argKey + SUFFIX_XML)) == false) {
+            return false;
+        }
+
+        final String objects = fProperties.getProperty(argKey + SUFFIX_OBJECTS);
+        final String files = fProperties.getProperty(argKey + SUFFIX_FILES);
+        if (objects == null || files == null) {
+            return false;
+        }
+        for (String[] entry : splitList(objects)) {
+            if (entry[1].equals(digest(argObjects.get(entry[0]))) == false) {
+                return false;
+            }
+        }
+        for (String[] entry : splitList(files)) {
+            final File fileSource = new File(entry[0]);
+            if (fileSource.exists() == false
+                    || entry[1].equals(digest(fileSource)) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ソースコード生成の結果を記録します。
+     *
+     * @param argKey
+     *            定義書ファイル名。
+     * @param argXmlDigest
+     *            中間XMLファイルのハッシュ。
+     * @param argReferencedObjects
+     *            生成時に参照した ValueObject 名の一覧。
+     * @param argObjects
+     *            現在の ValueObject の一覧。
+     * @param argMapGeneratedFile
+     *            生成したソースファイルとそのハッシュ値の一覧。
+     */
+    public synchronized void putSource(final String argKey,
+            final String argXmlDigest,
+            final Collection<String> argReferencedObjects,
+            final Map<String, BlancoValueObjectClassStructure> argObjects,
+            final Map<File, String> argMapGeneratedFile) {
+        final StringBuilder bufObjects = new StringBuilder();
+        for (String name : argReferencedObjects) {
+            if (bufObjects.length() > 0) {
+                bufObjects.append(SEPARATOR_LIST);
+            }
+            bufObjects.append(name).append(SEPARATOR_ENTRY)
+                    .append(digest(argObjects.get(name)));
+        }
+        final StringBuilder bufFiles = new StringBuilder();
+        for (Map.Entry<File, String> entry : argMapGeneratedFile.entrySet()) {
+            if (bufFiles.length() > 0) {
+                bufFiles.append(SEPARATOR_LIST);
+            }
+            bufFiles.append(entry.getKey().getAbsolutePath())
+                    .append(SEPARATOR_ENTRY).append(entry.getValue());
+        }
+        fProperties.setProperty(argKey + SUFFIX_XML, argXmlDigest);
+        fProperties.setProperty(argKey + SUFFIX_OBJECTS, bufObjects.toString());
+        fProperties.setProperty(argKey + SUFFIX_FILES, bufFiles.toString());
+    }
+
+    /**
+     * ソースコード生成の記録を破棄します。
+     *
+     * 生成に失敗した場合に、次回必ず再生成されるように呼び出します。
+     *
+     * @param argKey
+     *            定義書ファイル名。
+     */
+    public synchronized void removeSource(final String argKey) {
+        fProperties.remove(argKey + SUFFIX_XML);
+        fProperties.remove(argKey + SUFFIX_OBJECTS);
+        fProperties.remove(argKey + SUFFIX_FILES);
+    }
+
+    /**
+     * 記録された一覧を名前とハッシュの組に分解します。
+     *
+     * @param argList
+     *            記録された一覧。
+     * @return 名前とハッシュの組のリスト。
+     */
+    private static List<String[]> splitList(final String argList) {
+        final List<String[]> result = new ArrayList<String[]>();
+        if (argList.length() == 0) {
+            return result;
+        }
+        int start = 0;
+        while (start <= argList.length()) {
+            int end = argList.indexOf(SEPARATOR_LIST, start);
+            if (end < 0) {
+                end = argList.length();
+            }
+            final String entry = argList.substring(start, end);
+            final int find = entry.lastIndexOf(SEPARATOR_ENTRY);
+            result.add(new String[] { entry.substring(0, find),
+                    entry.substring(find + 1) });
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /**
+     * ファイルの内容のハッシュを計算します。
+     *
+     * @param argFile
+     *            対象となるファイル。
+     * @return 16進文字列で表現したハッシュ値。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public static String digest(final File argFile) throws IOException {
+        final MessageDigest digest = newDigest();
+        final InputStream inStream = new BufferedInputStream(
+                new FileInputStream(argFile), 8192);
+        try {
+            final byte[] buf = new byte[8192];
+            for (int length; (length = inStream.read(buf)) > 0;) {
+                digest.update(buf, 0, length);
+            }
+        } finally {
+            inStream.close();
+        }
+        return toHexString(digest.digest());
+    }
+
+    /**
+     * バイト列のハッシュを計算します。
+     *
+     * @param argBytes
+     *            対象となるバイト列。
+     * @return 16進文字列で表現したハッシュ値。
+     */
+    public static String digest(final byte[] argBytes) {
+        return toHexString(newDigest().digest(argBytes));
+    }
+
+    /**
+     * ValueObject の構造のハッシュを計算します。
+     *
+     * ソースコード生成に影響するクラス名、パッケージ名、継承元およびフィールドの
+     * 定義を対象とします。
+     *
+     * @param argStructure
+     *            ValueObject の構造。null の場合は見つからなかったことを表します。
+     * @return 16進文字列で表現したハッシュ値。
+     */
+    public static String digest(
+            final BlancoValueObjectClassStructure argStructure) {
+        if (argStructure == null) {
+            return DIGEST_NOT_FOUND;
+        }
+        final StringBuilder buf = new StringBuilder();
+        buf.append(argStructure.getName()).append('\n');
+        buf.append(argStructure.getPackage()).append('\n');
+        buf.append(argStructure.getExtends()).append('\n');
+        for (BlancoValueObjectFieldStructure field : argStructure
+                .getFieldList()) {
+            buf.append(field.getName()).append('\t');
+            buf.append(field.getType()).append('\t');
+            buf.append(field.getDefault()).append('\n');
+        }
+        try {
+            return digest(buf.toString().getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalArgumentException(ex.toString());
+        }
+    }
+
+    /**
+     * ハッシュを計算するオブジェクトを作成します。
+     *
+     * @return ハッシュを計算するオブジェクト。
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalArgumentException(ex.toString());
+        }
+    }
+
+    /**
+     * バイト列を16進文字列に変換します。
+     *
+     * @param argBytes
+     *            バイト列。
+     * @return 16進文字列。
+     */
+    private static String toHexString(final byte[] argBytes) {
+        final StringBuilder buf = new StringBuilder(argBytes.length * 2);
+        for (int index = 0; index < argBytes.length; index++) {
+            final int value = argBytes[index] & 0xff;
+            if (value < 0x10) {
+                buf.append('0');
+            }
+            buf.append(Integer.toHexString(value));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import blanco.valueobject.valueobject.BlancoValueObjectClassStructure;
+import blanco.valueobject.valueobject.BlancoValueObjectFieldStructure;
+
+/**
+ * ValueObject 一覧のバイナリ索引です。
+ *
+ * ValueObject の中間XMLファイルごとに、ファイルのハッシュとそこから取得した
+ * ValueObject の構造 (クラス名、パッケージ名、フィールドの一覧など) を
+ * コンパクトなバイナリ形式で保存します。次回の処理では索引を一括で読み込み、
+ * ハッシュが一致するファイルは中間XMLを解析せずに索引の内容を利用します。
+ *
+ * 文字列は UTF-8 のバイト長 (int) とバイト列で表現し、null はバイト長 -1 で表します。
+ */
+public class BlancoRestObjectsIndex {
+    /**
+     * 索引のファイル名。
+     */
+    public static final String FILE_NAME = "blancorest-objects.idx";
+
+    /**
+     * 索引ファイルの先頭に置くマジックナンバー ("BRVO")。
+     */
+    private static final int MAGIC = 0x4252564f;
+
+    /**
+     * 索引ファイルの形式のバージョン。
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * 中間XMLファイル一つ分の索引のエントリです。
+     */
+    public static class Entry {
+        /**
+         * 中間XMLファイルのハッシュ値。
+         */
+        private final String fDigest;
+
+        /**
+         * 中間XMLファイルから取得した ValueObject の一覧 (出現順)。
+         */
+        private final List<BlancoValueObjectClassStructure> fListStructure;
+
+        /**
+         * エントリを作成します。
+         *
+         * @param argDigest
+         *            中間XMLファイルのハッシュ値。
+         * @param argListStructure
+         *            ValueObject の一覧。
+         */
+        public Entry(final String argDigest,
+                final List<BlancoValueObjectClassStructure> argListStructure) {
+            fDigest = argDigest;
+            fListStructure = argListStructure;
+        }
+
+        /**
+         * 中間XMLファイルのハッシュ値を取得します。
+         *
+         * @return ハッシュ値。
+         */
+        public String getDigest() {
+            return fDigest;
+        }
+
+        /**
+         * ValueObject の一覧を取得します。
+         *
+         * @return ValueObject の一覧。
+         */
+        public List<BlancoValueObjectClassStructure> getStructureList() {
+            return fListStructure;
+        }
+    }
+
+    /**
+     * 索引ファイル。
+     */
+    private final File fFileIndex;
+
+    /**
+     * 索引のインスタンスを作成します。
+     *
+     * @param argFileIndex
+     *            索引ファイル。
+     */
+    public BlancoRestObjectsIndex(final File argFileIndex) {
+        fFileIndex = argFileIndex;
+    }
+
+    /**
+     * 索引ファイルを読み込みます。
+     *
+     * 索引ファイルは小さいため、メモリマップは使わずにヒープのバッファへ一括で読み込みます。
+     * マップしたままのファイルは Windows では削除も置き換えもできず、続く store が失敗するためです。
+     *
+     * 索引ファイルが存在しない場合や、形式が異なる、壊れているなどで読み込めない場合には
+     * 空の一覧を戻します。索引はあくまでキャッシュであり、呼び出し側は中間XMLを
+     * 解析し直せばよいためです。
+     *
+     * @return 中間XMLファイル名をキーとするエントリの一覧。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public Map<String, Entry> load() throws IOException {
+        final Map<String, Entry> result = new LinkedHashMap<String, Entry>();
+        if (fFileIndex.exists() == false || fFileIndex.length() == 0) {
+            return result;
+        }
+
+        final FileInputStream inStream = new FileInputStream(fFileIndex);
+        try {
+            final FileChannel channel = inStream.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return result;
+            }
+            final int sizeFile = buffer.getInt();
+            for (int indexFile = 0; indexFile < sizeFile; indexFile++) {
+                final String fileName = readString(buffer);
+                final String digest = readString(buffer);
+                final int sizeStructure = buffer.getInt();
+                final List<BlancoValueObjectClassStructure> listStructure = new ArrayList<BlancoValueObjectClassStructure>(
+                        sizeStructure);
+                for (int index = 0; index < sizeStructure; index++) {
+                    listStructure.add(readStructure(buffer));
+                }
+                result.put(fileName, new Entry(digest, listStructure));
+            }
+        } catch (BufferUnderflowException ex) {
+            // 索引ファイルが壊れているため、利用しません。
+            result.clear();
+        } finally {
+            inStream.close();
+        }
+        return result;
+    }
+
+    /**
+     * 索引ファイルを保存します。
+     *
+     * いったん別名のファイルに書き出してから置き換えます。
+     *
+     * @param argMapEntry
+     *            中間XMLファイル名をキーとするエントリの一覧。
+     * @return 索引ファイルを置き換えられなかった場合は false。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public boolean store(final Map<String, Entry> argMapEntry) throws IOException {
+        final File fileWork = new File(fFileIndex.getAbsolutePath() + ".tmp");
+        final DataOutputStream outStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileWork), 8192));
+        try {
+            outStream.writeInt(MAGIC);
+            outStream.writeInt(FORMAT_VERSION);
+            outStream.writeInt(argMapEntry.size());
+            for (Map.Entry<String, Entry> entry : argMapEntry.entrySet()) {
+                writeString(outStream, entry.getKey());
+                writeString(outStream, entry.getValue().getDigest());
+                final List<BlancoValueObjectClassStructure> listStructure = entry
+                        .getValue().getStructureList();
+                outStream.writeInt(listStructure.size());
+                for (BlancoValueObjectClassStructure structure : listStructure) {
+                    writeStructure(outStream, structure);
+                }
+            }
+            outStream.flush();
+        } finally {
+            outStream.close();
+        }
+
+        if (fileWork.renameTo(fFileIndex) == false) {
+            // 既存のファイルがある環境では置き換えに失敗するため、削除してから置き換えます。
+            fFileIndex.delete();
+            if (fileWork.renameTo(fFileIndex) == false) {
+                fileWork.delete();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ValueObject の構造を書き出します。
+     *
+     * @param argOutStream
+     *            出力ストリーム。
+     * @param argStructure
+     *            ValueObject の構造。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private static void writeStructure(final DataOutputStream argOutStream,
+            final BlancoValueObjectClassStructure argStructure)
+            throws IOException {
+        writeString(argOutStream, argStructure.getName());
+        writeString(argOutStream, argStructure.getPackage());
+        writeString(argOutStream, argStructure.getDescription());
+        writeString(argOutStream, argStructure.getFileDescription());
+        final List<BlancoValueObjectFieldStructure> listField = argStructure
+                .getFieldList();
+        argOutStream.writeInt(listField.size());
+        for (BlancoValueObjectFieldStructure field : listField) {
+            writeString(argOutStream, field.getNo());
+            writeString(argOutStream, field.getName());
+            writeString(argOutStream, field.getType());
+            writeString(argOutStream, field.getDefault());
+            writeString(argOutStream, field.getDescription());
+        }
+    }
+
+    /**
+     * ValueObject の構造を読み込みます。
+     *
+     * @param argBuffer
+     *            入力バッファ。
+     * @return ValueObject の構造。
+     */
+    private static BlancoValueObjectClassStructure readStructure(
+            final ByteBuffer argBuffer) {
+        final BlancoValueObjectClassStructure structure = new BlancoValueObjectClassStructure();
+        structure.setName(readString(argBuffer));
+        structure.setPackage(readString(argBuffer));
+        structure.setDescription(readString(argBuffer));
+        structure.setFileDescription(readString(argBuffer));
+        final int sizeField = argBuffer.getInt();
+        for (int index = 0; index < sizeField; index++) {
+            final BlancoValueObjectFieldStructure field = new BlancoValueObjectFieldStructure();
+            field.setNo(readString(argBuffer));
+            field.setName(readString(argBuffer));
+            field.setType(readString(argBuffer));
+            field.setDefault(readString(argBuffer));
+            field.setDescription(readString(argBuffer));
+            structure.getFieldList().add(field);
+        }
+        return structure;
+    }
+
+    /**
+     * 文字列を書き出します。
+     *
+     * @param argOutStream
+     *            出力ストリーム。
+     * @param argValue
+     *            文字列。null も可。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private static void writeString(final DataOutputStream argOutStream,
+            final String argValue) throws IOException {
+        if (argValue == null) {
+            argOutStream.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = argValue.getBytes("UTF-8");
+        argOutStream.writeInt(bytes.length);
+        argOutStream.write(bytes);
+    }
+
+    /**
+     * 文字列を読み込みます。
+     *
+     * @param argBuffer
+     *            入力バッファ。
+     * @return 文字列。null の場合もあります。
+     */
+    private static String readString(final ByteBuffer argBuffer) {
+        final int length = argBuffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        argBuffer.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalArgumentException(ex.toString());
+        }
+    }
+}
@@ -8,14 +8,16 @@ import blanco.valueobject.resourcebundle.BlancoValueObjectResourceBundle;
 import blanco.valueobject.valueobject.BlancoValueObjectClassStructure;
 import blanco.valueobject.valueobject.BlancoValueObjectFieldStructure;
 import blanco.xml.bind.BlancoXmlBindingUtil;
-import blanco.xml.bind.BlancoXmlUnmarshaller;
 import blanco.xml.bind.valueobject.BlancoXmlAttribute;
-import blanco.xml.bind.valueobject.BlancoXmlDocument;
 import blanco.xml.bind.valueobject.BlancoXmlElement;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,7 +32,12 @@ public class BlancoRestObjectsInfo {
      */
     private final static BlancoValueObjectResourceBundle fBundle = new BlancoValueObjectResourceBundle();
 
-    public static Map<String, Integer> mapCommons = new HashMap<String, Integer>() {
+    /**
+     * ValueObject の共通情報のエレメント名と、シートが記述されたプログラミング言語の対応。
+     *
+     * 定数として扱うため変更不可です。
+     */
+    public static final Map<String, Integer> mapCommons = Collections.unmodifiableMap(new HashMap<String, Integer>() {
         {put(fBundle.getMeta2xmlElementCommon(), BlancoCgSupportedLang.JAVA);}
         {put(fBundle.getMeta2xmlElementCommonCs(), BlancoCgSupportedLang.CS);}
         {put(fBundle.getMeta2xmlElementCommonJs(), BlancoCgSupportedLang.JS);}
@@ -38,7 +45,7 @@ public class BlancoRestObjectsInfo {
         {put(fBundle.getMeta2xmlElementCommonPhp(), BlancoCgSupportedLang.PHP);}
         {put(fBundle.getMeta2xmlElementCommonRuby(), BlancoCgSupportedLang.RUBY);}
         {put(fBundle.getMeta2xmlElementCommonPython(), BlancoCgSupportedLang.PYTHON);}
-    };
+    });
 
     /**
      * フィールド名やメソッド名の名前変形を行うかどうか。
@@ -54,21 +61,121 @@ public class BlancoRestObjectsInfo {
         fEncoding = argEncoding;
     }
 
-    public static HashMap<String, BlancoValueObjectClassStructure> objects = new HashMap<>();
+    /**
+     * 処理時間、件数、メッセージの通知先。
+     */
+    private BlancoRestEvents fEvents = new BlancoRestEvents();
+
+    /**
+     * 処理時間、件数、メッセージの通知先を設定します。
+     *
+     * @param argEvents
+     *            通知先。
+     */
+    public void setEvents(final BlancoRestEvents argEvents) {
+        fEvents = argEvents;
+    }
+
+    /**
+     * 取得した ValueObject を登録するレジストリ。
+     */
+    private final BlancoRestObjectsRegistry fRegistry;
+
+    /**
+     * 新しいレジストリに ValueObject を登録するインスタンスを作成します。
+     */
+    public BlancoRestObjectsInfo() {
+        this(new BlancoRestObjectsRegistry());
+    }
+
+    /**
+     * 指定されたレジストリに ValueObject を登録するインスタンスを作成します。
+     *
+     * @param argRegistry
+     *            ValueObject を登録するレジストリ。
+     */
+    public BlancoRestObjectsInfo(final BlancoRestObjectsRegistry argRegistry) {
+        fRegistry = argRegistry;
+    }
+
+    /**
+     * ValueObject を登録したレジストリを取得します。
+     *
+     * @return レジストリ。
+     */
+    public BlancoRestObjectsRegistry getRegistry() {
+        return fRegistry;
+    }
 
+    /**
+     * ValueObject の中間XMLファイルから ValueObject の一覧を取得します。
+     *
+     * 取得した一覧はテンポラリディレクトリのバイナリ索引に保存しておき、次回は
+     * 内容 (ハッシュ) が変わった中間XMLファイルだけを解析し直します。
+     * レジストリの内容は取得した一覧で置き換えます。
+     *
+     * @param input
+     *            処理の入力パラメータ。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
     public void process(final BlancoRestProcessInput input) throws IOException {
+        fNameAdjust = "true".equals(input.getNameAdjust());
+        final File fileTarget = new File(input.getTargetdir());
+
+        final File fileTmpdir = new File(input.getTmpdir()
+                + BlancoRestConstants.TARGET_SUBDIRECTORY);
+        fileTmpdir.mkdirs();
+        final BlancoRestObjectsIndex objectsIndex = new BlancoRestObjectsIndex(
+                new File(fileTmpdir, BlancoRestObjectsIndex.FILE_NAME));
+        final Map<String, BlancoRestObjectsIndex.Entry> mapIndexPast = objectsIndex
+                .load();
+        final Map<String, BlancoRestObjectsIndex.Entry> mapIndex = new LinkedHashMap<String, BlancoRestObjectsIndex.Entry>();
+        final Map<String, BlancoValueObjectClassStructure> mapObjects = new HashMap<String, BlancoValueObjectClassStructure>();
+        int countParsed = 0;
 
         // XML化された中間ファイルから情報を読み込む
         final File[] fileMeta3 = new File(input.getTmpdir()
                 + BlancoValueObjectConstants.TARGET_SUBDIRECTORY)
                 .listFiles();
+        if (fileMeta3 == null) {
+            fRegistry.replace(mapObjects);
+            return;
+        }
+        // 同名の ValueObject があった場合の結果がファイルシステムに依存しないようにソートしておきます。
+        Arrays.sort(fileMeta3);
         for (int index = 0; index < fileMeta3.length; index++) {
             if (fileMeta3[index].getName().endsWith(".xml") == false) {
                 continue;
             }
 
-            process(fileMeta3[index], "true".equals(input
-                    .getNameAdjust()), new File(input.getTargetdir()));
+            final String digest = BlancoRestManifest.digest(fileMeta3[index]);
+            BlancoRestObjectsIndex.Entry entry = mapIndexPast.get(fileMeta3[index].getName());
+            if (entry == null || digest.equals(entry.getDigest()) == false) {
+                // 索引に無いか内容が変わったファイルだけを解析します。
+                final long start = fEvents.start();
+                entry = new BlancoRestObjectsIndex.Entry(digest, parseFile(
+                        fileMeta3[index], fileTarget));
+                fEvents.stage("objects.file", fileMeta3[index].getName(), start);
+                countParsed++;
+            }
+            mapIndex.put(fileMeta3[index].getName(), entry);
+
+            for (BlancoValueObjectClassStructure structure : entry.getStructureList()) {
+                mapObjects.put(structure.getName(), structure);
+            }
+        }
+        fRegistry.replace(mapObjects);
+        fEvents.count("objects.files.parsed", countParsed);
+        fEvents.count("objects.files.indexed", mapIndex.size() - countParsed);
+        fEvents.count("objects", mapObjects.size());
+
+        if (countParsed > 0 || mapIndex.size() != mapIndexPast.size()) {
+            if (objectsIndex.store(mapIndex) == false) {
+                fEvents.warning("BlancoRestObjectsIndex", "["
+                        + new File(fileTmpdir, BlancoRestObjectsIndex.FILE_NAME).getAbsolutePath()
+                        + "] could not be replaced. The index is not updated.");
+            }
         }
     }
 
@@ -89,58 +196,70 @@ public class BlancoRestObjectsInfo {
             throws IOException {
         fNameAdjust = argNameAdjust;
 
-        // メタ情報を解析してバリューオブジェクトのツリーを取得します。
-        final BlancoXmlDocument documentMeta = new BlancoXmlUnmarshaller()
-                .unmarshal(argMetaXmlSourceFile);
-
-        // ルートエレメントを取得します。
-        final BlancoXmlElement elementRoot = BlancoXmlBindingUtil
-                .getDocumentElement(documentMeta);
-        if (elementRoot == null) {
-            // ルートエレメントが無い場合には処理中断します。
-            return;
+        for (BlancoValueObjectClassStructure structure : parseFile(
+                argMetaXmlSourceFile, argDirectoryTarget)) {
+            fRegistry.put(structure.getName(), structure);
         }
+    }
 
-        // sheet(Excelシート)のリストを取得します。
-        final List<BlancoXmlElement> listSheet = BlancoXmlBindingUtil
-                .getElementsByTagName(elementRoot, "sheet");
-        final int sizeListSheet = listSheet.size();
-        for (int index = 0; index < sizeListSheet; index++) {
-            // おのおののシートを処理します。
-            final BlancoXmlElement elementSheet = (BlancoXmlElement) listSheet
-                    .get(index);
-
-             /*
-             * Java以外の言語用に記述されたシートにも対応．
-             */
-            BlancoXmlElement elementCommon = null;
-            int sheetLang = BlancoCgSupportedLang.JAVA;
-            for (String common : mapCommons.keySet()) {
-                // 共通情報を取得します。
-                elementCommon = BlancoXmlBindingUtil
-                        .getElement(elementSheet, common);
-
-                if (elementCommon != null) {
-                    BlancoXmlAttribute attr = new BlancoXmlAttribute();
-                    attr.setType("CDATA");
-                    attr.setQName("style");
-                    attr.setLocalName("style");
-
-                    sheetLang = mapCommons.get(common);
-                    attr.setValue(new BlancoCgSupportedLang().convertToString(sheetLang));
-
-                    elementSheet.getAtts().add(attr);
-
-                    /* tueda DEBUG */
-                    System.out.println("/* tueda */ style = " + BlancoXmlBindingUtil.getAttribute(elementSheet, "style"));
-
-                    break;
-                }
-            }
+    /**
+     * 中間XMLファイルから ValueObject の一覧を取得します。
+     *
+     * @param argMetaXmlSourceFile
+     *            メタ情報が含まれているXMLファイル。
+     * @param argDirectoryTarget
+     *            ソースコード生成先ディレクトリ (/mainを除く部分を指定します)。
+     * @return ValueObject の一覧 (出現順)。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private List<BlancoValueObjectClassStructure> parseFile(
+            final File argMetaXmlSourceFile, final File argDirectoryTarget)
+            throws IOException {
+        final List<BlancoValueObjectClassStructure> listStructure = new ArrayList<BlancoValueObjectClassStructure>();
+
+        // メタ情報はドキュメント全体のツリーを作らず、シート単位にストリーミングで読み込みます。
+        new BlancoRestSheetReader().read(argMetaXmlSourceFile,
+                new BlancoRestSheetReader.Handler() {
+                    public void sheet(final BlancoXmlElement argElementSheet) {
+                        processSheet(argElementSheet, argDirectoryTarget, listStructure);
+                    }
+                });
+        return listStructure;
+    }
 
-            if (elementCommon == null) {
-                // commonが無い場合には、このシートの処理をスキップします。
-                continue;
+    /**
+     * sheetエレメントから ValueObject の情報を取得します。
+     *
+     * @param argElementSheet
+     *            sheetエレメント。
+     * @param argDirectoryTarget
+     *            ソースコード生成先ディレクトリ (/mainを除く部分を指定します)。
+     * @param argListStructure
+     *            取得した ValueObject を追加するリスト。
+     */
+    private void processSheet(final BlancoXmlElement argElementSheet,
+                              final File argDirectoryTarget,
+                              final List<BlancoValueObjectClassStructure> argListStructure) {
+        // シートを一度だけ走査して、ValueObject の共通情報を持つシートだけを処理します。
+        // Java以外の言語用に記述されたシートにも対応．
+        final BlancoRestSheetIndex sheetIndex = new BlancoRestSheetIndex();
+        sheetIndex.addSheet(argElementSheet);
+        for (BlancoRestSheetIndex.Sheet sheet : sheetIndex.getObjectSheetList()) {
+            final BlancoXmlElement elementSheet = sheet.getElementSheet();
+            final BlancoXmlElement elementCommon = sheet.getElementCommon();
+            final int sheetLang = sheet.getLang();
+
+            BlancoXmlAttribute attr = new BlancoXmlAttribute();
+            attr.setType("CDATA");
+            attr.setQName("style");
+            attr.setLocalName("style");
+            attr.setValue(new BlancoCgSupportedLang().convertToString(sheetLang));
+            elementSheet.getAtts().add(attr);
+
+            if (fEvents.isDebugEnabled()) {
+                fEvents.debug("BlancoRestObjectsInfo", "style = "
+                        + BlancoXmlBindingUtil.getAttribute(elementSheet, "style"));
             }
 
             final String name = BlancoXmlBindingUtil.getTextContent(
@@ -150,35 +269,25 @@ public class BlancoRestObjectsInfo {
                 continue;
             }
 
-            System.out.println("/* tueda */ BlancoRestObjextsInfo className = " + name);
+            fEvents.debug("BlancoRestObjectsInfo", "className = " + name);
 
             // 一覧情報を取得します。
 //            final BlancoXmlElement elementList = BlancoXmlBindingUtil
 //                    .getElement(elementSheet, fBundle.getMeta2xmlElementList());
              /*
              * Java以外の言語用に記述されたシートにも対応．
+             * 従来どおり、シートの言語に対応する共通情報のエレメントを用います。
              */
-            BlancoXmlElement elementList = null;
-            for (String common : mapCommons.keySet()) {
-                if (mapCommons.get(common) == sheetLang) {
-                    elementList = BlancoXmlBindingUtil
-                            .getElement(elementSheet, common);
-                }
-            }
-            if (elementList == null) {
-                // 異常終了（ありえません）
-                System.out.println("/* tueda */ Emergency : No Lang defined.");
-                continue;
-            }
+            final BlancoXmlElement elementList = elementCommon;
 
             // シートから詳細な情報を取得します。
             final BlancoValueObjectClassStructure processStructure = parseSheet(
                     elementCommon, elementList, argDirectoryTarget);
 
             if (processStructure != null) {
-                objects.put(name, processStructure);
+                argListStructure.add(processStructure);
             } else {
-                System.out.println("/* tueda */ BlancoRestObjextsInfo processStructure is NULL!!!");
+                fEvents.warning("BlancoRestObjectsInfo", "no field list: " + name);
             }
         }
     }
@@ -0,0 +1,111 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import blanco.valueobject.valueobject.BlancoValueObjectClassStructure;
+
+/**
+ * ValueObject 名から ValueObject の構造を引くためのレジストリです。
+ *
+ * 生成処理ごとにインスタンスを作成して BlancoRestObjectsInfo から
+ * BlancoRestXml2SourceFile へと引き回します。static な状態を持たないため、
+ * 同じ JVM 内で複数の生成処理を並行して実行しても互いに影響しません。
+ *
+ * 参照が大半を占めるため、読み取りは変更されない限り同じスナップショットを
+ * 共有します。スナップショットは変更不可で、取得後に登録された内容は反映されません。
+ */
+public class BlancoRestObjectsRegistry {
+    /**
+     * ValueObject 名と ValueObject の構造の対応。
+     */
+    private final Map<String, BlancoValueObjectClassStructure> fMapObjects = new ConcurrentHashMap<String, BlancoValueObjectClassStructure>();
+
+    /**
+     * 最新のスナップショット。変更があった場合は null に戻します。
+     */
+    private volatile Map<String, BlancoValueObjectClassStructure> fSnapshot = null;
+
+    /**
+     * ValueObject を登録します。
+     *
+     * 同じ名前の ValueObject が登録済みの場合は置き換えます。
+     *
+     * @param argName
+     *            ValueObject 名。
+     * @param argStructure
+     *            ValueObject の構造。
+     */
+    public synchronized void put(final String argName,
+            final BlancoValueObjectClassStructure argStructure) {
+        fMapObjects.put(argName, argStructure);
+        fSnapshot = null;
+    }
+
+    /**
+     * 登録内容を指定された一覧で置き換えます。
+     *
+     * 一覧に含まれない ValueObject は削除されるため、同じレジストリを使い回しても
+     * 削除済みの ValueObject が残り続けることはありません。
+     *
+     * @param argMapObjects
+     *            ValueObject 名と ValueObject の構造の対応。
+     */
+    public synchronized void replace(
+            final Map<String, BlancoValueObjectClassStructure> argMapObjects) {
+        fMapObjects.keySet().retainAll(argMapObjects.keySet());
+        fMapObjects.putAll(argMapObjects);
+        fSnapshot = null;
+    }
+
+    /**
+     * 登録内容を全て削除します。
+     */
+    public synchronized void clear() {
+        fMapObjects.clear();
+        fSnapshot = null;
+    }
+
+    /**
+     * ValueObject の構造を取得します。
+     *
+     * @param argName
+     *            ValueObject 名。
+     * @return ValueObject の構造。登録されていない場合は null。
+     */
+    public BlancoValueObjectClassStructure get(final String argName) {
+        return fMapObjects.get(argName);
+    }
+
+    /**
+     * 現在の登録内容のスナップショットを取得します。
+     *
+     * @return 変更不可のスナップショット。
+     */
+    public Map<String, BlancoValueObjectClassStructure> snapshot() {
+        Map<String, BlancoValueObjectClassStructure> snapshot = fSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = fSnapshot;
+                if (snapshot == null) {
+                    snapshot = Collections
+                            .unmodifiableMap(new HashMap<String, BlancoValueObjectClassStructure>(
+                                    fMapObjects));
+                    fSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+}
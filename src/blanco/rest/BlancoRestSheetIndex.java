@@ -0,0 +1,264 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import blanco.rest.resourcebundle.BlancoRestResourceBundle;
+import blanco.xml.bind.valueobject.BlancoXmlElement;
+import blanco.xml.bind.valueobject.BlancoXmlNode;
+
+/**
+ * 中間XMLファイルのシートを種類ごとに分類した索引です。
+ *
+ * sheet エレメント直下の共通情報・一覧情報のエレメントを一度だけ走査して、
+ * 電文シート、電文処理シート、言語ごとの ValueObject シートに振り分けます。
+ * 各フェーズはシートを探し直すことなく、この索引から対象のシートだけを取り出して
+ * 処理します。シートは BlancoRestSheetReader から一つずつ登録することも、
+ * ルートエレメントからまとめて登録することもできます。
+ */
+public class BlancoRestSheetIndex {
+    /**
+     * シートの種類: 電文の共通情報。
+     */
+    private static final int KIND_TELEGRAM_COMMON = 1;
+
+    /**
+     * シートの種類: 電文の一覧情報。
+     */
+    private static final int KIND_TELEGRAM_LIST = 2;
+
+    /**
+     * シートの種類: 電文処理の共通情報。
+     */
+    private static final int KIND_PROCESS_COMMON = 3;
+
+    /**
+     * シートの種類: ValueObject の共通情報。
+     */
+    private static final int KIND_OBJECT_COMMON = 4;
+
+    /**
+     * 索引に登録されたシートです。
+     */
+    public static class Sheet {
+        /**
+         * sheet エレメント。
+         */
+        private final BlancoXmlElement fElementSheet;
+
+        /**
+         * 共通情報のエレメント。
+         */
+        private BlancoXmlElement fElementCommon = null;
+
+        /**
+         * 一覧情報のエレメント。
+         */
+        private BlancoXmlElement fElementList = null;
+
+        /**
+         * ValueObject シートが記述されたプログラミング言語。
+         */
+        private int fLang = -1;
+
+        /**
+         * シートを作成します。
+         *
+         * @param argElementSheet
+         *            sheet エレメント。
+         */
+        Sheet(final BlancoXmlElement argElementSheet) {
+            fElementSheet = argElementSheet;
+        }
+
+        /**
+         * sheet エレメントを取得します。
+         *
+         * @return sheet エレメント。
+         */
+        public BlancoXmlElement getElementSheet() {
+            return fElementSheet;
+        }
+
+        /**
+         * 共通情報のエレメントを取得します。
+         *
+         * @return 共通情報のエレメント。
+         */
+        public BlancoXmlElement getElementCommon() {
+            return fElementCommon;
+        }
+
+        /**
+         * 一覧情報のエレメントを取得します。
+         *
+         * @return 一覧情報のエレメント。存在しない場合は null。
+         */
+        public BlancoXmlElement getElementList() {
+            return fElementList;
+        }
+
+        /**
+         * ValueObject シートが記述されたプログラミング言語を取得します。
+         *
+         * @return BlancoCgSupportedLang の値。ValueObject シート以外では -1。
+         */
+        public int getLang() {
+            return fLang;
+        }
+    }
+
+    /**
+     * 電文シートの一覧。
+     */
+    private final List<Sheet> fListTelegramSheet = new ArrayList<Sheet>();
+
+    /**
+     * 電文処理シートの一覧。
+     */
+    private final List<Sheet> fListProcessSheet = new ArrayList<Sheet>();
+
+    /**
+     * ValueObject シートの一覧。
+     */
+    private final List<Sheet> fListObjectSheet = new ArrayList<Sheet>();
+
+    /**
+     * エレメント名とシートの種類の対応。
+     */
+    private final Map<String, Integer> fMapKind = new HashMap<String, Integer>();
+
+    /**
+     * 空の索引を作成します。
+     */
+    public BlancoRestSheetIndex() {
+        final BlancoRestResourceBundle bundle = new BlancoRestResourceBundle();
+        fMapKind.put(bundle.getMeta2xmlTelegramCommon(), KIND_TELEGRAM_COMMON);
+        fMapKind.put(bundle.getMeta2xmlTeregramList(), KIND_TELEGRAM_LIST);
+        fMapKind.put(bundle.getMeta2xmlProcessCommon(), KIND_PROCESS_COMMON);
+        for (String common : BlancoRestObjectsInfo.mapCommons.keySet()) {
+            fMapKind.put(common, KIND_OBJECT_COMMON);
+        }
+    }
+
+    /**
+     * ルートエレメント直下の全ての sheet エレメントを索引に登録します。
+     *
+     * @param argElementRoot
+     *            ルートエレメント。
+     */
+    public void addRoot(final BlancoXmlElement argElementRoot) {
+        for (BlancoXmlNode nodeSheet : argElementRoot.getChildNodes()) {
+            if (nodeSheet instanceof BlancoXmlElement == false
+                    || "sheet".equals(((BlancoXmlElement) nodeSheet)
+                            .getLocalName()) == false) {
+                continue;
+            }
+            addSheet((BlancoXmlElement) nodeSheet);
+        }
+    }
+
+    /**
+     * sheet エレメント直下を一度だけ走査して、シートを分類し索引に登録します。
+     *
+     * 同じ種類のエレメントが複数ある場合には、最初のものを採用します。
+     *
+     * @param argElementSheet
+     *            sheet エレメント。
+     */
+    public void addSheet(final BlancoXmlElement argElementSheet) {
+        BlancoXmlElement elementTelegramCommon = null;
+        BlancoXmlElement elementTelegramList = null;
+        BlancoXmlElement elementProcessCommon = null;
+        BlancoXmlElement elementObjectCommon = null;
+        for (BlancoXmlNode nodeChild : argElementSheet.getChildNodes()) {
+            if (nodeChild instanceof BlancoXmlElement == false) {
+                continue;
+            }
+            final BlancoXmlElement elementChild = (BlancoXmlElement) nodeChild;
+            final Integer kind = fMapKind.get(elementChild.getLocalName());
+            if (kind == null) {
+                continue;
+            }
+            switch (kind.intValue()) {
+            case KIND_TELEGRAM_COMMON:
+                if (elementTelegramCommon == null) {
+                    elementTelegramCommon = elementChild;
+                }
+                break;
+            case KIND_TELEGRAM_LIST:
+                if (elementTelegramList == null) {
+                    elementTelegramList = elementChild;
+                }
+                break;
+            case KIND_PROCESS_COMMON:
+                if (elementProcessCommon == null) {
+                    elementProcessCommon = elementChild;
+                }
+                break;
+            case KIND_OBJECT_COMMON:
+                if (elementObjectCommon == null) {
+                    elementObjectCommon = elementChild;
+                }
+                break;
+            }
+        }
+
+        if (elementTelegramCommon != null) {
+            final Sheet sheet = new Sheet(argElementSheet);
+            sheet.fElementCommon = elementTelegramCommon;
+            sheet.fElementList = elementTelegramList;
+            fListTelegramSheet.add(sheet);
+        }
+        if (elementProcessCommon != null) {
+            final Sheet sheet = new Sheet(argElementSheet);
+            sheet.fElementCommon = elementProcessCommon;
+            fListProcessSheet.add(sheet);
+        }
+        if (elementObjectCommon != null) {
+            final Sheet sheet = new Sheet(argElementSheet);
+            sheet.fElementCommon = elementObjectCommon;
+            sheet.fLang = BlancoRestObjectsInfo.mapCommons.get(
+                    elementObjectCommon.getLocalName()).intValue();
+            fListObjectSheet.add(sheet);
+        }
+    }
+
+    /**
+     * 電文シートの一覧を取得します。
+     *
+     * @return 電文シートの一覧 (出現順)。
+     */
+    public List<Sheet> getTelegramSheetList() {
+        return fListTelegramSheet;
+    }
+
+    /**
+     * 電文処理シートの一覧を取得します。
+     *
+     * @return 電文処理シートの一覧 (出現順)。
+     */
+    public List<Sheet> getProcessSheetList() {
+        return fListProcessSheet;
+    }
+
+    /**
+     * ValueObject シートの一覧を取得します。
+     *
+     * @return ValueObject シートの一覧 (出現順)。
+     */
+    public List<Sheet> getObjectSheetList() {
+        return fListObjectSheet;
+    }
+}
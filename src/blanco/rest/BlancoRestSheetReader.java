@@ -0,0 +1,191 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import blanco.xml.bind.valueobject.BlancoXmlAttribute;
+import blanco.xml.bind.valueobject.BlancoXmlCharacters;
+import blanco.xml.bind.valueobject.BlancoXmlElement;
+
+/**
+ * 中間XMLファイルをシート単位にストリーミングで読み込みます。
+ *
+ * BlancoXmlUnmarshaller のようにドキュメント全体のツリーを作成するのではなく、
+ * StAX でルートエレメント直下の sheet エレメントを一つずつ BlancoXmlElement として
+ * 組み立ててハンドラに渡します。ハンドラから戻ったシートは保持しないため、
+ * 読み込み中のメモリ使用量はおおむね一つのシートの大きさに抑えられます。
+ *
+ * 組み立てるエレメントは BlancoXmlUnmarshaller と同じ構造になるため、
+ * BlancoXmlBindingUtil をそのまま利用できます。
+ */
+public class BlancoRestSheetReader {
+    /**
+     * シートを受け取るハンドラです。
+     */
+    public interface Handler {
+        /**
+         * シートを一つ受け取ります。
+         *
+         * @param argElementSheet
+         *            sheet エレメント。
+         * @throws IOException
+         *             入出力例外が発生した場合。
+         */
+        void sheet(BlancoXmlElement argElementSheet) throws IOException;
+    }
+
+    /**
+     * シートを表すエレメント名。
+     */
+    private static final String ELEMENT_SHEET = "sheet";
+
+    /**
+     * 中間XMLファイルを読み込みます。
+     *
+     * @param argFileXml
+     *            中間XMLファイル。
+     * @param argHandler
+     *            シートを受け取るハンドラ。
+     * @return ルートエレメントが存在した場合は true。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public boolean read(final File argFileXml, final Handler argHandler)
+            throws IOException {
+        final InputStream inStream = new BufferedInputStream(
+                new FileInputStream(argFileXml), 8192);
+        try {
+            return read(inStream, argHandler);
+        } catch (XMLStreamException ex) {
+            throw new IOException("BlancoRestSheetReader: ["
+                    + argFileXml.getAbsolutePath() + "] " + ex.toString());
+        } finally {
+            inStream.close();
+        }
+    }
+
+    /**
+     * 中間XMLをストリームから読み込みます。
+     *
+     * @param argInStream
+     *            入力ストリーム。
+     * @param argHandler
+     *            シートを受け取るハンドラ。
+     * @return ルートエレメントが存在した場合は true。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     * @throws XMLStreamException
+     *             XMLの解析に失敗した場合。
+     */
+    public boolean read(final InputStream argInStream, final Handler argHandler)
+            throws IOException, XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+
+        final XMLStreamReader reader = factory.createXMLStreamReader(argInStream);
+        try {
+            boolean isRootFound = false;
+            // 現在の深さ。ルートエレメントが 1 です。
+            int depth = 0;
+            // 組み立て中のシートのエレメントの階層。
+            final List<BlancoXmlElement> listStack = new ArrayList<BlancoXmlElement>();
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    if (depth == 1) {
+                        isRootFound = true;
+                    } else if (listStack.size() > 0) {
+                        final BlancoXmlElement element = createElement(reader);
+                        listStack.get(listStack.size() - 1).getChildNodes()
+                                .add(element);
+                        listStack.add(element);
+                    } else if (depth == 2
+                            && ELEMENT_SHEET.equals(reader.getLocalName())) {
+                        listStack.add(createElement(reader));
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    if (listStack.size() > 0) {
+                        final BlancoXmlElement element = listStack
+                                .remove(listStack.size() - 1);
+                        if (listStack.size() == 0) {
+                            // シートが完成したのでハンドラに渡します。
+                            argHandler.sheet(element);
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (listStack.size() > 0) {
+                        final BlancoXmlCharacters characters = new BlancoXmlCharacters();
+                        characters.setValue(reader.getText());
+                        listStack.get(listStack.size() - 1).getChildNodes()
+                                .add(characters);
+                    }
+                    break;
+                }
+            }
+            return isRootFound;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 現在のイベントからエレメントを作成します。
+     *
+     * @param argReader
+     *            START_ELEMENT を指しているリーダー。
+     * @return エレメント。
+     */
+    private static BlancoXmlElement createElement(final XMLStreamReader argReader) {
+        final BlancoXmlElement element = new BlancoXmlElement();
+        element.setUri(argReader.getNamespaceURI() == null ? "" : argReader
+                .getNamespaceURI());
+        element.setLocalName(argReader.getLocalName());
+        final String prefix = argReader.getPrefix();
+        element.setQName(prefix == null || prefix.length() == 0 ? argReader
+                .getLocalName() : prefix + ":" + argReader.getLocalName());
+
+        final int attrLength = argReader.getAttributeCount();
+        for (int index = 0; index < attrLength; index++) {
+            final BlancoXmlAttribute attribute = new BlancoXmlAttribute();
+            element.getAtts().add(attribute);
+
+            final String attrPrefix = argReader.getAttributePrefix(index);
+            final String attrLocalName = argReader.getAttributeLocalName(index);
+            attribute.setUri(argReader.getAttributeNamespace(index) == null ? ""
+                    : argReader.getAttributeNamespace(index));
+            attribute.setLocalName(attrLocalName);
+            attribute.setQName(attrPrefix == null || attrPrefix.length() == 0 ? attrLocalName
+                    : attrPrefix + ":" + attrLocalName);
+            attribute.setType(argReader.getAttributeType(index));
+            attribute.setValue(argReader.getAttributeValue(index));
+        }
+        return element;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import blanco.cg.BlancoCgSupportedLang;
+import blanco.cg.transformer.BlancoCgTransformerFactory;
+import blanco.cg.valueobject.BlancoCgSourceFile;
+import blanco.commons.util.BlancoStringUtil;
+
+/**
+ * 自動生成したソースコードをファイルに出力します。
+ *
+ * ソースコードをいったんメモリ上に展開し、既存のファイルとサイズ、ハッシュの順に比較して
+ * 内容に差異がある場合にのみ書き込みます。書き込まないファイルは更新日時も変わらないため、
+ * 後続のコンパイラや IDE による再コンパイルを最小限に抑えられます。
+ *
+ * 並列に生成を行う複数のワーカーから共有できるよう、書き込み件数とスキップ件数は
+ * スレッドセーフに集計します。ファイルはいったん同じディレクトリの一時ファイルに書き出してから
+ * 名前を変更して置き換えるため、複製した定義書などで複数のワーカーが同じファイルを
+ * 出力しても内容が混ざりません。同じファイルへの二度目以降の出力は警告として通知します。
+ */
+public class BlancoRestSourceWriter {
+    /**
+     * メッセージに付ける接頭辞。
+     */
+    private static final String CMDLINE_PREFIX = "cg: ";
+
+    /**
+     * 出力対象となるプログラミング言語。
+     */
+    private final int fTargetLang;
+
+    /**
+     * 書き込んだファイルの件数。
+     */
+    private final AtomicInteger fWrittenCount = new AtomicInteger();
+
+    /**
+     * 内容が同じためスキップしたファイルの件数。
+     */
+    private final AtomicInteger fSkippedCount = new AtomicInteger();
+
+    /**
+     * この出力ステージで出力したファイルと、そのソースコードのハッシュ値の対応。
+     */
+    private final ConcurrentMap<File, String> fMapClaimed = new ConcurrentHashMap<File, String>();
+
+    /**
+     * 処理時間、件数、メッセージの通知先。
+     */
+    private BlancoRestEvents fEvents = new BlancoRestEvents();
+
+    /**
+     * Java 用の出力ステージを作成します。
+     */
+    public BlancoRestSourceWriter() {
+        this(BlancoCgSupportedLang.JAVA);
+    }
+
+    /**
+     * 指定言語用の出力ステージを作成します。
+     *
+     * @param argTargetLang
+     *            出力対象となるプログラミング言語。
+     */
+    public BlancoRestSourceWriter(final int argTargetLang) {
+        fTargetLang = argTargetLang;
+    }
+
+    /**
+     * 処理時間、件数、メッセージの通知先を設定します。
+     *
+     * @param argEvents
+     *            通知先。
+     */
+    public void setEvents(final BlancoRestEvents argEvents) {
+        fEvents = argEvents;
+    }
+
+    /**
+     * 書き込んだファイルの件数を取得します。
+     *
+     * @return 書き込んだファイルの件数。
+     */
+    public int getWrittenCount() {
+        return fWrittenCount.get();
+    }
+
+    /**
+     * 内容が同じためスキップしたファイルの件数を取得します。
+     *
+     * @return スキップしたファイルの件数。
+     */
+    public int getSkippedCount() {
+        return fSkippedCount.get();
+    }
+
+    /**
+     * ソースファイル情報の出力先ファイルを取得します。
+     *
+     * パッケージ構造をディレクトリ構造として考慮します。ファイル名が未設定の場合には
+     * 最初のクラス名をファイル名として設定します。
+     *
+     * @param argSourceFile
+     *            ソースファイル情報。
+     * @param argOutputDirectory
+     *            出力先ルートディレクトリ。
+     * @return 出力先ファイル。
+     */
+    public File getSourceFile(final BlancoCgSourceFile argSourceFile,
+            final File argOutputDirectory) {
+        if (argSourceFile.getName() == null) {
+            if (argSourceFile.getClassList().size() == 0) {
+                throw new IllegalArgumentException(
+                        "ソースファイル名の指定がなく、クラスも含まれていないため、ファイル名が確定できません。");
+            }
+            argSourceFile.setName(argSourceFile.getClassList().get(0).getName());
+        }
+
+        String strSubdirectory = BlancoStringUtil.null2Blank(
+                argSourceFile.getPackage()).replace('.', '/');
+        if (strSubdirectory.length() > 0) {
+            strSubdirectory = "/" + strSubdirectory;
+        }
+        return new File(argOutputDirectory.getAbsolutePath() + strSubdirectory
+                + "/" + argSourceFile.getName() + "."
+                + new BlancoCgSupportedLang().convertToString(fTargetLang)
+                        .toLowerCase());
+    }
+
+    /**
+     * ソースファイル情報をソースコードに展開し、内容に差異がある場合にのみファイルに書き込みます。
+     *
+     * @param argSourceFile
+     *            ソースファイル情報。
+     * @param argFileTarget
+     *            出力先ファイル。
+     * @return 展開したソースコードのハッシュ値。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public String write(final BlancoCgSourceFile argSourceFile,
+            final File argFileTarget) throws IOException {
+        final long start = fEvents.start();
+        final byte[] bytes = render(argSourceFile);
+        fEvents.stage("source.render", argFileTarget.getName(), start);
+        final String digest = BlancoRestManifest.digest(bytes);
+
+        final String digestClaimed = fMapClaimed.putIfAbsent(
+                argFileTarget.getAbsoluteFile(), digest);
+        if (digestClaimed != null) {
+            // 別の定義書が同じクラスを出力しています。
+            fEvents.count("source.files.duplicate", 1);
+            if (digestClaimed.equals(digest)) {
+                fEvents.warning("BlancoRestSourceWriter", CMDLINE_PREFIX
+                        + "duplicate (same content): "
+                        + argFileTarget.getAbsolutePath());
+                fSkippedCount.incrementAndGet();
+                return digest;
+            }
+            fEvents.warning("BlancoRestSourceWriter", CMDLINE_PREFIX
+                    + "duplicate (different content, last one written wins): "
+                    + argFileTarget.getAbsolutePath());
+        }
+
+        final boolean isExists = argFileTarget.exists();
+        if (isExists && argFileTarget.length() == bytes.length
+                && digest.equals(BlancoRestManifest.digest(argFileTarget))) {
+            fSkippedCount.incrementAndGet();
+            fEvents.count("source.files.unchanged", 1);
+            return digest;
+        }
+
+        final File dirParent = argFileTarget.getParentFile();
+        if (dirParent != null && dirParent.exists() == false
+                && dirParent.mkdirs() == false && dirParent.exists() == false) {
+            throw new IllegalArgumentException("出力先のパッケージディレクトリ["
+                    + dirParent.getAbsolutePath() + "]の生成に失敗しました。");
+        }
+        replace(argFileTarget, bytes);
+        fWrittenCount.incrementAndGet();
+        fEvents.count("source.files.written", 1);
+        fEvents.info("BlancoRestSourceWriter", CMDLINE_PREFIX
+                + (isExists ? "update: " : "create: ")
+                + argFileTarget.getAbsolutePath());
+        return digest;
+    }
+
+    /**
+     * 一時ファイルに書き出してから名前を変更して、ファイルの内容を置き換えます。
+     *
+     * @param argFileTarget
+     *            出力先ファイル。
+     * @param argBytes
+     *            ファイルの内容。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private static void replace(final File argFileTarget, final byte[] argBytes)
+            throws IOException {
+        final File fileWork = File.createTempFile(argFileTarget.getName() + ".",
+                ".tmp", argFileTarget.getAbsoluteFile().getParentFile());
+        try {
+            final OutputStream outStream = new FileOutputStream(fileWork);
+            try {
+                outStream.write(argBytes);
+            } finally {
+                outStream.close();
+            }
+            try {
+                Files.move(fileWork.toPath(), argFileTarget.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(fileWork.toPath(), argFileTarget.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (fileWork.exists()) {
+                fileWork.delete();
+            }
+        }
+    }
+
+    /**
+     * ソースファイル情報をメモリ上でソースコードに展開します。
+     *
+     * @param argSourceFile
+     *            ソースファイル情報。
+     * @return ソースコードのバイト列。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private byte[] render(final BlancoCgSourceFile argSourceFile)
+            throws IOException {
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream(8192);
+        final OutputStreamWriter streamWriter;
+        if (BlancoStringUtil.null2Blank(argSourceFile.getEncoding()).length() == 0) {
+            streamWriter = new OutputStreamWriter(outStream);
+        } else {
+            streamWriter = new OutputStreamWriter(outStream, argSourceFile
+                    .getEncoding());
+        }
+        final BufferedWriter writer = new BufferedWriter(streamWriter);
+        try {
+            BlancoCgTransformerFactory.getSourceTransformer(fTargetLang)
+                    .transform(argSourceFile, writer);
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+        return outStream.toByteArray();
+    }
+}
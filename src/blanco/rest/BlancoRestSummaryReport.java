@@ -0,0 +1,144 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 段階ごとの処理時間と件数、警告を集計し、処理の終了後に一覧として出力するリスナーです。
+ *
+ * 集計にはロックを使わないため、並列生成のワーカーから同時に呼び出しても
+ * 生成処理をほとんど妨げません。
+ */
+public class BlancoRestSummaryReport implements BlancoRestEventListener {
+    /**
+     * 段階ごとの集計。
+     */
+    private static final class Stage {
+        final LongAdder fCount = new LongAdder();
+        final LongAdder fTotalNanos = new LongAdder();
+        final AtomicLong fMaxNanos = new AtomicLong();
+    }
+
+    /**
+     * 段階名と集計の対応。
+     */
+    private final ConcurrentMap<String, Stage> fStages = new ConcurrentHashMap<String, Stage>();
+
+    /**
+     * 件数の名前と件数の対応。
+     */
+    private final ConcurrentMap<String, LongAdder> fCounters = new ConcurrentHashMap<String, LongAdder>();
+
+    /**
+     * 受け取った警告。
+     */
+    private final ConcurrentLinkedQueue<String> fWarnings = new ConcurrentLinkedQueue<String>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public void stage(final String argStage, final String argSubject,
+            final long argStartNanos, final long argElapsedNanos) {
+        Stage stage = fStages.get(argStage);
+        if (stage == null) {
+            stage = new Stage();
+            final Stage past = fStages.putIfAbsent(argStage, stage);
+            if (past != null) {
+                stage = past;
+            }
+        }
+        stage.fCount.increment();
+        stage.fTotalNanos.add(argElapsedNanos);
+        stage.fMaxNanos.accumulateAndGet(argElapsedNanos, Math::max);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void count(final String argName, final long argDelta) {
+        LongAdder counter = fCounters.get(argName);
+        if (counter == null) {
+            counter = new LongAdder();
+            final LongAdder past = fCounters.putIfAbsent(argName, counter);
+            if (past != null) {
+                counter = past;
+            }
+        }
+        counter.add(argDelta);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void message(final Level argLevel, final String argSource,
+            final String argMessage) {
+        if (argLevel == Level.WARNING) {
+            fWarnings.add(argSource + ": " + argMessage);
+        }
+    }
+
+    /**
+     * 件数を取得します。
+     *
+     * @param argName
+     *            件数の名前。
+     * @return 件数。記録されていない場合は 0。
+     */
+    public long getCount(final String argName) {
+        final LongAdder counter = fCounters.get(argName);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * 受け取った警告の一覧を取得します。
+     *
+     * @return 警告の一覧 (受け取った順)。
+     */
+    public List<String> getWarnings() {
+        return new ArrayList<String>(fWarnings);
+    }
+
+    /**
+     * 集計結果を出力します。
+     *
+     * @param argOut
+     *            出力先。
+     */
+    public void print(final PrintStream argOut) {
+        argOut.println("summary: stage                          count    total(ms)     mean(ms)      max(ms)");
+        for (Map.Entry<String, Stage> entry : new TreeMap<String, Stage>(fStages).entrySet()) {
+            final Stage stage = entry.getValue();
+            final long count = stage.fCount.sum();
+            final long total = stage.fTotalNanos.sum();
+            argOut.println(String.format(Locale.US, "summary: %-30s %6d %12.1f %12.3f %12.3f",
+                    entry.getKey(), count, total / 1e6,
+                    count == 0 ? 0 : total / 1e6 / count, stage.fMaxNanos.get() / 1e6));
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<String, LongAdder>(fCounters).entrySet()) {
+            argOut.println(String.format(Locale.US, "summary: %-30s %6d",
+                    entry.getKey(), entry.getValue().sum()));
+        }
+        argOut.println("summary: " + fWarnings.size() + " warning(s).");
+        for (String warning : fWarnings) {
+            argOut.println("summary:   " + warning);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 段階ごとの処理時間を JSON の時系列として記録するリスナーです。
+ *
+ * Trace Event Format ({"traceEvents": [...]}) で出力するため、chrome://tracing などで
+ * スレッドごとの処理の重なりを確認できます。段階は完了イベント (ph = X)、
+ * 警告は瞬間イベント (ph = i) として記録します。時刻はこのリスナーを作成した時点からの
+ * マイクロ秒です。
+ */
+public class BlancoRestTimingTrace implements BlancoRestEventListener {
+    /**
+     * 時刻の基準 (System.nanoTime の値)。
+     */
+    private final long fBaseNanos = System.nanoTime();
+
+    /**
+     * 記録したイベント (JSON オブジェクト)。
+     */
+    private final ConcurrentLinkedQueue<String> fEvents = new ConcurrentLinkedQueue<String>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public void stage(final String argStage, final String argSubject,
+            final long argStartNanos, final long argElapsedNanos) {
+        final StringBuilder buf = new StringBuilder(160);
+        buf.append("{\"name\":");
+        appendString(buf, argStage);
+        buf.append(",\"cat\":\"blancorest\",\"ph\":\"X\",\"ts\":");
+        buf.append((argStartNanos - fBaseNanos) / 1000);
+        buf.append(",\"dur\":").append(argElapsedNanos / 1000);
+        buf.append(",\"pid\":1,\"tid\":").append(Thread.currentThread().getId());
+        if (argSubject != null) {
+            buf.append(",\"args\":{\"subject\":");
+            appendString(buf, argSubject);
+            buf.append('}');
+        }
+        buf.append('}');
+        fEvents.add(buf.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void count(final String argName, final long argDelta) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void message(final Level argLevel, final String argSource,
+            final String argMessage) {
+        if (argLevel != Level.WARNING) {
+            return;
+        }
+        final StringBuilder buf = new StringBuilder(160);
+        buf.append("{\"name\":\"warning\",\"cat\":\"blancorest\",\"ph\":\"i\",\"s\":\"t\",\"ts\":");
+        buf.append((System.nanoTime() - fBaseNanos) / 1000);
+        buf.append(",\"pid\":1,\"tid\":").append(Thread.currentThread().getId());
+        buf.append(",\"args\":{\"source\":");
+        appendString(buf, argSource);
+        buf.append(",\"message\":");
+        appendString(buf, argMessage);
+        buf.append("}}");
+        fEvents.add(buf.toString());
+    }
+
+    /**
+     * 記録したイベントをファイルに出力します。
+     *
+     * @param argFile
+     *            出力先ファイル。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public void write(final File argFile) throws IOException {
+        final File dirParent = argFile.getAbsoluteFile().getParentFile();
+        if (dirParent != null) {
+            dirParent.mkdirs();
+        }
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(argFile), "UTF-8"));
+        try {
+            writer.write("{\"traceEvents\":[\n");
+            boolean isFirst = true;
+            for (String event : fEvents) {
+                if (isFirst == false) {
+                    writer.write(",\n");
+                }
+                writer.write(event);
+                isFirst = false;
+            }
+            writer.write("\n]}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 文字列を JSON の文字列リテラルとして追記します。
+     */
+    private static void appendString(final StringBuilder argBuf,
+            final String argValue) {
+        argBuf.append('"');
+        for (int index = 0; index < argValue.length(); index++) {
+            final char c = argValue.charAt(index);
+            if (c == '"' || c == '\\') {
+                argBuf.append('\\').append(c);
+            } else if (c < 0x20) {
+                argBuf.append(String.format("\\u%04x", Integer.valueOf(c)));
+            } else {
+                argBuf.append(c);
+            }
+        }
+        argBuf.append('"');
+    }
+}
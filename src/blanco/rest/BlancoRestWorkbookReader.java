@@ -0,0 +1,348 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.TransformerException;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import blanco.commons.calc.parser.BlancoCalcParser;
+import blanco.xml.bind.valueobject.BlancoXmlAttribute;
+import blanco.xml.bind.valueobject.BlancoXmlCharacters;
+import blanco.xml.bind.valueobject.BlancoXmlElement;
+
+/**
+ * 定義書 (Excel ブック) を中間XMLファイルを介さずにシート単位で読み込みます。
+ *
+ * BlancoRestMeta2Xml と同じく BlancoCalcParser と定義書構造XMLファイル
+ * (BlancoRestMeta2Xml.xml) でブックを解析しますが、解析結果の SAX イベントを XML に
+ * 書き出さず、そのまま sheet エレメントとして組み立ててハンドラに渡します。
+ * 組み立てるエレメントは中間XMLファイルを BlancoRestSheetReader で読み込んだ場合と
+ * 同じ構造になるため、以降の処理は中間XMLファイルの場合と共通です。
+ *
+ * 中間XMLファイルの書き込みと読み直しが無くなるため、テンポラリディレクトリへの
+ * 入出力も発生しません。
+ *
+ * xlsx 形式の定義書は BlancoRestXlsxParser でシートを一行ずつ読み込みます。
+ */
+public class BlancoRestWorkbookReader {
+    /**
+     * 定義書構造XMLファイルのリソース名。
+     */
+    private static final String RESOURCE_META_DEF = "blanco/rest/BlancoRestMeta2Xml.xml";
+
+    /**
+     * シートを表すエレメント名。
+     */
+    private static final String ELEMENT_SHEET = "sheet";
+
+    /**
+     * 定義書 (xls 形式) の拡張子。
+     */
+    private static final String EXTENSION_XLS = ".xls";
+
+    /**
+     * 定義書 (xlsx 形式) の拡張子。
+     */
+    private static final String EXTENSION_XLSX = ".xlsx";
+
+    /**
+     * Excel のロックファイルの接頭辞。
+     */
+    private static final String PREFIX_LOCK_FILE = "~$";
+
+    /**
+     * 定義書構造XMLファイルの内容。最初に使われた時に読み込みます。
+     */
+    private static volatile byte[] fMetaDef = null;
+
+    /**
+     * 指定されたファイルがこのクラスで読み込む定義書かどうかを判定します。
+     *
+     * Excel が編集中に作成するロックファイル (~$ で始まるファイル) は定義書とみなしません。
+     *
+     * @param argFile
+     *            ファイル。
+     * @return 定義書 (xls 形式または xlsx 形式) であれば true。
+     */
+    public static boolean isWorkbook(final File argFile) {
+        if (argFile.getName().startsWith(PREFIX_LOCK_FILE)) {
+            return false;
+        }
+        return argFile.getName().endsWith(EXTENSION_XLS) || isXlsx(argFile);
+    }
+
+    /**
+     * 指定されたファイルが xlsx 形式の定義書かどうかを判定します。
+     *
+     * xlsx 形式の定義書は中間XMLファイルに変換できないため、常に直接読み込みます。
+     *
+     * @param argFile
+     *            ファイル。
+     * @return xlsx 形式の定義書であれば true。
+     */
+    public static boolean isXlsx(final File argFile) {
+        return argFile.getName().endsWith(EXTENSION_XLSX);
+    }
+
+    /**
+     * 定義書を読み込みます。
+     *
+     * @param argFileWorkbook
+     *            定義書ファイル。
+     * @param argHandler
+     *            シートを受け取るハンドラ。
+     * @return ルートエレメントが存在した場合は true。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    public boolean read(final File argFileWorkbook,
+            final BlancoRestSheetReader.Handler argHandler) throws IOException {
+        if (isXlsx(argFileWorkbook)) {
+            try {
+                final BlancoRestXlsxParser parser = new BlancoRestXlsxParser();
+                final SheetBuilder builder = prepare(parser, argHandler);
+                try {
+                    parser.parse(argFileWorkbook);
+                } catch (SAXException ex) {
+                    throw unwrap(ex);
+                }
+                return builder.fIsRootFound;
+            } catch (TransformerException ex) {
+                throw new IOException("BlancoRestWorkbookReader: ["
+                        + argFileWorkbook.getAbsolutePath() + "] " + ex.toString());
+            } catch (SAXException ex) {
+                throw new IOException("BlancoRestWorkbookReader: ["
+                        + argFileWorkbook.getAbsolutePath() + "] " + ex.toString());
+            }
+        }
+
+        final InputStream inStream = new BufferedInputStream(
+                new FileInputStream(argFileWorkbook), 8192);
+        try {
+            return read(inStream, argHandler);
+        } catch (TransformerException ex) {
+            throw new IOException("BlancoRestWorkbookReader: ["
+                    + argFileWorkbook.getAbsolutePath() + "] " + ex.toString());
+        } catch (SAXException ex) {
+            throw new IOException("BlancoRestWorkbookReader: ["
+                    + argFileWorkbook.getAbsolutePath() + "] " + ex.toString());
+        } finally {
+            inStream.close();
+        }
+    }
+
+    /**
+     * xls 形式の定義書をストリームから読み込みます。
+     *
+     * @param argInStream
+     *            入力ストリーム。
+     * @param argHandler
+     *            シートを受け取るハンドラ。
+     * @return ルートエレメントが存在した場合は true。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     * @throws TransformerException
+     *             定義書構造XMLファイルの読み込みに失敗した場合。
+     * @throws SAXException
+     *             定義書の解析に失敗した場合。
+     */
+    public boolean read(final InputStream argInStream,
+            final BlancoRestSheetReader.Handler argHandler) throws IOException,
+            TransformerException, SAXException {
+        final BlancoCalcParser parser = new BlancoCalcParser();
+        final SheetBuilder builder = prepare(parser, argHandler);
+        try {
+            parser.parse(new InputSource(argInStream));
+        } catch (SAXException ex) {
+            throw unwrap(ex);
+        }
+        return builder.fIsRootFound;
+    }
+
+    /**
+     * パーサに定義書構造XMLファイルを読み込ませ、シートを組み立てるハンドラを設定します。
+     *
+     * ブロックの列位置などの解析中の状態を持つため、パーサはブックごとに作成します。
+     */
+    private static SheetBuilder prepare(final BlancoCalcParser argParser,
+            final BlancoRestSheetReader.Handler argHandler) throws IOException,
+            TransformerException {
+        argParser.readDef(new ByteArrayInputStream(getMetaDef()));
+        final SheetBuilder builder = new SheetBuilder(argHandler);
+        argParser.setContentHandler(builder);
+        return builder;
+    }
+
+    /**
+     * ハンドラで発生した入出力例外はそのまま伝えます。
+     */
+    private static SAXException unwrap(final SAXException argException)
+            throws IOException {
+        if (argException.getException() instanceof IOException) {
+            throw (IOException) argException.getException();
+        }
+        return argException;
+    }
+
+    /**
+     * 定義書構造XMLファイルの内容を取得します。
+     *
+     * @return 定義書構造XMLファイルの内容。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private static byte[] getMetaDef() throws IOException {
+        byte[] metaDef = fMetaDef;
+        if (metaDef != null) {
+            return metaDef;
+        }
+        final InputStream inStream = BlancoRestWorkbookReader.class
+                .getClassLoader().getResourceAsStream(RESOURCE_META_DEF);
+        if (inStream == null) {
+            throw new IllegalArgumentException("BlancoRestWorkbookReader: リソース["
+                    + RESOURCE_META_DEF + "]の取得に失敗しました.");
+        }
+        try {
+            final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            final byte[] bufWrk = new byte[8192];
+            for (;;) {
+                final int readLength = inStream.read(bufWrk);
+                if (readLength <= 0) {
+                    break;
+                }
+                outStream.write(bufWrk, 0, readLength);
+            }
+            metaDef = outStream.toByteArray();
+        } finally {
+            inStream.close();
+        }
+        fMetaDef = metaDef;
+        return metaDef;
+    }
+
+    /**
+     * BlancoCalcParser の SAX イベントから sheet エレメントを組み立てます。
+     */
+    private static class SheetBuilder extends DefaultHandler {
+        /**
+         * シートを受け取るハンドラ。
+         */
+        private final BlancoRestSheetReader.Handler fHandler;
+
+        /**
+         * ルートエレメントが存在したかどうか。
+         */
+        private boolean fIsRootFound = false;
+
+        /**
+         * 現在の深さ。ルートエレメントが 1 です。
+         */
+        private int fDepth = 0;
+
+        /**
+         * 組み立て中のシートのエレメントの階層。
+         */
+        private final List<BlancoXmlElement> fListStack = new ArrayList<BlancoXmlElement>();
+
+        /**
+         * @param argHandler
+         *            シートを受け取るハンドラ。
+         */
+        SheetBuilder(final BlancoRestSheetReader.Handler argHandler) {
+            fHandler = argHandler;
+        }
+
+        @Override
+        public void startElement(final String argUri, final String argLocalName,
+                final String argQName, final Attributes argAttributes) {
+            fDepth++;
+            if (fDepth == 1) {
+                fIsRootFound = true;
+            } else if (fListStack.size() > 0) {
+                final BlancoXmlElement element = createElement(argUri,
+                        argLocalName, argQName, argAttributes);
+                fListStack.get(fListStack.size() - 1).getChildNodes().add(element);
+                fListStack.add(element);
+            } else if (fDepth == 2 && ELEMENT_SHEET.equals(argLocalName)) {
+                fListStack.add(createElement(argUri, argLocalName, argQName,
+                        argAttributes));
+            }
+        }
+
+        @Override
+        public void endElement(final String argUri, final String argLocalName,
+                final String argQName) throws SAXException {
+            fDepth--;
+            if (fListStack.size() > 0) {
+                final BlancoXmlElement element = fListStack.remove(fListStack
+                        .size() - 1);
+                if (fListStack.size() == 0) {
+                    // シートが完成したのでハンドラに渡します。
+                    try {
+                        fHandler.sheet(element);
+                    } catch (IOException ex) {
+                        throw new SAXException(ex);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void characters(final char[] argCh, final int argStart,
+                final int argLength) {
+            if (fListStack.size() > 0 && argLength > 0) {
+                final BlancoXmlCharacters characters = new BlancoXmlCharacters();
+                characters.setValue(new String(argCh, argStart, argLength));
+                fListStack.get(fListStack.size() - 1).getChildNodes().add(
+                        characters);
+            }
+        }
+
+        /**
+         * SAX イベントの引数からエレメントを作成します。
+         */
+        private static BlancoXmlElement createElement(final String argUri,
+                final String argLocalName, final String argQName,
+                final Attributes argAttributes) {
+            final BlancoXmlElement element = new BlancoXmlElement();
+            element.setUri(argUri == null ? "" : argUri);
+            element.setLocalName(argLocalName);
+            element.setQName(argQName == null || argQName.length() == 0 ? argLocalName
+                    : argQName);
+
+            for (int index = 0; index < argAttributes.getLength(); index++) {
+                final BlancoXmlAttribute attribute = new BlancoXmlAttribute();
+                element.getAtts().add(attribute);
+
+                attribute.setUri(argAttributes.getURI(index) == null ? ""
+                        : argAttributes.getURI(index));
+                attribute.setLocalName(argAttributes.getLocalName(index));
+                attribute.setQName(argAttributes.getQName(index));
+                attribute.setType(argAttributes.getType(index));
+                attribute.setValue(argAttributes.getValue(index));
+            }
+            return element;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import blanco.commons.calc.parser.BlancoCalcParser;
+
+/**
+ * xlsx 形式 (Office Open XML) の定義書を解析する BlancoCalcParser です。
+ *
+ * BlancoCalcParser は jxl でブック全体をメモリに読み込んでから解析しますが、このクラスは
+ * ワークシートの XML を StAX で一行ずつ読み込み、BlancoCalcParser と同じ行・列・セルの
+ * 通知を行います。ブロックの解析は BlancoCalcParser そのものが行うため、定義書構造XMLファイル
+ * (BlancoRestMeta2Xml.xml) の解釈や発生する SAX イベントは xls 形式の場合と同じです。
+ *
+ * メモリに保持するのは共有文字列の一覧と解析中の一行分のセルだけで、シートの行数には
+ * 依存しません。数値のセルは表示形式を適用せずに、数値をそのまま文字列にします。
+ */
+public class BlancoRestXlsxParser extends BlancoCalcParser {
+    /**
+     * ワークブックのパス。
+     */
+    private static final String ENTRY_WORKBOOK = "xl/workbook.xml";
+
+    /**
+     * ワークブックのリレーションシップのパス。
+     */
+    private static final String ENTRY_WORKBOOK_RELS = "xl/_rels/workbook.xml.rels";
+
+    /**
+     * 共有文字列のリレーションシップの種類 (末尾)。
+     */
+    private static final String REL_TYPE_SHARED_STRINGS = "/sharedStrings";
+
+    /**
+     * StAX のファクトリ。
+     */
+    private final XMLInputFactory fFactory;
+
+    /**
+     * BlancoRestXlsxParser のコンストラクタ。
+     */
+    public BlancoRestXlsxParser() {
+        fFactory = XMLInputFactory.newInstance();
+        fFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        fFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+        fFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
+    /**
+     * xlsx 形式の定義書を解析します。
+     *
+     * @param argFileXlsx
+     *            定義書ファイル。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     * @throws SAXException
+     *             SAX例外が発生した場合。
+     */
+    public void parse(final File argFileXlsx) throws IOException, SAXException {
+        final ZipFile zipFile = new ZipFile(argFileXlsx);
+        try {
+            // シートの順序と名前はワークブック、シートの実体のパスはリレーションシップから求めます。
+            final Map<String, String[]> mapRels = readRelationships(zipFile);
+            final List<String> listSharedString = new ArrayList<String>();
+            for (String[] rel : mapRels.values()) {
+                if (rel[0].endsWith(REL_TYPE_SHARED_STRINGS)) {
+                    readSharedStrings(zipFile, rel[1], listSharedString);
+                }
+            }
+            final List<String[]> listSheet = readSheets(zipFile, mapRels);
+
+            getContentHandler().startDocument();
+            final String workbook = (String) getProperty(URI_PROPERTY_NAME_WORKBOOK);
+            getContentHandler().startElement("", workbook, workbook,
+                    new AttributesImpl());
+            for (String[] sheet : listSheet) {
+                parseSheet(zipFile, sheet[0], sheet[1], listSharedString);
+            }
+            getContentHandler().endElement("", workbook, workbook);
+            getContentHandler().endDocument();
+        } catch (XMLStreamException ex) {
+            throw new IOException("BlancoRestXlsxParser: ["
+                    + argFileXlsx.getAbsolutePath() + "] " + ex.toString());
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * シートを一行ずつ解析します。
+     *
+     * BlancoCalcParser は空の行でもブロックの終了を判定するため、XML に現れない行も
+     * 空の行として通知します。行の途中の空のセルも同様に空文字列のセルとして通知します。
+     */
+    private void parseSheet(final ZipFile argZipFile, final String argName,
+            final String argEntryName, final List<String> argListSharedString)
+            throws IOException, XMLStreamException, SAXException {
+        final String sheet = (String) getProperty(URI_PROPERTY_NAME_SHEET);
+        final AttributesImpl attrImpl = new AttributesImpl();
+        attrImpl.addAttribute("", "name", "name", "CDATA", argName);
+        getContentHandler().startElement("", sheet, sheet, attrImpl);
+        startSheet(argName);
+
+        final List<String> listCell = new ArrayList<String>();
+        int rowNext = 1;
+        final InputStream inStream = getEntryStream(argZipFile, argEntryName);
+        try {
+            final XMLStreamReader reader = fFactory
+                    .createXMLStreamReader(inStream);
+            try {
+                int row = 0;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if ("row".equals(reader.getLocalName())) {
+                            final String ref = reader.getAttributeValue(null, "r");
+                            row = (ref == null ? rowNext : Integer.parseInt(ref));
+                            for (; rowNext < row; rowNext++) {
+                                fireRow(rowNext, listCell);
+                            }
+                        } else if ("c".equals(reader.getLocalName())) {
+                            final String ref = reader.getAttributeValue(null, "r");
+                            final int column = (ref == null ? listCell.size() + 1
+                                    : toColumn(ref));
+                            final String value = readCell(reader,
+                                    argListSharedString);
+                            while (listCell.size() < column) {
+                                listCell.add("");
+                            }
+                            listCell.set(column - 1, value);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT
+                            && "row".equals(reader.getLocalName())) {
+                        fireRow(row, listCell);
+                        rowNext = row + 1;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            inStream.close();
+        }
+
+        endSheet(null);
+        getContentHandler().endElement("", sheet, sheet);
+    }
+
+    /**
+     * 一行分のセルを BlancoCalcParser に通知します。
+     *
+     * @param argRow
+     *            行 (1 オリジン)。
+     * @param argListCell
+     *            行のセルの値。通知後に空にします。
+     */
+    private void fireRow(final int argRow, final List<String> argListCell)
+            throws SAXException {
+        startRow(argRow);
+        for (int index = 0; index < argListCell.size(); index++) {
+            startColumn(index + 1);
+            // コンテンツは trim() せずに、そのまま渡します。
+            fireCell(index + 1, argRow, argListCell.get(index));
+            endColumn(index + 1);
+        }
+        endRow(argRow);
+        argListCell.clear();
+    }
+
+    /**
+     * c エレメントからセルの値を読み込みます。読み込み後は c エレメントの終了位置にあります。
+     */
+    private static String readCell(final XMLStreamReader argReader,
+            final List<String> argListSharedString) throws XMLStreamException {
+        final String type = argReader.getAttributeValue(null, "t");
+        String value = null;
+        while (argReader.hasNext()) {
+            final int event = argReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("v".equals(argReader.getLocalName())) {
+                    value = argReader.getElementText();
+                } else if ("is".equals(argReader.getLocalName())) {
+                    value = readText(argReader);
+                } else {
+                    // 数式 (f) などは使いません。
+                    skipElement(argReader);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        if (value == null) {
+            return "";
+        }
+
+        if ("s".equals(type)) {
+            final int index = Integer.parseInt(value.trim());
+            return (index < argListSharedString.size() ? argListSharedString
+                    .get(index) : "");
+        } else if ("b".equals(type)) {
+            // jxl と同じく true / false とします。
+            return String.valueOf("1".equals(value.trim()));
+        } else if (type == null || "n".equals(type)) {
+            return formatNumber(value);
+        }
+        // inlineStr、str (数式の結果)、e (エラー)、d (日付) はそのままとします。
+        return value;
+    }
+
+    /**
+     * 数値を文字列にします。整数は小数点を付けず、指数表記も使いません。
+     */
+    private static String formatNumber(final String argValue) {
+        try {
+            final BigDecimal number = new BigDecimal(argValue.trim());
+            if (number.signum() == 0) {
+                return "0";
+            }
+            return number.stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException ex) {
+            return argValue;
+        }
+    }
+
+    /**
+     * 文字列を持つエレメント (si または is) の t エレメントの文字列を連結して読み込みます。
+     *
+     * ふりがな (rPh) の文字列は含めません。読み込み後はエレメントの終了位置にあります。
+     */
+    private static String readText(final XMLStreamReader argReader)
+            throws XMLStreamException {
+        final StringBuilder buf = new StringBuilder();
+        int depth = 1;
+        int depthPhonetic = 0;
+        boolean isText = false;
+        while (depth > 0 && argReader.hasNext()) {
+            final int event = argReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if ("rPh".equals(argReader.getLocalName())) {
+                    depthPhonetic++;
+                } else if ("t".equals(argReader.getLocalName())) {
+                    isText = true;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if ("rPh".equals(argReader.getLocalName())) {
+                    depthPhonetic--;
+                } else if ("t".equals(argReader.getLocalName())) {
+                    isText = false;
+                }
+            } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+                    && isText && depthPhonetic == 0) {
+                buf.append(argReader.getText());
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * 現在のエレメントを読み飛ばします。読み込み後はエレメントの終了位置にあります。
+     */
+    private static void skipElement(final XMLStreamReader argReader)
+            throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && argReader.hasNext()) {
+            final int event = argReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * 共有文字列を読み込みます。
+     */
+    private void readSharedStrings(final ZipFile argZipFile,
+            final String argEntryName, final List<String> argListSharedString)
+            throws IOException, XMLStreamException {
+        final InputStream inStream = getEntryStream(argZipFile, argEntryName);
+        try {
+            final XMLStreamReader reader = fFactory
+                    .createXMLStreamReader(inStream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "si".equals(reader.getLocalName())) {
+                        argListSharedString.add(readText(reader));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            inStream.close();
+        }
+    }
+
+    /**
+     * ワークブックのリレーションシップを読み込みます。
+     *
+     * @return リレーションシップ ID と、種類およびパスの対応。
+     */
+    private Map<String, String[]> readRelationships(final ZipFile argZipFile)
+            throws IOException, XMLStreamException {
+        final Map<String, String[]> mapRels = new HashMap<String, String[]>();
+        final InputStream inStream = getEntryStream(argZipFile,
+                ENTRY_WORKBOOK_RELS);
+        try {
+            final XMLStreamReader reader = fFactory
+                    .createXMLStreamReader(inStream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "Relationship".equals(reader.getLocalName())) {
+                        final String target = reader.getAttributeValue(null,
+                                "Target");
+                        // 相対パスはワークブックのあるディレクトリ (xl/) からのパスです。
+                        final String entryName = (target.startsWith("/") ? target
+                                .substring(1) : "xl/" + target);
+                        mapRels.put(reader.getAttributeValue(null, "Id"),
+                                new String[] {
+                                        reader.getAttributeValue(null, "Type"),
+                                        entryName });
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            inStream.close();
+        }
+        return mapRels;
+    }
+
+    /**
+     * ワークブックからシートの一覧を読み込みます。
+     *
+     * @return シート名とシートのパスの一覧 (ブック内の順序)。
+     */
+    private List<String[]> readSheets(final ZipFile argZipFile,
+            final Map<String, String[]> argMapRels) throws IOException,
+            XMLStreamException {
+        final List<String[]> listSheet = new ArrayList<String[]>();
+        final InputStream inStream = getEntryStream(argZipFile, ENTRY_WORKBOOK);
+        try {
+            final XMLStreamReader reader = fFactory
+                    .createXMLStreamReader(inStream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT
+                            || "sheet".equals(reader.getLocalName()) == false) {
+                        continue;
+                    }
+                    // r:id の名前空間は形式 (Transitional / Strict) によって異なります。
+                    String relId = null;
+                    for (int index = 0; index < reader.getAttributeCount(); index++) {
+                        if ("id".equals(reader.getAttributeLocalName(index))
+                                && reader.getAttributeNamespace(index) != null) {
+                            relId = reader.getAttributeValue(index);
+                        }
+                    }
+                    final String[] rel = argMapRels.get(relId);
+                    if (rel == null) {
+                        throw new IOException("BlancoRestXlsxParser: シート["
+                                + reader.getAttributeValue(null, "name")
+                                + "]の実体が見つかりません.");
+                    }
+                    listSheet.add(new String[] {
+                            reader.getAttributeValue(null, "name"), rel[1] });
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            inStream.close();
+        }
+        return listSheet;
+    }
+
+    /**
+     * ZIP のエントリの入力ストリームを取得します。
+     */
+    private static InputStream getEntryStream(final ZipFile argZipFile,
+            final String argEntryName) throws IOException {
+        final ZipEntry entry = argZipFile.getEntry(argEntryName);
+        if (entry == null) {
+            throw new IOException("BlancoRestXlsxParser: エントリ[" + argEntryName
+                    + "]が見つかりません.");
+        }
+        return argZipFile.getInputStream(entry);
+    }
+
+    /**
+     * セル参照 (例: AB12) から列 (1 オリジン) を求めます。
+     */
+    private static int toColumn(final String argRef) {
+        int column = 0;
+        for (int index = 0; index < argRef.length(); index++) {
+            final char ch = argRef.charAt(index);
+            if (ch < 'A' || ch > 'Z') {
+                break;
+            }
+            column = column * 26 + (ch - 'A' + 1);
+        }
+        return column;
+    }
+}
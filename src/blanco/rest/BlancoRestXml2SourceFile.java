@@ -11,9 +11,9 @@ package blanco.rest;
 
 import blanco.cg.BlancoCgObjectFactory;
 import blanco.cg.BlancoCgSupportedLang;
-import blanco.cg.transformer.BlancoCgTransformerFactory;
 import blanco.cg.util.BlancoCgLineUtil;
 import blanco.cg.valueobject.*;
+import blanco.commons.util.BlancoJavaSourceUtil;
 import blanco.commons.util.BlancoNameAdjuster;
 import blanco.commons.util.BlancoStringUtil;
 import blanco.rest.resourcebundle.BlancoRestResourceBundle;
@@ -22,15 +22,20 @@ import blanco.rest.valueobject.BlancoRestTelegramField;
 import blanco.rest.valueobject.BlancoRestTelegramProcess;
 import blanco.valueobject.valueobject.BlancoValueObjectClassStructure;
 import blanco.xml.bind.BlancoXmlBindingUtil;
-import blanco.xml.bind.BlancoXmlUnmarshaller;
-import blanco.xml.bind.valueobject.BlancoXmlAttribute;
-import blanco.xml.bind.valueobject.BlancoXmlDocument;
 import blanco.xml.bind.valueobject.BlancoXmlElement;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * 「メッセージ定義書」Excel様式からメッセージを処理するクラス・ソースコードを生成。
@@ -62,18 +67,11 @@ public class BlancoRestXml2SourceFile {
 
     /**
      * 内部的に利用するblancoCg用ファクトリ。
+     *
+     * ファクトリは状態を持たないため共有します。ソースファイル情報やクラス情報は
+     * 並列に生成できるよう、生成のたびにローカルに作成して引数で引き回します。
      */
-    private BlancoCgObjectFactory fCgFactory = null;
-
-    /**
-     * 内部的に利用するblancoCg用ソースファイル情報。
-     */
-    private BlancoCgSourceFile fCgSourceFile = null;
-
-    /**
-     * 内部的に利用するblancoCg用クラス情報。
-     */
-    private BlancoCgClass fCgClass = null;
+    private final BlancoCgObjectFactory fCgFactory = BlancoCgObjectFactory.getInstance();
 
     /**
      * フィールド名やメソッド名の名前変形を行うかどうか。
@@ -98,11 +96,166 @@ public class BlancoRestXml2SourceFile {
         fEncoding = argEncoding;
     }
 
+    /**
+     * PHP 用のシートで、必須項目の型をプリミティブ型にするかどうか。
+     */
+    private boolean fPrimitive = false;
+
+    /**
+     * PHP 用のシートで、必須項目 (必須=YES) の型をプリミティブ型にするかどうかを指定します。
+     *
+     * boolean、integer、double、float の必須項目をそれぞれ boolean、int、double、double とし、
+     * 必須でない項目は従来どおりラッパー型とします。電文定義・共通の「プリミティブ型」に
+     * YES / NO が記述されているシートでは、その指定を優先します。
+     * プリミティブ型の項目には、値が設定されたかどうかを返す has メソッドを生成します。
+     *
+     * @param argPrimitive
+     *            必須項目の型をプリミティブ型にするかどうか。
+     */
+    public void setPrimitive(final boolean argPrimitive) {
+        fPrimitive = argPrimitive;
+    }
+
+    /**
+     * 電文クラスに toString を生成するかどうか。
+     */
+    private boolean fToString = true;
+
+    /**
+     * 電文クラスに toString (および appendTo) を生成するかどうかを指定します。
+     *
+     * @param argToString
+     *            toString を生成するかどうか。
+     */
+    public void setToString(final boolean argToString) {
+        fToString = argToString;
+    }
+
+    /**
+     * 電文クラスに validate を生成するかどうか。
+     */
+    private boolean fValidate = true;
+
+    /**
+     * 電文クラスに、定義書の制約 (必須、最小長、最大長、最小値、最大値、パターン) を
+     * 検証する validate を生成するかどうかを指定します。
+     *
+     * @param argValidate
+     *            validate を生成するかどうか。
+     */
+    public void setValidate(final boolean argValidate) {
+        fValidate = argValidate;
+    }
+
+    /**
+     * 電文クラスに JSON との変換メソッド (writeJson / readJson) を生成するかどうか。
+     */
+    private boolean fJsonCodec = false;
+
+    /**
+     * 電文クラスに JSON との変換メソッド (writeJson / readJson) を生成するかどうかを指定します。
+     *
+     * 生成した電文クラスは blanco.rest.common.ApiJsonTelegram を実装し、ApiBase は
+     * Jackson databind のイントロスペクションを使わずに電文を変換します。
+     *
+     * @param argJsonCodec
+     *            変換メソッドを生成するかどうか。
+     */
+    public void setJsonCodec(final boolean argJsonCodec) {
+        fJsonCodec = argJsonCodec;
+    }
+
+    /**
+     * ValueObject 名と ValueObject の構造の対応。
+     */
+    private Map<String, BlancoValueObjectClassStructure> fObjects = Collections.emptyMap();
+
+    /**
+     * 型名の解決に利用する ValueObject の一覧を指定します。
+     *
+     * 通常は BlancoRestObjectsRegistry のスナップショットを指定します。
+     *
+     * @param argObjects
+     *            ValueObject 名と ValueObject の構造の対応。
+     */
+    public void setObjects(final Map<String, BlancoValueObjectClassStructure> argObjects) {
+        fObjects = argObjects;
+    }
+
+    /**
+     * 生成の過程で参照した ValueObject 名の一覧。
+     *
+     * 見つからなかった名前も含みます。インクリメンタル生成の依存関係として利用します。
+     */
+    private final Set<String> fReferencedObjects = new TreeSet<String>();
+
+    /**
+     * 生成したソースファイルとそのハッシュ値の一覧。
+     */
+    private final Map<File, String> fMapGeneratedFile = new LinkedHashMap<File, String>();
+
+    /**
+     * ソースコードの出力ステージ。
+     */
+    private BlancoRestSourceWriter fSourceWriter = null;
+
+    /**
+     * ソースコードの出力ステージを指定します。
+     *
+     * 複数のファイルの生成で出力ステージを共有すると、書き込み件数とスキップ件数を
+     * まとめて集計できます。指定しない場合にはインスタンスごとに作成します。
+     *
+     * @param argSourceWriter
+     *            ソースコードの出力ステージ。
+     */
+    public void setSourceWriter(final BlancoRestSourceWriter argSourceWriter) {
+        fSourceWriter = argSourceWriter;
+    }
+
+    /**
+     * 処理時間、件数、メッセージの通知先。
+     */
+    private BlancoRestEvents fEvents = new BlancoRestEvents();
+
+    /**
+     * 処理時間、件数、メッセージの通知先を設定します。
+     *
+     * 出力ステージをインスタンスごとに作成する場合には、出力ステージにも同じ通知先を設定します。
+     *
+     * @param argEvents
+     *            通知先。
+     */
+    public void setEvents(final BlancoRestEvents argEvents) {
+        fEvents = argEvents;
+    }
+
+    /**
+     * 生成の過程で参照した ValueObject 名の一覧を取得します。
+     *
+     * @return ValueObject 名の一覧。
+     */
+    public Set<String> getReferencedObjects() {
+        return fReferencedObjects;
+    }
+
+    /**
+     * 生成したソースファイルとそのハッシュ値の一覧を取得します。
+     *
+     * 内容に変更が無く書き込みをスキップしたファイルも含みます。
+     *
+     * @return ソースファイルとハッシュ値の一覧。
+     */
+    public Map<File, String> getGeneratedFileMap() {
+        return fMapGeneratedFile;
+    }
+
     /**
      * 中間XMLファイルからソースコードを自動生成します。
      * 
+     * 定義書 (.xls) が与えられた場合は、中間XMLファイルを介さずに定義書を直接読み込みます。
+     * 
      * @param argMetaXmlSourceFile
-     *            メタ情報が含まれているXMLファイル。
+     *            メタ情報が含まれているXMLファイル、または定義書。
      * @param argDirectoryTarget
      *            ソースコード生成先ディレクトリ (/mainを除く部分を指定します)。
      * @param argNameAdjust
@@ -113,62 +266,74 @@ public class BlancoRestXml2SourceFile {
     public void process(final File argMetaXmlSourceFile,
             final boolean argNameAdjust, final File argDirectoryTarget)
             throws IOException {
-
-        System.out.println("BlancoRestXml2SourceFile#process file = " + argMetaXmlSourceFile.getName());
+        fEvents.debug("BlancoRestXml2SourceFile", "process file = "
+                + argMetaXmlSourceFile.getName());
 
         fNameAdjust = argNameAdjust;
 
-        // メタ情報を解析してバリューオブジェクトのツリーを取得します。
-        final BlancoXmlDocument documentMeta = new BlancoXmlUnmarshaller()
-                .unmarshal(argMetaXmlSourceFile);
-
-        // ルートエレメントを取得します。
-        final BlancoXmlElement elementRoot = BlancoXmlBindingUtil
-                .getDocumentElement(documentMeta);
-        if (elementRoot == null) {
+        /*
+         * 中間XMLはドキュメント全体のツリーを作らず、シート単位にストリーミングで読み込みます。
+         * 電文はシートを読み込むたびに生成します。電文処理は全ての電文が揃ってから
+         * 生成する必要があるため、解析した構造だけを保持しておきます。
+         */
+        final ArrayList<BlancoRestTelegram> listTelegram = new ArrayList<>();
+        final List<BlancoRestTelegramProcess> listProcess = new ArrayList<BlancoRestTelegramProcess>();
+        final BlancoRestSheetReader.Handler handler = new BlancoRestSheetReader.Handler() {
+            public void sheet(final BlancoXmlElement argElementSheet)
+                    throws IOException {
+                // シートを一度だけ走査して種類ごとに分類しておきます。
+                final BlancoRestSheetIndex sheetIndex = new BlancoRestSheetIndex();
+                sheetIndex.addSheet(argElementSheet);
+                fEvents.count("sheets", 1);
+
+                // まずは電文を生成します．
+                processTelegram(argDirectoryTarget, sheetIndex, listTelegram);
+
+                parseTelegramProcess(sheetIndex, listProcess);
+            }
+        };
+        final boolean isRootFound;
+        if (BlancoRestWorkbookReader.isWorkbook(argMetaXmlSourceFile)) {
+            isRootFound = new BlancoRestWorkbookReader().read(
+                    argMetaXmlSourceFile, handler);
+        } else {
+            isRootFound = new BlancoRestSheetReader().read(
+                    argMetaXmlSourceFile, handler);
+        }
+        if (isRootFound == false) {
             // ルートエレメントが無い場合には処理中断します。
-            System.out.println("BlancoRestXmlSourceFile#process !!! NO ROOT ELEMENT !!!");
+            fEvents.warning("BlancoRestXml2SourceFile", "no root element: "
+                    + argMetaXmlSourceFile.getName());
             return;
         }
 
-        // まずは電文を生成します．
-        ArrayList<BlancoRestTelegram> listTelegram = new ArrayList<>();
-        processTelegram(argDirectoryTarget, elementRoot, listTelegram);
-
         // 次に電文処理を生成します
-        processTelegramProcess(argDirectoryTarget, elementRoot, listTelegram);
+        for (BlancoRestTelegramProcess structure : listProcess) {
+            // メタ情報の解析結果をもとにソースコード自動生成を実行します。
+            final long start = fEvents.start();
+            process(structure, listTelegram, argDirectoryTarget);
+            fEvents.stage("xml2source.process", structure.getName(), start);
+        }
+        fEvents.count("processes", listProcess.size());
+        fEvents.count("telegrams", listTelegram.size());
     }
 
-    private void processTelegramProcess(final File argDirectoryTarget, BlancoXmlElement elementRoot, List<BlancoRestTelegram> argListTelegrams) {
-        // sheet(Excelシート)のリストを取得します。
-        final List<BlancoXmlElement> listSheet = BlancoXmlBindingUtil
-                .getElementsByTagName(elementRoot, "sheet");
-        final int sizeListSheet = listSheet.size();
-        for (int index = 0; index < sizeListSheet; index++) {
-            // おのおののシートを処理します。
-            final BlancoXmlElement elementSheet = (BlancoXmlElement) listSheet
-                    .get(index);
-
+    private void parseTelegramProcess(BlancoRestSheetIndex argSheetIndex, List<BlancoRestTelegramProcess> argListProcess) {
+        // 電文処理の共通情報を持つシートだけを処理します。
+        for (BlancoRestSheetIndex.Sheet sheet : argSheetIndex.getProcessSheetList()) {
             // 共通情報を取得します。
-            final BlancoXmlElement elementCommon = BlancoXmlBindingUtil
-                    .getElement(elementSheet, fBundle
-                            .getMeta2xmlProcessCommon());
-            if (elementCommon == null) {
-                // commonが無い場合には、このシートの処理をスキップします。
-                System.out.println("BlancoRestXmlSourceFile#processTelegramProcess !!! NO COMMON !!!");
-                continue;
-            }
+            final BlancoXmlElement elementCommon = sheet.getElementCommon();
 
             final String name = BlancoXmlBindingUtil.getTextContent(
                     elementCommon, "name");
 
             if (BlancoStringUtil.null2Blank(name).trim().length() == 0) {
                 // nameが空の場合には処理をスキップします。
-                System.out.println("BlancoRestXmlSourceFile#processTelegramProcess !!! NO NAME !!!");
+                fEvents.warning("BlancoRestXml2SourceFile", "telegram process sheet without name.");
                 continue;
             }
 
-            System.out.println("BlancoRestXmlSourceFile#processTelegramProcess name = " + name);
+            fEvents.debug("BlancoRestXml2SourceFile", "telegram process name = " + name);
 
             // 電文処理には一覧情報はありません
 
@@ -176,10 +341,8 @@ public class BlancoRestXml2SourceFile {
             final BlancoRestTelegramProcess structure = parseProcessSheet(elementCommon);
 
             if (structure != null) {
-                // メタ情報の解析結果をもとにソースコード自動生成を実行します。
-                process(structure, argListTelegrams, argDirectoryTarget);
+                argListProcess.add(structure);
             }
-
         }
     }
 
@@ -232,26 +395,12 @@ public class BlancoRestXml2SourceFile {
         return structure;
     }
 
-    private void processTelegram(final File argDirectoryTarget, BlancoXmlElement elementRoot, List<BlancoRestTelegram> argListTelegrams) {
-
-        // sheet(Excelシート)のリストを取得します。
-        final List<BlancoXmlElement> listSheet = BlancoXmlBindingUtil
-                .getElementsByTagName(elementRoot, "sheet");
-        final int sizeListSheet = listSheet.size();
-        for (int index = 0; index < sizeListSheet; index++) {
-            // おのおののシートを処理します。
-            final BlancoXmlElement elementSheet = (BlancoXmlElement) listSheet
-                    .get(index);
+    private void processTelegram(final File argDirectoryTarget, BlancoRestSheetIndex argSheetIndex, List<BlancoRestTelegram> argListTelegrams) throws IOException {
 
+        // 電文の共通情報を持つシートだけを処理します。
+        for (BlancoRestSheetIndex.Sheet sheet : argSheetIndex.getTelegramSheetList()) {
             // 共通情報を取得します。
-            final BlancoXmlElement elementCommon = BlancoXmlBindingUtil
-                    .getElement(elementSheet, fBundle
-                            .getMeta2xmlTelegramCommon());
-            if (elementCommon == null) {
-                // commonが無い場合には、このシートの処理をスキップします。
-                // System.out.println("BlancoRestXmlSourceFile#process !!! NO COMMON !!!");
-                continue;
-            }
+            final BlancoXmlElement elementCommon = sheet.getElementCommon();
 
             final String name = BlancoXmlBindingUtil.getTextContent(
                     elementCommon, "name");
@@ -262,11 +411,10 @@ public class BlancoRestXml2SourceFile {
                 continue;
             }
 
-            System.out.println("/* tueda */ BlancoRestXmlSourceFile#process name = " + name);
+            fEvents.debug("BlancoRestXml2SourceFile", "telegram name = " + name);
 
             // 一覧情報を取得します。
-            final BlancoXmlElement elementList = BlancoXmlBindingUtil
-                    .getElement(elementSheet, fBundle.getMeta2xmlTeregramList());
+            final BlancoXmlElement elementList = sheet.getElementList();
 
             // シートから詳細な情報を取得します。
             final BlancoRestTelegram processTelegram = parseTelegramSheet(
@@ -274,8 +422,13 @@ public class BlancoRestXml2SourceFile {
 
             if (processTelegram != null) {
                 // メタ情報の解析結果をもとにソースコード自動生成を実行します。
+                final long start = fEvents.start();
                 process(processTelegram, argDirectoryTarget);
+                fEvents.stage("xml2source.telegram", name, start);
+                fEvents.count("fields", processTelegram.getListField().size());
                 argListTelegrams.add(processTelegram);
+            } else {
+                fEvents.warning("BlancoRestXml2SourceFile", "no field list: " + name);
             }
         }
     }
@@ -333,6 +486,14 @@ public class BlancoRestXml2SourceFile {
 
         processTelegram.setTelegramSuperClass(superClass);
 
+        // 必須項目の型をプリミティブ型にするかどうか。シートの指定を優先します。
+        boolean primitive = fPrimitive;
+        final String strPrimitive = BlancoXmlBindingUtil.getTextContent(
+                argElementCommon, "primitive");
+        if (BlancoStringUtil.null2Blank(strPrimitive).trim().length() > 0) {
+            primitive = "YES".equalsIgnoreCase(strPrimitive.trim());
+        }
+
         if (argElementList == null) {
             return null;
         }
@@ -344,7 +505,8 @@ public class BlancoRestXml2SourceFile {
             final Object nodeField = listField.get(indexField);
 
             if (nodeField instanceof BlancoXmlElement == false) {
-                System.out.println("BlancoRestXml2SourceFile#parseTelegramSheet: NO FIELD !!!");
+                fEvents.warning("BlancoRestXml2SourceFile", "unexpected field node in "
+                        + processTelegram.getName());
                 continue;
             }
 
@@ -389,6 +551,8 @@ public class BlancoRestXml2SourceFile {
                     fieldType = adjustClassNamePhp2Java(fieldType);
                     break;
             }
+            fieldType = adjustArrayType(fieldType, BlancoXmlBindingUtil
+                    .getTextContent(elementField, "elementType"));
             field.setFieldType(fieldType);
 
             field.setDescription(BlancoXmlBindingUtil.getTextContent(
@@ -398,14 +562,26 @@ public class BlancoRestXml2SourceFile {
                     elementField, "fieldRequired");
             field.setFieldRequired("YES".equalsIgnoreCase(strFieldRequired));
 
+            if (primitive && field.getFieldRequired()
+                    && fSheetLang == BlancoCgSupportedLang.PHP) {
+                final String primitiveType = toPrimitiveType(fieldType);
+                if (primitiveType != null) {
+                    field.setFieldType(primitiveType);
+                }
+            }
+
             field.setDefault(BlancoXmlBindingUtil.getTextContent(
                     elementField, "default"));
 
+            // 最小長が空でも最大長を取得できるよう、個別に変換します。
             try {
                 String strMinLength = BlancoXmlBindingUtil.getTextContent(
                         elementField, "minLength");
                 field.setMinLength(Integer.parseInt(strMinLength));
-
+            } catch (NumberFormatException e) {
+                // 値がセットされていなかったり数値でなかった場合は無視
+            }
+            try {
                 String strMaxLength = BlancoXmlBindingUtil.getTextContent(
                         elementField, "maxLength");
                 field.setMaxLength(Integer.parseInt(strMaxLength));
@@ -437,68 +613,77 @@ public class BlancoRestXml2SourceFile {
      *            メタファイルから収集できた処理構造データ。
      * @param argDirectoryTarget
      *            ソースコードの出力先フォルダ。
+     * @throws IOException
+     *             入出力例外が発生した場合。
      */
     public void process(
             final BlancoRestTelegramProcess argStructure,
             final List<BlancoRestTelegram> argListTelegrams,
-            final File argDirectoryTarget) {
+            final File argDirectoryTarget) throws IOException {
 
         // 従来と互換性を持たせるため、/mainサブフォルダに出力します。
         final File fileBlancoMain = new File(argDirectoryTarget
                 .getAbsolutePath()
                 + "/main");
 
-        fCgFactory = BlancoCgObjectFactory.getInstance();
-        fCgSourceFile = fCgFactory.createSourceFile(argStructure
+        final BlancoCgSourceFile cgSourceFile = fCgFactory.createSourceFile(argStructure
                 .getPackage(), "このソースコードは blanco Frameworkによって自動生成されています。");
-        fCgSourceFile.setEncoding(fEncoding);
-        fCgClass = fCgFactory.createClass(BlancoRestConstants.PREFIX_ABSTRACT + argStructure.getName(),
+        cgSourceFile.setEncoding(fEncoding);
+        final BlancoCgClass cgClass = fCgFactory.createClass(BlancoRestConstants.PREFIX_ABSTRACT + argStructure.getName(),
                 BlancoStringUtil.null2Blank(argStructure
                         .getDescription()));
         // ApiBase クラスを継承
         BlancoCgType fCgType = new BlancoCgType();
         fCgType.setName(BlancoRestConstants.BASE_CLASS);
-        fCgClass.setExtendClassList(new ArrayList<>());
-        fCgClass.getExtendClassList().add(fCgType);
+        cgClass.setExtendClassList(new ArrayList<>());
+        cgClass.getExtendClassList().add(fCgType);
 
         // abstrac フラグをセット
-        fCgClass.setAbstract(true);
+        cgClass.setAbstract(true);
 
-        fCgSourceFile.getClassList().add(fCgClass);
+        cgSourceFile.getClassList().add(cgClass);
 
         if (argStructure.getDescription() != null) {
-            fCgSourceFile.setDescription(argStructure
+            cgSourceFile.setDescription(argStructure
                     .getDescription());
         }
 
         // API実装クラスで実装させる abstract method の定義
-        createAbstractMethod(argStructure, argListTelegrams);
+        createAbstractMethod(cgClass, argStructure, argListTelegrams);
 
         // base class からの abstract method の実装
-        createExecuteMethod(argStructure, argListTelegrams);
+        createExecuteMethod(cgClass, argStructure, argListTelegrams);
+
+        // 型付きの非同期送信 メソッド
+        createSendAsyncMethod(cgClass, argStructure, argListTelegrams);
+
+        // 応答電文を生成する メソッド
+        createNewResponseMethod(cgClass, argStructure, argListTelegrams);
 
         // isAuthenticationRequired メソッドの上書き
-        overrideAuthenticationRequired(argStructure);
+        overrideAuthenticationRequired(cgClass, argStructure);
 
         // RequestId 名を取得する メソッド
-        createRequestIdMethod(argStructure);
+        createRequestIdMethod(cgClass, argStructure);
 
         // ResponseId 名を取得する メソッド
-        createResponseIdMethod(argStructure);
+        createResponseIdMethod(cgClass, argStructure);
+
+        // API の配置場所を取得する メソッド
+        createLocationMethod(cgClass, argStructure);
 
         // required 文を出力しない ... 将来的には xls で指定するように？
-        // fCgSourceFile.setIsImport(false);
+        // cgSourceFile.setIsImport(false);
 
-        BlancoCgTransformerFactory.getSourceTransformer(fTargetLang).transform(
-                fCgSourceFile, fileBlancoMain);
+        writeSourceFile(cgSourceFile, fileBlancoMain);
     }
 
-    private void createAbstractMethod(BlancoRestTelegramProcess argStructure, List<BlancoRestTelegram>  argListTelegrams) {
+    private void createAbstractMethod(final BlancoCgClass argCgClass, BlancoRestTelegramProcess argStructure, List<BlancoRestTelegram>  argListTelegrams) {
 
         // Initializer の定義
 //        final BlancoCgMethod cgInitializerMethod = fCgFactory.createMethod(
 //                BlancoRestConstants.API_INITIALIZER_METHOD, fBundle.getXml2sourceFileInitializerDescription());
-//        fCgClass.getMethodList().add(cgInitializerMethod);
+//        argCgClass.getMethodList().add(cgInitializerMethod);
 //        cgInitializerMethod.setAccess("protected");
 //        cgInitializerMethod.setAbstract(true);
         // ApiBase で固定的に定義
@@ -506,7 +691,7 @@ public class BlancoRestXml2SourceFile {
         // Processor の定義
         final BlancoCgMethod cgProcessorMethod = fCgFactory.createMethod(
                 BlancoRestConstants.API_PROCESS_METHOD, fBundle.getXml2sourceFileProcessorDescription());
-        fCgClass.getMethodList().add(cgProcessorMethod);
+        argCgClass.getMethodList().add(cgProcessorMethod);
         cgProcessorMethod.setAccess("protected");
         cgProcessorMethod.setAbstract(true);
 
@@ -546,10 +731,10 @@ public class BlancoRestXml2SourceFile {
 
     }
 
-    private void createExecuteMethod(BlancoRestTelegramProcess argStructure, List<BlancoRestTelegram>  argListTelegrams) {
+    private void createExecuteMethod(final BlancoCgClass argCgClass, BlancoRestTelegramProcess argStructure, List<BlancoRestTelegram>  argListTelegrams) {
         final BlancoCgMethod cgExecutorMethod = fCgFactory.createMethod(
                 BlancoRestConstants.BASE_EXECUTOR_METHOD, fBundle.getXml2sourceFileExecutorDescription());
-        fCgClass.getMethodList().add(cgExecutorMethod);
+        argCgClass.getMethodList().add(cgExecutorMethod);
         cgExecutorMethod.setAccess("protected");
 
         /*
@@ -605,12 +790,99 @@ public class BlancoRestXml2SourceFile {
                 + BlancoCgLineUtil.getTerminator(fTargetLang));
     }
 
-    private void overrideAuthenticationRequired(BlancoRestTelegramProcess argStructure) {
+    /**
+     * 要求電文・応答電文の型を指定した非同期送信メソッドを生成します。
+     *
+     * ApiBase.sendAsync(ApiTelegram, Class) に委譲し、応答電文をキャストせずに受け取れるようにします。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
+     * @param argStructure
+     *            メタファイルから収集できた処理構造データ。
+     * @param argListTelegrams
+     *            処理が参照する電文の一覧。
+     */
+    private void createSendAsyncMethod(final BlancoCgClass argCgClass, BlancoRestTelegramProcess argStructure, List<BlancoRestTelegram>  argListTelegrams) {
+        final BlancoCgMethod cgSendAsyncMethod = fCgFactory.createMethod(
+                "sendAsync", "要求電文を非同期に送信します．");
+        argCgClass.getMethodList().add(cgSendAsyncMethod);
+        cgSendAsyncMethod.setAccess("public");
+
+        String requestId = argStructure.getRequestId();
+        String requestSubId = requestId;
+        String responseId = argStructure.getResponseId();
+        for (BlancoRestTelegram telegram : argListTelegrams) {
+            if ("Input".equals(telegram.getTelegramType())) {
+                requestId = telegram.getPackage() + "." + requestId;
+            }
+            if ("Output".equals(telegram.getTelegramType())) {
+                responseId = telegram.getPackage() + "." + responseId;
+            }
+        }
+
+        cgSendAsyncMethod.getParameterList().add(
+                fCgFactory.createParameter("arg" + requestSubId, requestId,
+                        "要求電文です．"));
+
+        cgSendAsyncMethod.setReturn(fCgFactory.createReturn(
+                "java.util.concurrent.CompletableFuture",
+                "応答電文を受け取る CompletableFuture です．"));
+        cgSendAsyncMethod.getReturn().getType().setGenerics("<" + responseId + ">");
+
+        // メソッドの実装
+        final List<String> listLine = cgSendAsyncMethod.getLineList();
+
+        listLine.add("return " + BlancoCgLineUtil.getVariablePrefix(fTargetLang) + "this.sendAsync( "
+                + BlancoCgLineUtil.getVariablePrefix(fTargetLang) + "arg" + requestSubId + ", "
+                + responseId + ".class )"
+                + BlancoCgLineUtil.getTerminator(fTargetLang));
+    }
+
+    /**
+     * 空の応答電文を生成するメソッドを生成します。
+     *
+     * コンストラクタを直接呼び出すため、ApiBase はリフレクションを使わずに応答電文を生成できます。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
+     * @param argStructure
+     *            メタファイルから収集できた処理構造データ。
+     * @param argListTelegrams
+     *            処理が参照する電文の一覧。
+     */
+    private void createNewResponseMethod(final BlancoCgClass argCgClass, BlancoRestTelegramProcess argStructure, List<BlancoRestTelegram>  argListTelegrams) {
+        final BlancoCgMethod cgNewResponseMethod = fCgFactory.createMethod(
+                "newResponse", "空の応答電文を生成します．");
+        argCgClass.getMethodList().add(cgNewResponseMethod);
+        cgNewResponseMethod.setAccess("protected");
+
+        List<String> annotators = new ArrayList<>();
+        annotators.add("Override");
+        cgNewResponseMethod.setAnnotationList(annotators);
+
+        String responseId = argStructure.getResponseId();
+        for (BlancoRestTelegram telegram : argListTelegrams) {
+            if ("Output".equals(telegram.getTelegramType())) {
+                responseId = telegram.getPackage() + "." + responseId;
+            }
+        }
+
+        cgNewResponseMethod.setReturn(fCgFactory.createReturn(responseId,
+                "空の応答電文です．"));
+
+        // メソッドの実装
+        final List<String> listLine = cgNewResponseMethod.getLineList();
+
+        listLine.add("return new " + responseId + "()"
+                + BlancoCgLineUtil.getTerminator(fTargetLang));
+    }
+
+    private void overrideAuthenticationRequired(final BlancoCgClass argCgClass, BlancoRestTelegramProcess argStructure) {
         String methodName = BlancoRestConstants.API_AUTHENTICATION_REQUIRED;
 
         final BlancoCgMethod cgAuthenticationRequiredMethod = fCgFactory.createMethod(
                 methodName, fBundle.getXml2sourceFileAuthflagDescription());
-        fCgClass.getMethodList().add(cgAuthenticationRequiredMethod);
+        argCgClass.getMethodList().add(cgAuthenticationRequiredMethod);
         cgAuthenticationRequiredMethod.setAccess("protected");
 
         cgAuthenticationRequiredMethod.setReturn(fCgFactory.createReturn("java.lang.Boolean",
@@ -628,12 +900,12 @@ public class BlancoRestXml2SourceFile {
                 + BlancoCgLineUtil.getTerminator(fTargetLang));
     }
 
-    private void createRequestIdMethod(BlancoRestTelegramProcess argStructure) {
+    private void createRequestIdMethod(final BlancoCgClass argCgClass, BlancoRestTelegramProcess argStructure) {
         String methodName = BlancoRestConstants.API_REQUESTID_METHOD;
 
         final BlancoCgMethod cgRequestIdMethod = fCgFactory.createMethod(
                 methodName, fBundle.getXml2sourceFileRequestidDesctiption());
-        fCgClass.getMethodList().add(cgRequestIdMethod);
+        argCgClass.getMethodList().add(cgRequestIdMethod);
         cgRequestIdMethod.setAccess("protected");
 
         List<String> annotators = new ArrayList<>();
@@ -651,12 +923,12 @@ public class BlancoRestXml2SourceFile {
                 + BlancoCgLineUtil.getTerminator(fTargetLang));
     }
 
-    private void createResponseIdMethod(BlancoRestTelegramProcess argStructure) {
+    private void createResponseIdMethod(final BlancoCgClass argCgClass, BlancoRestTelegramProcess argStructure) {
         String methodName = BlancoRestConstants.API_RESPONSE_METHOD;
 
         final BlancoCgMethod cgResponseIdMethod = fCgFactory.createMethod(
                 methodName, fBundle.getXml2sourceFileRequestidDesctiption());
-        fCgClass.getMethodList().add(cgResponseIdMethod);
+        argCgClass.getMethodList().add(cgResponseIdMethod);
         cgResponseIdMethod.setAccess("protected");
 
         List<String> annotators = new ArrayList<>();
@@ -674,6 +946,41 @@ public class BlancoRestXml2SourceFile {
                 + BlancoCgLineUtil.getTerminator(fTargetLang));
     }
 
+    /**
+     * API の配置場所 (location) を返すメソッドを生成します。
+     *
+     * 定義書に location が記述されていない場合は生成せず、ApiBase の既定の実装に任せます。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
+     * @param argStructure
+     *            メタファイルから収集できた処理構造データ。
+     */
+    private void createLocationMethod(final BlancoCgClass argCgClass, BlancoRestTelegramProcess argStructure) {
+        final String location = BlancoStringUtil.null2Blank(argStructure.getLocation()).trim();
+        if (location.length() == 0) {
+            return;
+        }
+
+        final BlancoCgMethod cgLocationMethod = fCgFactory.createMethod(
+                "getLocation", "API の配置場所です．");
+        argCgClass.getMethodList().add(cgLocationMethod);
+        cgLocationMethod.setAccess("protected");
+
+        List<String> annotators = new ArrayList<>();
+        annotators.add("Override");
+        cgLocationMethod.setAnnotationList(annotators);
+
+        cgLocationMethod.setReturn(fCgFactory.createReturn("java.lang.String",
+                "API の配置場所です．"));
+
+        // メソッドの実装
+        final List<String> listLine = cgLocationMethod.getLineList();
+
+        listLine.add("return " + "\"" + BlancoJavaSourceUtil.escapeStringAsJavaSource(location) + "\""
+                + BlancoCgLineUtil.getTerminator(fTargetLang));
+    }
+
     /**
      * 収集された情報を元に、ソースコードを自動生成します。
      * 
@@ -681,30 +988,38 @@ public class BlancoRestXml2SourceFile {
      *            メタファイルから収集できた処理構造データ。
      * @param argDirectoryTarget
      *            ソースコードの出力先フォルダ。
+     * @throws IOException
+     *             入出力例外が発生した場合。
      */
     public void process(
             final BlancoRestTelegram argStructure,
-            final File argDirectoryTarget) {
+            final File argDirectoryTarget) throws IOException {
 
         // 従来と互換性を持たせるため、/mainサブフォルダに出力します。
         final File fileBlancoMain = new File(argDirectoryTarget
                 .getAbsolutePath()
                 + "/main");
 
-        fCgFactory = BlancoCgObjectFactory.getInstance();
-        fCgSourceFile = fCgFactory.createSourceFile(argStructure
+        final BlancoCgSourceFile cgSourceFile = fCgFactory.createSourceFile(argStructure
                 .getPackage(), "このソースコードは blanco Frameworkによって自動生成されています。");
-        fCgSourceFile.setEncoding(fEncoding);
-        fCgClass = fCgFactory.createClass(argStructure.getName(),
+        cgSourceFile.setEncoding(fEncoding);
+        final BlancoCgClass cgClass = fCgFactory.createClass(argStructure.getName(),
                 BlancoStringUtil.null2Blank(argStructure
                         .getDescription()));
 
         // ApiTelegram クラスを継承
         String telegramBase = argStructure.getTelegramSuperClass();
+        boolean jsonCodec = fJsonCodec;
         if (telegramBase != null) {
 
+            fReferencedObjects.add(telegramBase);
             BlancoValueObjectClassStructure objectClassStructure =
-                    BlancoRestObjectsInfo.objects.get(telegramBase);
+                    fObjects.get(telegramBase);
+
+            if (objectClassStructure != null && objectClassStructure.getFieldList().size() > 0) {
+                // 親クラスのフィールドは変換できないため、Jackson databind に任せます。
+                jsonCodec = false;
+            }
 
             String packageName = null;
             if (objectClassStructure != null && (packageName = objectClassStructure.getPackage()) != null) {
@@ -714,25 +1029,63 @@ public class BlancoRestXml2SourceFile {
             BlancoCgType fCgType = new BlancoCgType();
             fCgType.setName(telegramBase);
 
-            fCgClass.setExtendClassList(new ArrayList<>());
-            fCgClass.getExtendClassList().add(fCgType);
+            cgClass.setExtendClassList(new ArrayList<>());
+            cgClass.getExtendClassList().add(fCgType);
 
         }
 
-        fCgSourceFile.getClassList().add(fCgClass);
+        cgSourceFile.getClassList().add(cgClass);
 
         if (argStructure.getDescription() != null) {
-            fCgSourceFile.setDescription(argStructure
+            cgSourceFile.setDescription(argStructure
                     .getDescription());
         }
 
-        expandValueObject(argStructure);
+        expandValueObject(cgClass, argStructure);
+
+        if (fValidate) {
+            final BlancoCgType cgInterface = new BlancoCgType();
+            cgInterface.setName("blanco.rest.common.ApiValidatable");
+            cgClass.getImplementInterfaceList().add(cgInterface);
+
+            expandMethodValidate(cgClass, argStructure);
+        }
+
+        if (jsonCodec) {
+            final BlancoCgType cgInterface = new BlancoCgType();
+            cgInterface.setName("blanco.rest.common.ApiJsonTelegram");
+            cgClass.getImplementInterfaceList().add(cgInterface);
+
+            expandMethodWriteJson(cgClass, argStructure);
+            expandMethodReadJson(cgClass, argStructure);
+        }
 
         // required 文を出力しない ... 将来的には xls で指定するように？
-        fCgSourceFile.setIsImport(false);
+        cgSourceFile.setIsImport(false);
+
+        writeSourceFile(cgSourceFile, fileBlancoMain);
+    }
 
-        BlancoCgTransformerFactory.getSourceTransformer(fTargetLang).transform(
-                fCgSourceFile, fileBlancoMain);
+    /**
+     * ソースファイル情報を出力ステージに渡してファイルに出力します。
+     *
+     * @param argCgSourceFile
+     *            ソースファイル情報。
+     * @param argDirectoryMain
+     *            ソースコードの出力先フォルダ (/mainを含む)。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private void writeSourceFile(final BlancoCgSourceFile argCgSourceFile,
+            final File argDirectoryMain) throws IOException {
+        if (fSourceWriter == null) {
+            fSourceWriter = new BlancoRestSourceWriter(fTargetLang);
+            fSourceWriter.setEvents(fEvents);
+        }
+        final File fileSource = fSourceWriter.getSourceFile(argCgSourceFile,
+                argDirectoryMain);
+        fMapGeneratedFile.put(fileSource, fSourceWriter.write(argCgSourceFile,
+                fileSource));
     }
 
     /**
@@ -742,6 +1095,7 @@ public class BlancoRestXml2SourceFile {
      *            メタファイルから収集できた処理構造データ。
      */
     private void expandValueObject(
+            final BlancoCgClass argCgClass,
             final BlancoRestTelegram argProcessStructure) {
 
         for (int indexField = 0; indexField < argProcessStructure
@@ -749,16 +1103,151 @@ public class BlancoRestXml2SourceFile {
             final BlancoRestTelegramField fieldLook = argProcessStructure
                     .getListField().get(indexField);
 
-            expandField(argProcessStructure, fieldLook);
+            expandField(argCgClass, argProcessStructure, fieldLook);
+
+            expandMethodSet(argCgClass, argProcessStructure, fieldLook);
+
+            expandMethodGet(argCgClass, argProcessStructure, fieldLook);
+
+            expandMethodType(argCgClass, argProcessStructure, fieldLook);
+
+            if (getPresenceIndex(argProcessStructure, fieldLook) >= 0) {
+                expandMethodHas(argCgClass, argProcessStructure, fieldLook);
+            }
+        }
+
+        expandFieldPresence(argCgClass, argProcessStructure);
+
+        if (fToString) {
+            expandMethodToString(argCgClass, argProcessStructure);
+        }
+    }
+
+    /**
+     * プリミティブ型に対応するラッパー型名からプリミティブ型名を取得します。
+     *
+     * @param argFieldType
+     *            フィールドの型。
+     * @return プリミティブ型名。対応するプリミティブ型が無い場合は null。
+     */
+    private static String toPrimitiveType(final String argFieldType) {
+        if ("java.lang.Boolean".equals(argFieldType)) {
+            return "boolean";
+        } else if ("java.lang.Integer".equals(argFieldType)) {
+            return "int";
+        } else if ("java.lang.Long".equals(argFieldType)) {
+            return "long";
+        } else if ("java.lang.Double".equals(argFieldType)) {
+            return "double";
+        } else if ("java.lang.Float".equals(argFieldType)) {
+            return "float";
+        }
+        return null;
+    }
 
-            expandMethodSet(argProcessStructure, fieldLook);
+    /**
+     * フィールドがプリミティブ型かどうかを判定します。
+     *
+     * @param argField
+     *            フィールド。
+     * @return プリミティブ型の場合は true。
+     */
+    private static boolean isPrimitiveField(final BlancoRestTelegramField argField) {
+        final String fieldType = argField.getFieldType();
+        return "boolean".equals(fieldType) || "int".equals(fieldType)
+                || "long".equals(fieldType) || "double".equals(fieldType)
+                || "float".equals(fieldType);
+    }
 
-            expandMethodGet(argProcessStructure, fieldLook);
+    /**
+     * 値が設定されたかどうかを記録するビットの位置を取得します。
+     *
+     * プリミティブ型のフィールドは null で未設定を表せないため、電文ごとに
+     * long 型のビット列 (fPresence0, fPresence1, ...) で記録します。
+     *
+     * @param argProcessStructure
+     *            メタファイルから収集できた電文構造データ。
+     * @param argField
+     *            フィールド。
+     * @return ビットの位置。記録の不要なフィールドの場合は -1。
+     */
+    private static int getPresenceIndex(
+            final BlancoRestTelegram argProcessStructure,
+            final BlancoRestTelegramField argField) {
+        if (isPrimitiveField(argField) == false) {
+            return -1;
+        }
+        int index = 0;
+        for (BlancoRestTelegramField fieldLook : argProcessStructure.getListField()) {
+            if (fieldLook == argField) {
+                return index;
+            }
+            if (isPrimitiveField(fieldLook)) {
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 値が設定されたかどうかを記録するフィールドを展開します。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
+     * @param argProcessStructure
+     *            メタファイルから収集できた電文構造データ。
+     */
+    private void expandFieldPresence(
+            final BlancoCgClass argCgClass,
+            final BlancoRestTelegram argProcessStructure) {
+        int count = 0;
+        for (BlancoRestTelegramField fieldLook : argProcessStructure.getListField()) {
+            if (isPrimitiveField(fieldLook)) {
+                count++;
+            }
+        }
 
-            expandMethodType(argProcessStructure, fieldLook);
+        for (int index = 0; index * 64 < count; index++) {
+            final BlancoCgField cgField = fCgFactory.createField("fPresence" + index,
+                    "long", "");
+            argCgClass.getFieldList().add(cgField);
+            cgField.setAccess("private");
+            cgField.setDescription("プリミティブ型の項目に値が設定されたかどうかを記録するビット列です。");
         }
+    }
 
-        expandMethodToString(argProcessStructure);
+    /**
+     * hasメソッドを展開します。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
+     * @param argProcessStructure
+     *            メタファイルから収集できた電文構造データ。
+     * @param fieldLook
+     *            フィールド。
+     */
+    private void expandMethodHas(
+            final BlancoCgClass argCgClass,
+            final BlancoRestTelegram argProcessStructure,
+            final BlancoRestTelegramField fieldLook) {
+        final String fieldName = getAdjustedFieldName(fieldLook);
+        final int presenceIndex = getPresenceIndex(argProcessStructure, fieldLook);
+
+        final BlancoCgMethod cgMethod = fCgFactory.createMethod("has"
+                + fieldName, "フィールド [" + fieldLook.getName()
+                + "] に値が設定されたかどうかを取得します。");
+        argCgClass.getMethodList().add(cgMethod);
+        cgMethod.setAccess("public");
+
+        cgMethod.setReturn(fCgFactory.createReturn("boolean",
+                "値が設定された場合は true。"));
+
+        // メソッドの実装
+        final List<String> listLine = cgMethod.getLineList();
+
+        listLine.add("return (this.fPresence" + (presenceIndex / 64)
+                + " & (1L << " + (presenceIndex % 64) + ")) != 0"
+                + BlancoCgLineUtil.getTerminator(fTargetLang));
     }
 
     /**
@@ -767,6 +1256,7 @@ public class BlancoRestXml2SourceFile {
      * @param argProcessStructure
      */
     private void expandField(
+            final BlancoCgClass argCgClass,
             final BlancoRestTelegram argProcessStructure,
             final BlancoRestTelegramField fieldLook) {
         String fieldName = fieldLook.getName();
@@ -776,7 +1266,7 @@ public class BlancoRestXml2SourceFile {
 
         final BlancoCgField cgField = fCgFactory.createField("f" + fieldName,
                 fieldLook.getFieldType(), "");
-        fCgClass.getFieldList().add(cgField);
+        argCgClass.getFieldList().add(cgField);
         cgField.setAccess("private");
 
         cgField.setDescription(fBundle.getXml2sourceFileFieldName(fieldLook
@@ -795,6 +1285,7 @@ public class BlancoRestXml2SourceFile {
      * @param argProcessStructure
      */
     private void expandMethodSet(
+            final BlancoCgClass argCgClass,
             final BlancoRestTelegram argProcessStructure,
             final BlancoRestTelegramField fieldLook) {
         String fieldName = fieldLook.getName();
@@ -805,7 +1296,7 @@ public class BlancoRestXml2SourceFile {
         final BlancoCgMethod cgMethod = fCgFactory.createMethod("set"
                 + fieldName, fBundle.getXml2sourceFileSetLangdoc01(fieldLook
                 .getName()));
-        fCgClass.getMethodList().add(cgMethod);
+        argCgClass.getMethodList().add(cgMethod);
         cgMethod.setAccess("public");
         cgMethod.getLangDoc().getDescriptionList().add(
                 fBundle.getXml2sourceFileSetLangdoc02(fieldLook.getFieldType()));
@@ -827,6 +1318,14 @@ public class BlancoRestXml2SourceFile {
                 + "this.f" + fieldName + " = "
                 + BlancoCgLineUtil.getVariablePrefix(fTargetLang) + "arg"
                 + fieldName + BlancoCgLineUtil.getTerminator(fTargetLang));
+
+        final int presenceIndex = getPresenceIndex(argProcessStructure, fieldLook);
+        if (presenceIndex >= 0) {
+            listLine.add(BlancoCgLineUtil.getVariablePrefix(fTargetLang)
+                    + "this.fPresence" + (presenceIndex / 64) + " |= 1L << "
+                    + (presenceIndex % 64)
+                    + BlancoCgLineUtil.getTerminator(fTargetLang));
+        }
     }
 
     /**
@@ -835,6 +1334,7 @@ public class BlancoRestXml2SourceFile {
      * @param argProcessStructure
      */
     private void expandMethodGet(
+            final BlancoCgClass argCgClass,
             final BlancoRestTelegram argProcessStructure,
             final BlancoRestTelegramField fieldLook) {
         String fieldName = fieldLook.getName();
@@ -845,7 +1345,7 @@ public class BlancoRestXml2SourceFile {
         final BlancoCgMethod cgMethod = fCgFactory.createMethod("get"
                 + fieldName, fBundle.getXml2sourceFileGetLangdoc01(fieldLook
                 .getName()));
-        fCgClass.getMethodList().add(cgMethod);
+        argCgClass.getMethodList().add(cgMethod);
         cgMethod.setAccess("public");
 
         cgMethod.getLangDoc().getDescriptionList().add(
@@ -876,6 +1376,7 @@ public class BlancoRestXml2SourceFile {
      * @param fieldLook
      */
     private void expandMethodType(
+            final BlancoCgClass argCgClass,
             final BlancoRestTelegram argProcessStructure,
             final BlancoRestTelegramField fieldLook) {
         String fieldName = fieldLook.getName();
@@ -886,7 +1387,7 @@ public class BlancoRestXml2SourceFile {
         final BlancoCgMethod cgMethod = fCgFactory.createMethod("type"
                 + fieldName, fBundle.getXml2sourceFileGetLangdoc01(fieldLook
                 .getName()));
-        fCgClass.getMethodList().add(cgMethod);
+        argCgClass.getMethodList().add(cgMethod);
         cgMethod.setAccess("public");
         cgMethod.setStatic(true);
 
@@ -914,17 +1415,34 @@ public class BlancoRestXml2SourceFile {
 
     /**
      * toStringメソッドを展開します。
-     * 
+     *
+     * 文字列の連結を繰り返さないよう、項目数から見積もった容量の StringBuilder に
+     * appendTo で追記します。配列・リスト・入れ子のオブジェクトは
+     * blanco.rest.common.ApiToString で展開し、展開する深さを制限します。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
      * @param argProcessStructure
+     *            メタファイルから収集できた電文構造データ。
      */
     private void expandMethodToString(
+            final BlancoCgClass argCgClass,
             final BlancoRestTelegram argProcessStructure) {
+        final String className = argProcessStructure.getPackage() + "."
+                + argProcessStructure.getName();
+
+        // 項目名と区切りの長さに、値ごとの平均的な長さを加えて見積もります。
+        int capacity = className.length() + 2;
+        for (BlancoRestTelegramField fieldLook : argProcessStructure.getListField()) {
+            capacity += fieldLook.getName().length() + 2 + 16;
+        }
+
         final BlancoCgMethod method = fCgFactory.createMethod("toString",
                 "このバリューオブジェクトの文字列表現を取得します。");
-        fCgClass.getMethodList().add(method);
+        argCgClass.getMethodList().add(method);
 
         method.getLangDoc().getDescriptionList().add(
-                "オブジェクトのシャロー範囲でしかtoStringされない点に注意して利用してください。");
+                "入れ子になったオブジェクトは blanco.rest.common.ApiToString.DEFAULT_DEPTH の深さまで展開します。");
         method
                 .setReturn(fCgFactory.createReturn("java.lang.String",
                         "バリューオブジェクトの文字列表現。"));
@@ -934,80 +1452,573 @@ public class BlancoRestXml2SourceFile {
         method.setAnnotationList(annotators);
 
         final List<String> listLine = method.getLineList();
-
-        listLine.add(BlancoCgLineUtil.getVariableDeclaration(fTargetLang,
-                "buf", "java.lang.String", BlancoCgLineUtil
-                        .getStringLiteralEnclosure(fTargetLang)
-                        + BlancoCgLineUtil
-                        .getStringLiteralEnclosure(fTargetLang))
-                + BlancoCgLineUtil.getTerminator(fTargetLang));
-
-        listLine.add(BlancoCgLineUtil.getVariablePrefix(fTargetLang) + "buf = "
-                + BlancoCgLineUtil.getVariablePrefix(fTargetLang) + "buf "
-                + BlancoCgLineUtil.getStringConcatenationOperator(fTargetLang)
-                + " " + BlancoCgLineUtil.getStringLiteralEnclosure(fTargetLang)
-                + argProcessStructure.getPackage() + "."
-                + argProcessStructure.getName() + "["
-                + BlancoCgLineUtil.getStringLiteralEnclosure(fTargetLang)
-                + BlancoCgLineUtil.getTerminator(fTargetLang));
+        listLine.add("final StringBuilder buf = new StringBuilder(" + capacity + ");");
+        listLine.add("appendTo(buf, blanco.rest.common.ApiToString.DEFAULT_DEPTH);");
+        listLine.add("return buf.toString();");
+
+        final BlancoCgType cgInterface = new BlancoCgType();
+        cgInterface.setName("blanco.rest.common.ApiAppendable");
+        argCgClass.getImplementInterfaceList().add(cgInterface);
+
+        final BlancoCgMethod methodAppend = fCgFactory.createMethod("appendTo",
+                "このバリューオブジェクトの文字列表現を追記します。");
+        argCgClass.getMethodList().add(methodAppend);
+        methodAppend.setAccess("public");
+        methodAppend.setAnnotationList(new ArrayList<>(annotators));
+        methodAppend.getParameterList().add(
+                fCgFactory.createParameter("argBuf", "java.lang.StringBuilder",
+                        "追記先。"));
+        methodAppend.getParameterList().add(
+                fCgFactory.createParameter("argDepth", "int",
+                        "入れ子になったオブジェクトを展開する残りの深さ。"));
+
+        final List<String> listAppend = methodAppend.getLineList();
+        listAppend.add("argBuf.append(\"" + className + "[\");");
         for (int indexField = 0; indexField < argProcessStructure
                 .getListField().size(); indexField++) {
             final BlancoRestTelegramField fieldLook = argProcessStructure
                     .getListField().get(indexField);
+            final String fieldName = getAdjustedFieldName(fieldLook);
+            final String label = "\"" + (indexField == 0 ? "" : ",")
+                    + BlancoJavaSourceUtil.escapeStringAsJavaSource(fieldLook.getName()) + "=\"";
 
-            String fieldName = fieldLook.getName();
-            if (fNameAdjust) {
-                fieldName = BlancoNameAdjuster.toClassName(fieldName);
+            if (isPrimitiveField(fieldLook) || getJsonWriteMethod(fieldLook.getFieldType()) != null) {
+                // 文字列、数値、真偽値はそのまま追記します。
+                listAppend.add("argBuf.append(" + label + ").append(this.f" + fieldName + ");");
+            } else {
+                listAppend.add("argBuf.append(" + label + ");");
+                listAppend.add("blanco.rest.common.ApiToString.appendValue(argBuf, this.f"
+                        + fieldName + ", argDepth);");
             }
+        }
+        listAppend.add("argBuf.append(']');");
+    }
 
-            if (fieldLook.getFieldType().equals("array") == false) {
-                String strLine = BlancoCgLineUtil
-                        .getVariablePrefix(fTargetLang)
-                        + "buf = "
-                        + BlancoCgLineUtil.getVariablePrefix(fTargetLang)
-                        + "buf "
-                        + BlancoCgLineUtil
-                                .getStringConcatenationOperator(fTargetLang)
-                        + " "
-                        + BlancoCgLineUtil
-                                .getStringLiteralEnclosure(fTargetLang)
-                        + (indexField == 0 ? "" : ",")
-                        + fieldLook.getName()
-                        + "="
-                        + BlancoCgLineUtil
-                                .getStringLiteralEnclosure(fTargetLang)
-                        + " "
-                        + BlancoCgLineUtil
-                                .getStringConcatenationOperator(fTargetLang)
-                        + " ";
-                if (fieldLook.getFieldType().equals("java.lang.String")) {
-                    strLine += BlancoCgLineUtil.getVariablePrefix(fTargetLang)
-                            + "this.f" + fieldName;
-                } else if (fieldLook.getFieldType().equals("boolean")) {
-                    strLine += "("
-                            + BlancoCgLineUtil.getVariablePrefix(fTargetLang)
-                            + "this.f" + fieldName + " ? 'true' : 'false')";
-                } else {
-                    strLine += " "
-                            + BlancoCgLineUtil.getVariablePrefix(fTargetLang)
-                            + "this.f" + fieldName;
+    /**
+     * validateメソッドを展開します。
+     *
+     * 定義書に記述された必須、最小長・最大長 (文字列の長さ、配列・リストの要素数)、
+     * 最小値・最大値 (数値)、パターン (文字列) を検証するコードを生成します。
+     * パターンはクラスの初期化時に一度だけコンパイルし、static final な Pattern として保持します。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
+     * @param argProcessStructure
+     *            メタファイルから収集できた電文構造データ。
+     */
+    private void expandMethodValidate(
+            final BlancoCgClass argCgClass,
+            final BlancoRestTelegram argProcessStructure) {
+        final BlancoCgMethod methodAll = fCgFactory.createMethod("validate",
+                "この電文を検証し、全ての違反を取得します。");
+        argCgClass.getMethodList().add(methodAll);
+        methodAll.setAccess("public");
+        methodAll.setReturn(fCgFactory.createReturn("java.util.List",
+                "違反の内容の一覧。違反が無い場合は空の一覧。"));
+        methodAll.getReturn().getType().setGenerics("<java.lang.String>");
+        methodAll.getLineList().add(
+                "final java.util.List<java.lang.String> errors = new java.util.ArrayList<java.lang.String>();");
+        methodAll.getLineList().add("validate(errors, false);");
+        methodAll.getLineList().add("return errors;");
+
+        final BlancoCgMethod method = fCgFactory.createMethod("validate",
+                "この電文を検証します。");
+        argCgClass.getMethodList().add(method);
+        method.setAccess("public");
+
+        List<String> annotators = new ArrayList<>();
+        annotators.add("Override");
+        method.setAnnotationList(annotators);
+
+        final BlancoCgParameter cgErrors = fCgFactory.createParameter("argErrors",
+                "java.util.List", "違反の内容を追加する一覧。");
+        cgErrors.getType().setGenerics("<java.lang.String>");
+        method.getParameterList().add(cgErrors);
+        method.getParameterList().add(
+                fCgFactory.createParameter("argFailFast", "boolean",
+                        "true の場合、最初の違反で検証を打ち切ります。"));
+        method.setReturn(fCgFactory.createReturn("boolean",
+                "違反が無い場合は true。"));
+
+        final List<String> listLine = method.getLineList();
+        listLine.add("final int size = argErrors.size();");
+        for (BlancoRestTelegramField fieldLook : argProcessStructure.getListField()) {
+            final String fieldName = getAdjustedFieldName(fieldLook);
+            final String fieldType = fieldLook.getFieldType();
+            final String value = "this.f" + fieldName;
+            final String label = BlancoJavaSourceUtil.escapeStringAsJavaSource(fieldLook.getName());
+            // 値が設定されている場合にだけ、必須以外の制約を検証します。
+            final String present = isPrimitiveField(fieldLook) ? "this.has" + fieldName + "() && "
+                    : value + " != null && ";
+
+            if (Boolean.TRUE.equals(fieldLook.getFieldRequired())) {
+                addValidateLines(listLine, isPrimitiveField(fieldLook) ? "!this.has" + fieldName + "()"
+                        : value + " == null", "\"" + label + ": 必須項目に値が設定されていません。\"");
+            }
+
+            final String length = getLengthExpression(fieldType, value);
+            if (length != null) {
+                final Integer minLength = fieldLook.getMinLength();
+                if (minLength != null && minLength.intValue() > 0) {
+                    addValidateLines(listLine, present + length + " < " + minLength,
+                            "\"" + label + ": 長さ \" + " + length + " + \" が最小長 " + minLength + " に足りません。\"");
+                }
+                final Integer maxLength = fieldLook.getMaxLength();
+                if (maxLength != null && maxLength.intValue() >= 0) {
+                    addValidateLines(listLine, present + length + " > " + maxLength,
+                            "\"" + label + ": 長さ \" + " + length + " + \" が最大長 " + maxLength + " を超えています。\"");
                 }
-                strLine += BlancoCgLineUtil.getTerminator(fTargetLang);
-                listLine.add(strLine);
+            }
+
+            final String minCompare = getCompareExpression(fieldType, value, fieldLook.getMinInclusive());
+            if (minCompare != null) {
+                addValidateLines(listLine, present + minCompare + " < 0",
+                        "\"" + label + ": 値 \" + " + value + " + \" が最小値 "
+                                + BlancoJavaSourceUtil.escapeStringAsJavaSource(fieldLook.getMinInclusive().trim())
+                                + " を下回っています。\"");
+            }
+            final String maxCompare = getCompareExpression(fieldType, value, fieldLook.getMaxInclusive());
+            if (maxCompare != null) {
+                addValidateLines(listLine, present + maxCompare + " > 0",
+                        "\"" + label + ": 値 \" + " + value + " + \" が最大値 "
+                                + BlancoJavaSourceUtil.escapeStringAsJavaSource(fieldLook.getMaxInclusive().trim())
+                                + " を超えています。\"");
+            }
+
+            final String pattern = fieldLook.getPattern();
+            if ("java.lang.String".equals(fieldType)
+                    && BlancoStringUtil.null2Blank(pattern).length() > 0) {
+                try {
+                    Pattern.compile(pattern);
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("電文[" + argProcessStructure.getName()
+                            + "]の項目[" + fieldLook.getName() + "]のパターン[" + pattern
+                            + "]が正規表現として正しくありません: " + e.getDescription());
+                }
+
+                final String patternName = "PATTERN_" + fieldName.toUpperCase();
+                final String patternLiteral = "\"" + BlancoJavaSourceUtil.escapeStringAsJavaSource(pattern) + "\"";
+                final BlancoCgField cgField = fCgFactory.createField(patternName,
+                        "java.util.regex.Pattern", "フィールド [" + fieldLook.getName()
+                                + "] のパターンです。");
+                argCgClass.getFieldList().add(cgField);
+                cgField.setAccess("private");
+                cgField.setStatic(true);
+                cgField.setFinal(true);
+                cgField.setDefault("java.util.regex.Pattern.compile(" + patternLiteral + ")");
+
+                addValidateLines(listLine, present + "!" + patternName + ".matcher(" + value + ").matches()",
+                        "\"" + label + ": 値がパターン [" + BlancoJavaSourceUtil.escapeStringAsJavaSource(pattern)
+                                + "] に一致しません。\"");
+            }
+        }
+        listLine.add("return argErrors.size() == size;");
+    }
+
+    /**
+     * 制約を一つ検証するコードを追加します。
+     *
+     * @param argListLine
+     *            validate の実装。
+     * @param argCondition
+     *            違反している場合に true となる式。
+     * @param argMessage
+     *            違反の内容を表す式。
+     */
+    private static void addValidateLines(final List<String> argListLine,
+            final String argCondition, final String argMessage) {
+        argListLine.add("if (" + argCondition + ") {");
+        argListLine.add("argErrors.add(" + argMessage + ");");
+        argListLine.add("if (argFailFast) {");
+        argListLine.add("return false;");
+        argListLine.add("}");
+        argListLine.add("}");
+    }
+
+    /**
+     * 最小長・最大長で検証する長さの式を取得します。
+     *
+     * @param argFieldType
+     *            フィールドの型。
+     * @param argValue
+     *            フィールドを参照する式。
+     * @return 文字列の長さ、配列・リストの要素数を表す式。長さを持たない型の場合は null。
+     */
+    private static String getLengthExpression(final String argFieldType,
+            final String argValue) {
+        if ("java.lang.String".equals(argFieldType)) {
+            return argValue + ".length()";
+        } else if (argFieldType.endsWith("[]")) {
+            return argValue + ".length";
+        } else if (argFieldType.startsWith("java.util.List")
+                || argFieldType.startsWith("java.util.ArrayList")) {
+            return argValue + ".size()";
+        }
+        return null;
+    }
+
+    /**
+     * 最小値・最大値との比較式を取得します。
+     *
+     * 式の値は、フィールドの値が境界値より小さい場合は負、等しい場合は 0、大きい場合は正となります。
+     *
+     * @param argFieldType
+     *            フィールドの型。
+     * @param argValue
+     *            フィールドを参照する式。
+     * @param argBound
+     *            シートに記述された境界値。
+     * @return 比較式。数値でない型の場合や、境界値が記述されていないか数値でない場合は null。
+     */
+    private static String getCompareExpression(final String argFieldType,
+            final String argValue, final String argBound) {
+        final String bound = BlancoStringUtil.null2Blank(argBound).trim();
+        if (bound.length() == 0) {
+            return null;
+        }
+
+        try {
+            if ("int".equals(argFieldType) || "long".equals(argFieldType)) {
+                return "java.lang.Long.compare(" + argValue + ", " + Long.parseLong(bound) + "L)";
+            } else if ("java.lang.Integer".equals(argFieldType)
+                    || "java.lang.Long".equals(argFieldType)) {
+                return "java.lang.Long.compare(" + argValue + ".longValue(), " + Long.parseLong(bound) + "L)";
+            } else if ("double".equals(argFieldType) || "float".equals(argFieldType)) {
+                return "java.lang.Double.compare(" + argValue + ", " + toDoubleLiteral(bound) + ")";
+            } else if ("java.lang.Double".equals(argFieldType)
+                    || "java.lang.Float".equals(argFieldType)) {
+                return "java.lang.Double.compare(" + argValue + ".doubleValue(), " + toDoubleLiteral(bound) + ")";
+            } else if ("java.math.BigDecimal".equals(argFieldType)) {
+                return argValue + ".compareTo(new java.math.BigDecimal(\""
+                        + new BigDecimal(bound).toString() + "\"))";
+            }
+        } catch (NumberFormatException e) {
+            // 値が数値でなかった場合は無視
+        }
+        return null;
+    }
+
+    /**
+     * 境界値を double のリテラルに変換します。
+     *
+     * @param argBound
+     *            シートに記述された境界値。
+     * @return double のリテラル。
+     * @throws NumberFormatException
+     *             有限の数値でない場合。
+     */
+    private static String toDoubleLiteral(final String argBound) {
+        final double bound = Double.parseDouble(argBound);
+        if (Double.isNaN(bound) || Double.isInfinite(bound)) {
+            throw new NumberFormatException(argBound);
+        }
+        return Double.toString(bound);
+    }
+
+    /**
+     * writeJsonメソッドを展開します。
+     *
+     * フィールドの一覧から、イントロスペクションを使わずに JSON を書き出すコードを生成します。
+     * 項目名は Jackson databind が getter から導出する名前に合わせます。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
+     * @param argProcessStructure
+     *            メタファイルから収集できた電文構造データ。
+     */
+    private void expandMethodWriteJson(
+            final BlancoCgClass argCgClass,
+            final BlancoRestTelegram argProcessStructure) {
+        final BlancoCgMethod method = fCgFactory.createMethod("writeJson",
+                "この電文を JSON オブジェクトとして書き出します。");
+        argCgClass.getMethodList().add(method);
+        method.setAccess("public");
+
+        List<String> annotators = new ArrayList<>();
+        annotators.add("Override");
+        method.setAnnotationList(annotators);
+
+        method.getParameterList().add(
+                fCgFactory.createParameter("argGenerator",
+                        "com.fasterxml.jackson.core.JsonGenerator", "書き出し先。"));
+        method.getThrowList().add(
+                fCgFactory.createException("java.io.IOException",
+                        "書き出しに失敗した場合。"));
+
+        final List<String> listLine = method.getLineList();
+        listLine.add("argGenerator.writeStartObject();");
+        for (BlancoRestTelegramField fieldLook : argProcessStructure.getListField()) {
+            final String fieldName = getAdjustedFieldName(fieldLook);
+            final String jsonName = "\"" + BlancoJavaSourceUtil.escapeStringAsJavaSource(
+                    toJsonPropertyName(fieldName)) + "\"";
+            final String fieldType = fieldLook.getFieldType();
+            final String writeMethod = getJsonWriteMethod(fieldType);
+
+            if (isPrimitiveArrayType(fieldType)) {
+                listLine.add("if (this.f" + fieldName + " == null) {");
+                listLine.add("argGenerator.writeNullField(" + jsonName + ");");
+                listLine.add("} else {");
+                listLine.add("argGenerator.writeArrayFieldStart(" + jsonName + ");");
+                listLine.add("for (int index = 0; index < this.f" + fieldName + ".length; index++) {");
+                listLine.add("argGenerator." + ("boolean[]".equals(fieldType) ? "writeBoolean" : "writeNumber")
+                        + "(this.f" + fieldName + "[index]);");
+                listLine.add("}");
+                listLine.add("argGenerator.writeEndArray();");
+                listLine.add("}");
+            } else if (writeMethod == null) {
+                // null を含めて Jackson databind に任せます。
+                listLine.add("argGenerator.writeObjectField(" + jsonName + ", this.f" + fieldName + ");");
+            } else if (fieldType.indexOf('.') < 0) {
+                // プリミティブ型は null になりません。
+                listLine.add("argGenerator." + writeMethod + "(" + jsonName + ", this.f" + fieldName + ");");
             } else {
-                listLine.add("// TODO 配列は未対応です。");
+                listLine.add("if (this.f" + fieldName + " == null) {");
+                listLine.add("argGenerator.writeNullField(" + jsonName + ");");
+                listLine.add("} else {");
+                listLine.add("argGenerator." + writeMethod + "(" + jsonName + ", this.f" + fieldName + ");");
+                listLine.add("}");
             }
         }
+        listLine.add("argGenerator.writeEndObject();");
+    }
 
-        listLine.add(BlancoCgLineUtil.getVariablePrefix(fTargetLang) + "buf = "
-                + BlancoCgLineUtil.getVariablePrefix(fTargetLang) + "buf "
-                + BlancoCgLineUtil.getStringConcatenationOperator(fTargetLang)
-                + " " + BlancoCgLineUtil.getStringLiteralEnclosure(fTargetLang)
-                + "]" + BlancoCgLineUtil.getStringLiteralEnclosure(fTargetLang)
-                + BlancoCgLineUtil.getTerminator(fTargetLang));
-        listLine.add("return "
-                + BlancoCgLineUtil.getVariablePrefix(fTargetLang) + "buf"
-                + BlancoCgLineUtil.getTerminator(fTargetLang));
+    /**
+     * readJsonメソッドを展開します。
+     *
+     * 型ごとに JsonParser から直接値を取り出すコードを生成します。
+     * 想定外の形式の値は Jackson databind で変換し、未知の項目は読み飛ばします。
+     *
+     * @param argCgClass
+     *            生成中のクラス。
+     * @param argProcessStructure
+     *            メタファイルから収集できた電文構造データ。
+     */
+    private void expandMethodReadJson(
+            final BlancoCgClass argCgClass,
+            final BlancoRestTelegram argProcessStructure) {
+        final BlancoCgMethod method = fCgFactory.createMethod("readJson",
+                "JSON オブジェクトを読み込んでこの電文に設定します。");
+        argCgClass.getMethodList().add(method);
+        method.setAccess("public");
+
+        List<String> annotators = new ArrayList<>();
+        annotators.add("Override");
+        method.setAnnotationList(annotators);
+
+        method.getParameterList().add(
+                fCgFactory.createParameter("argParser",
+                        "com.fasterxml.jackson.core.JsonParser", "読み込み元。"));
+        method.getThrowList().add(
+                fCgFactory.createException("java.io.IOException",
+                        "読み込みに失敗した場合。"));
+
+        final String tokenClass = "com.fasterxml.jackson.core.JsonToken";
+        final List<String> listLine = method.getLineList();
+        listLine.add("if (argParser.getCurrentToken() == null) {");
+        listLine.add("argParser.nextToken();");
+        listLine.add("}");
+        listLine.add("if (argParser.getCurrentToken() != " + tokenClass + ".START_OBJECT) {");
+        listLine.add("throw new com.fasterxml.jackson.core.JsonParseException(\"START_OBJECT expected: \" + argParser.getCurrentToken(), argParser.getCurrentLocation());");
+        listLine.add("}");
+        listLine.add("while (argParser.nextToken() == " + tokenClass + ".FIELD_NAME) {");
+        listLine.add("final String name = argParser.getCurrentName();");
+        listLine.add("final " + tokenClass + " token = argParser.nextToken();");
+        String keyword = "if";
+        for (BlancoRestTelegramField fieldLook : argProcessStructure.getListField()) {
+            final String fieldName = getAdjustedFieldName(fieldLook);
+            listLine.add(keyword + " (\"" + BlancoJavaSourceUtil.escapeStringAsJavaSource(
+                    toJsonPropertyName(fieldName)) + "\".equals(name)) {");
+            if (getPresenceIndex(argProcessStructure, fieldLook) >= 0) {
+                // 値が設定されたことを記録するため setter を使います。
+                // null の場合は値が無いものとして、項目も設定済みの記録も変更しません。
+                listLine.add("if (token != " + tokenClass + ".VALUE_NULL) {");
+                listLine.add("this.set" + fieldName + "("
+                        + getJsonReadExpression(fieldLook.getFieldType(), tokenClass) + ");");
+                listLine.add("}");
+            } else {
+                listLine.add("this.f" + fieldName + " = "
+                        + getJsonReadExpression(fieldLook.getFieldType(), tokenClass) + ";");
+            }
+            keyword = "} else if";
+        }
+        if (argProcessStructure.getListField().size() > 0) {
+            listLine.add("} else {");
+        }
+        listLine.add("argParser.skipChildren();");
+        if (argProcessStructure.getListField().size() > 0) {
+            listLine.add("}");
+        }
+        listLine.add("}");
+    }
+
+    /**
+     * 名前変形を反映したフィールド名を取得します。
+     *
+     * @param argField
+     *            フィールド。
+     * @return フィールド名 (getter/setter の get/set に続く部分)。
+     */
+    private String getAdjustedFieldName(final BlancoRestTelegramField argField) {
+        String fieldName = argField.getName();
+        if (fNameAdjust) {
+            fieldName = BlancoNameAdjuster.toClassName(fieldName);
+        }
+        return fieldName;
+    }
+
+    /**
+     * getter 名から Jackson databind (標準設定) が導出する項目名を取得します。
+     *
+     * 先頭から続く大文字を小文字に変換します (例: Field1 → field1、URLPath → urlpath)。
+     *
+     * @param argFieldName
+     *            getter の get に続く部分。
+     * @return JSON の項目名。
+     */
+    static String toJsonPropertyName(final String argFieldName) {
+        final StringBuilder buf = new StringBuilder(argFieldName.length());
+        int index = 0;
+        for (; index < argFieldName.length(); index++) {
+            final char c = argFieldName.charAt(index);
+            final char lower = Character.toLowerCase(c);
+            if (c == lower) {
+                break;
+            }
+            buf.append(lower);
+        }
+        buf.append(argFieldName, index, argFieldName.length());
+        return buf.toString();
+    }
+
+    /**
+     * 型がプリミティブ型の配列かどうかを判定します。
+     *
+     * @param argFieldType
+     *            フィールドの型。
+     * @return プリミティブ型の配列の場合は true。
+     */
+    private static boolean isPrimitiveArrayType(final String argFieldType) {
+        return "boolean[]".equals(argFieldType) || "int[]".equals(argFieldType)
+                || "long[]".equals(argFieldType)
+                || "double[]".equals(argFieldType)
+                || "float[]".equals(argFieldType);
+    }
+
+    /**
+     * 型に対応する JsonGenerator の書き出しメソッド名を取得します。
+     *
+     * @param argFieldType
+     *            フィールドの型。
+     * @return メソッド名。Jackson databind に任せる型の場合は null。
+     */
+    private static String getJsonWriteMethod(final String argFieldType) {
+        if ("java.lang.String".equals(argFieldType)) {
+            return "writeStringField";
+        } else if ("java.lang.Boolean".equals(argFieldType)
+                || "boolean".equals(argFieldType)) {
+            return "writeBooleanField";
+        } else if ("java.lang.Integer".equals(argFieldType)
+                || "java.lang.Long".equals(argFieldType)
+                || "java.lang.Double".equals(argFieldType)
+                || "java.lang.Float".equals(argFieldType)
+                || "java.math.BigDecimal".equals(argFieldType)
+                || "int".equals(argFieldType) || "long".equals(argFieldType)
+                || "double".equals(argFieldType)
+                || "float".equals(argFieldType)) {
+            return "writeNumberField";
+        }
+        return null;
+    }
+
+    /**
+     * 型に対応する JsonParser からの読み込み式を取得します。
+     *
+     * 想定どおりのトークンであれば JsonParser から直接値を取り出し、
+     * null や文字列で表現された数値などは Jackson databind で変換します。
+     *
+     * @param argFieldType
+     *            フィールドの型。
+     * @param argTokenClass
+     *            JsonToken のクラス名。
+     * @return 読み込み式。
+     */
+    private static String getJsonReadExpression(final String argFieldType,
+            final String argTokenClass) {
+        if ("java.lang.String".equals(argFieldType)) {
+            return "token == " + argTokenClass + ".VALUE_STRING ? argParser.getText() : argParser.readValueAs(java.lang.String.class)";
+        } else if ("java.lang.Boolean".equals(argFieldType)) {
+            return "token == " + argTokenClass + ".VALUE_TRUE ? java.lang.Boolean.TRUE : token == "
+                    + argTokenClass + ".VALUE_FALSE ? java.lang.Boolean.FALSE : argParser.readValueAs(java.lang.Boolean.class)";
+        } else if ("boolean".equals(argFieldType)) {
+            return "token == " + argTokenClass + ".VALUE_TRUE ? true : token == "
+                    + argTokenClass + ".VALUE_FALSE ? false : argParser.readValueAs(boolean.class)";
+        } else if ("java.lang.Integer".equals(argFieldType)) {
+            return "token == " + argTokenClass + ".VALUE_NUMBER_INT ? java.lang.Integer.valueOf(argParser.getIntValue()) : argParser.readValueAs(java.lang.Integer.class)";
+        } else if ("int".equals(argFieldType)) {
+            return "token == " + argTokenClass + ".VALUE_NUMBER_INT ? argParser.getIntValue() : argParser.readValueAs(int.class)";
+        } else if ("java.lang.Long".equals(argFieldType)) {
+            return "token == " + argTokenClass + ".VALUE_NUMBER_INT ? java.lang.Long.valueOf(argParser.getLongValue()) : argParser.readValueAs(java.lang.Long.class)";
+        } else if ("long".equals(argFieldType)) {
+            return "token == " + argTokenClass + ".VALUE_NUMBER_INT ? argParser.getLongValue() : argParser.readValueAs(long.class)";
+        } else if ("java.lang.Double".equals(argFieldType)) {
+            return "token.isNumeric() ? java.lang.Double.valueOf(argParser.getDoubleValue()) : argParser.readValueAs(java.lang.Double.class)";
+        } else if ("double".equals(argFieldType)) {
+            return "token.isNumeric() ? argParser.getDoubleValue() : argParser.readValueAs(double.class)";
+        } else if ("java.lang.Float".equals(argFieldType)) {
+            return "token.isNumeric() ? java.lang.Float.valueOf(argParser.getFloatValue()) : argParser.readValueAs(java.lang.Float.class)";
+        } else if ("float".equals(argFieldType)) {
+            return "token.isNumeric() ? argParser.getFloatValue() : argParser.readValueAs(float.class)";
+        } else if (argFieldType.indexOf('<') >= 0) {
+            return "argParser.readValueAs(new com.fasterxml.jackson.core.type.TypeReference<" + argFieldType + ">() {})";
+        }
+        return "argParser.readValueAs(" + argFieldType + ".class)";
+    }
+
+    /**
+     * 配列の項目に要素の型が指定されている場合、要素の型を持つ型に変換します。
+     *
+     * 数値と真偽値の要素はプリミティブ型の配列 (例: int[]) とし、それ以外は
+     * java.util.List&lt;要素の型&gt; とします。要素の型は電文クラスには保持せず、
+     * 変換後の型としてフィールドの型に反映します。
+     *
+     * @param argFieldType
+     *            フィールドの型 (PHP 用のシートの場合は Java の型に変換済みのもの)。
+     * @param argElementType
+     *            シートに記述された要素の型。
+     * @return フィールドの型。
+     */
+    private String adjustArrayType(final String argFieldType,
+            final String argElementType) {
+        if (BlancoStringUtil.null2Blank(argElementType).trim().length() == 0) {
+            return argFieldType;
+        }
+
+        String elementType = argElementType.trim();
+        switch (fSheetLang) {
+            case BlancoCgSupportedLang.PHP:
+                if ("java.util.ArrayList<?>".equals(argFieldType) == false) {
+                    return argFieldType;
+                }
+                elementType = adjustClassNamePhp2Java(elementType);
+                break;
+            default:
+                if (argFieldType.startsWith("java.util.List") == false
+                        && argFieldType.startsWith("java.util.ArrayList") == false) {
+                    return argFieldType;
+                }
+                break;
+        }
+
+        final String primitiveType = toPrimitiveType(elementType);
+        if (primitiveType != null) {
+            return primitiveType + "[]";
+        }
+        if ("boolean".equals(elementType) || "int".equals(elementType)
+                || "long".equals(elementType) || "double".equals(elementType)
+                || "float".equals(elementType)) {
+            return elementType + "[]";
+        }
+        return "java.util.List<" + elementType + ">";
     }
 
     /**
@@ -1019,8 +2030,6 @@ public class BlancoRestXml2SourceFile {
                 /*
                  * 型の取得．ここで Java 風の型名に変えておく
                  */
-
-        System.out.println("/* tueda */ adjustClassNamePhp2Java: " + phpType);
         String javaType = phpType;
         if ("boolean".equalsIgnoreCase(phpType)) {
             javaType = "java.lang.Boolean";
@@ -1044,17 +2053,23 @@ public class BlancoRestXml2SourceFile {
             javaType = "java.lang.Object";
         } else {
                     /* この名前の package を探す */
-            BlancoValueObjectClassStructure structure = BlancoRestObjectsInfo.objects.get(phpType);
+            fReferencedObjects.add(phpType);
+            BlancoValueObjectClassStructure structure = fObjects.get(phpType);
             if (structure != null) {
                 String packageName = structure.getPackage();
                 if (packageName != null) {
                     javaType = packageName + "." + phpType;
                 }
-            }
+            } else {
                     /* その他はそのまま記述する */
-            System.out.println("/* tueda */ Unknown php type: " + javaType);
+                fEvents.count("types.unresolved", 1);
+            }
+        }
+        fEvents.count("types.converted", 1);
+        if (fEvents.isDebugEnabled()) {
+            fEvents.debug("BlancoRestXml2SourceFile", "adjustClassNamePhp2Java: "
+                    + phpType + " -> " + javaType);
         }
-        System.out.println("/* tueda */ adjustClassNamePhp2Java: " + javaType);
 
         return javaType;
     }
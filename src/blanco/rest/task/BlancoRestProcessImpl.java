@@ -11,16 +11,36 @@ package blanco.rest.task;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.transform.TransformerException;
 
 import blanco.cg.BlancoCgSupportedLang;
+import blanco.rest.BlancoRestConsoleLog;
 import blanco.rest.BlancoRestConstants;
+import blanco.rest.BlancoRestEventListener;
+import blanco.rest.BlancoRestEvents;
+import blanco.rest.BlancoRestManifest;
 import blanco.rest.BlancoRestMeta2Xml;
 import blanco.rest.BlancoRestObjectsInfo;
+import blanco.rest.BlancoRestObjectsRegistry;
+import blanco.rest.BlancoRestSourceWriter;
+import blanco.rest.BlancoRestSummaryReport;
+import blanco.rest.BlancoRestTimingTrace;
+import blanco.rest.BlancoRestWorkbookReader;
 import blanco.rest.BlancoRestXml2SourceFile;
 import blanco.rest.resourcebundle.BlancoRestResourceBundle;
 import blanco.rest.task.valueobject.BlancoRestProcessInput;
+import blanco.valueobject.valueobject.BlancoValueObjectClassStructure;
 
 //import blanco.rest.BlancoRestXml2SourceFile;
 
@@ -32,13 +52,239 @@ public class BlancoRestProcessImpl implements
      */
     private final BlancoRestResourceBundle fBundle = new BlancoRestResourceBundle();
 
+    /**
+     * ValueObject のレジストリ。
+     *
+     * 処理のインスタンスごとに持つため、同じ JVM で複数の生成を並行して実行しても
+     * 互いに影響しません。内容は execute のたびに置き換えます。
+     */
+    private final BlancoRestObjectsRegistry fRegistry = new BlancoRestObjectsRegistry();
+
+    /**
+     * 並列生成のワーカー数を指定するシステムプロパティ名。
+     *
+     * BlancoRestProcessInput は blancoAntTask により生成されるため、
+     * Antタスクからはこのシステムプロパティ (ANT_OPTS 経由など) で指定します。
+     */
+    public static final String PROPERTY_PARALLEL = "blancorest.parallel";
+
+    /**
+     * 中間XMLファイルからソースコードを生成する際のワーカー数。
+     */
+    private int fParallel = Integer.getInteger(PROPERTY_PARALLEL,
+            Runtime.getRuntime().availableProcessors()).intValue();
+
+    /**
+     * 中間XMLファイルからソースコードを生成する際のワーカー数を指定します。
+     *
+     * 1 以下を指定した場合には、呼び出し元のスレッドで逐次生成します。
+     *
+     * @param argParallel
+     *            ワーカー数。
+     */
+    public void setParallel(final int argParallel) {
+        fParallel = argParallel;
+    }
+
+    /**
+     * インクリメンタル生成を行うかどうかを指定するシステムプロパティ名。
+     */
+    public static final String PROPERTY_INCREMENTAL = "blancorest.incremental";
+
+    /**
+     * インクリメンタル生成を行うかどうか。
+     */
+    private boolean fIncremental = Boolean.getBoolean(PROPERTY_INCREMENTAL);
+
+    /**
+     * インクリメンタル生成を行うかどうかを指定します。
+     *
+     * true を指定すると、テンポラリディレクトリに保存したマニフェストと照合し、
+     * 定義書・中間XML・参照している ValueObject・生成済みソースファイルのいずれにも
+     * 変更が無い定義書については、中間XMLへの変換とソースコード生成をスキップします。
+     *
+     * @param argIncremental
+     *            インクリメンタル生成を行うかどうか。
+     */
+    public void setIncremental(final boolean argIncremental) {
+        fIncremental = argIncremental;
+    }
+
+    /**
+     * 必須項目の型をプリミティブ型にするかどうかを指定するシステムプロパティ名。
+     */
+    public static final String PROPERTY_PRIMITIVE = "blancorest.primitive";
+
+    /**
+     * PHP 用のシートで、必須項目の型をプリミティブ型にするかどうか。
+     */
+    private boolean fPrimitive = Boolean.getBoolean(PROPERTY_PRIMITIVE);
+
+    /**
+     * PHP 用のシートで、必須項目の型をプリミティブ型にするかどうかを指定します。
+     *
+     * 電文定義・共通の「プリミティブ型」が記述されているシートでは、シートの指定を優先します。
+     *
+     * @param argPrimitive
+     *            必須項目の型をプリミティブ型にするかどうか。
+     */
+    public void setPrimitive(final boolean argPrimitive) {
+        fPrimitive = argPrimitive;
+    }
+
+    /**
+     * 電文クラスに toString を生成するかどうかを指定するシステムプロパティ名。
+     */
+    public static final String PROPERTY_TO_STRING = "blancorest.tostring";
+
+    /**
+     * 電文クラスに toString を生成するかどうか。
+     */
+    private boolean fToString = Boolean.parseBoolean(System.getProperty(
+            PROPERTY_TO_STRING, "true"));
+
+    /**
+     * 電文クラスに toString を生成するかどうかを指定します。
+     *
+     * false を指定すると、電文クラスは Object の toString をそのまま使います。
+     *
+     * @param argToString
+     *            toString を生成するかどうか。
+     */
+    public void setToString(final boolean argToString) {
+        fToString = argToString;
+    }
+
+    /**
+     * 電文クラスに validate を生成するかどうかを指定するシステムプロパティ名。
+     */
+    public static final String PROPERTY_VALIDATE = "blancorest.validate";
+
+    /**
+     * 電文クラスに validate を生成するかどうか。
+     */
+    private boolean fValidate = Boolean.parseBoolean(System.getProperty(
+            PROPERTY_VALIDATE, "true"));
+
+    /**
+     * 電文クラスに validate を生成するかどうかを指定します。
+     *
+     * false を指定すると、電文クラスは ApiValidatable を実装せず、送信前に検証されません。
+     *
+     * @param argValidate
+     *            validate を生成するかどうか。
+     */
+    public void setValidate(final boolean argValidate) {
+        fValidate = argValidate;
+    }
+
+    /**
+     * 電文クラスに JSON との変換メソッドを生成するかどうかを指定するシステムプロパティ名。
+     */
+    public static final String PROPERTY_JSON_CODEC = "blancorest.jsoncodec";
+
+    /**
+     * 電文クラスに JSON との変換メソッドを生成するかどうか。
+     */
+    private boolean fJsonCodec = Boolean.getBoolean(PROPERTY_JSON_CODEC);
+
+    /**
+     * 電文クラスに JSON との変換メソッド (writeJson / readJson) を生成するかどうかを指定します。
+     *
+     * @param argJsonCodec
+     *            変換メソッドを生成するかどうか。
+     */
+    public void setJsonCodec(final boolean argJsonCodec) {
+        fJsonCodec = argJsonCodec;
+    }
+
+    /**
+     * 定義書を中間XMLファイルに変換せずに直接読み込むかどうかを指定するシステムプロパティ名。
+     */
+    public static final String PROPERTY_DIRECT = "blancorest.direct";
+
+    /**
+     * 定義書を中間XMLファイルに変換せずに直接読み込むかどうか。
+     */
+    private boolean fDirect = Boolean.getBoolean(PROPERTY_DIRECT);
+
+    /**
+     * 定義書を中間XMLファイルに変換せずに直接読み込むかどうかを指定します。
+     *
+     * 直接読み込む場合は、テンポラリディレクトリに中間XMLファイルを出力しません。
+     *
+     * @param argDirect
+     *            直接読み込むかどうか。
+     */
+    public void setDirect(final boolean argDirect) {
+        fDirect = argDirect;
+    }
+
+    /**
+     * コンソールに出力するメッセージの重要度を指定するシステムプロパティ名。
+     *
+     * quiet (警告のみ)、info (既定)、debug (定義書の解析の詳細を含む) のいずれかを指定します。
+     * verbose を指定した場合は debug として扱います。
+     */
+    public static final String PROPERTY_LOG = "blancorest.log";
+
+    /**
+     * 処理の終了後に段階ごとの処理時間と件数の一覧を出力するかどうかを指定するシステムプロパティ名。
+     *
+     * summary を指定すると出力します。
+     */
+    public static final String PROPERTY_REPORT = "blancorest.report";
+
+    /**
+     * 段階ごとの処理時間を JSON (Trace Event Format) で出力するファイルを指定するシステムプロパティ名。
+     */
+    public static final String PROPERTY_TRACE = "blancorest.trace";
+
+    /**
+     * 追加で登録するリスナー。
+     */
+    private final List<BlancoRestEventListener> fListeners = new CopyOnWriteArrayList<BlancoRestEventListener>();
+
+    /**
+     * 実行中の処理のイベントの通知先。
+     */
+    private BlancoRestEvents fEvents = new BlancoRestEvents();
+
+    /**
+     * 処理時間、件数、メッセージを受け取るリスナーを追加します。
+     *
+     * 追加したリスナーには以降の全ての execute のイベントが通知されます。
+     *
+     * @param argListener
+     *            リスナー。
+     */
+    public void addEventListener(final BlancoRestEventListener argListener) {
+        fListeners.add(argListener);
+    }
+
     /**
      * {@inheritDoc}
      */
     public int execute(final BlancoRestProcessInput input) {
-        System.out.println("- " + BlancoRestConstants.PRODUCT_NAME
+        final BlancoRestEvents events = createEvents(input);
+        fEvents = events;
+        final BlancoRestSummaryReport report = ("summary".equals(System
+                .getProperty(PROPERTY_REPORT)) ? new BlancoRestSummaryReport()
+                : null);
+        if (report != null) {
+            events.addListener(report);
+        }
+        final String trace = System.getProperty(PROPERTY_TRACE);
+        final BlancoRestTimingTrace timingTrace = (trace != null
+                && trace.length() > 0 ? new BlancoRestTimingTrace() : null);
+        if (timingTrace != null) {
+            events.addListener(timingTrace);
+        }
+
+        events.info("BlancoRestProcessImpl", "- " + BlancoRestConstants.PRODUCT_NAME
                 + " (" + BlancoRestConstants.VERSION + ")" + " for " + input.getSheetType());
 
+        final long startExecute = events.start();
         try {
             final File fileMetadir = new File(input.getMetadir());
             if (fileMetadir.exists() == false) {
@@ -50,34 +296,63 @@ public class BlancoRestProcessImpl implements
              * validator を作る時に使うために，
              * ValueObject で既に定義されている（はずの）オブジェクトを取得しておく
              */
-            final BlancoRestObjectsInfo objectsInfo = new BlancoRestObjectsInfo();
+            final long startObjects = events.start();
+            final BlancoRestObjectsInfo objectsInfo = new BlancoRestObjectsInfo(fRegistry);
             objectsInfo.setEncoding(input.getEncoding());
+            objectsInfo.setEvents(events);
             objectsInfo.process(input);
+            events.stage("objects", null, startObjects);
 
             // テンポラリディレクトリを作成。
-            new File(input.getTmpdir()
-                    + BlancoRestConstants.TARGET_SUBDIRECTORY)
-                    .mkdirs();
-
-            // 指定されたメタディレクトリを処理します。
-            new BlancoRestMeta2Xml()
-                    .processDirectory(fileMetadir, input.getTmpdir()
-                            + BlancoRestConstants.TARGET_SUBDIRECTORY);
-
-            // XML化された中間ファイルからソースコードを生成
-            final File[] fileMeta2 = new File(input.getTmpdir()
-                    + BlancoRestConstants.TARGET_SUBDIRECTORY)
-                    .listFiles();
-            for (int index = 0; index < fileMeta2.length; index++) {
-                if (fileMeta2[index].getName().endsWith(".xml") == false) {
-                    continue;
+            final File fileTmpdir = new File(input.getTmpdir()
+                    + BlancoRestConstants.TARGET_SUBDIRECTORY);
+            fileTmpdir.mkdirs();
+
+            BlancoRestManifest manifest = null;
+            if (fIncremental) {
+                manifest = new BlancoRestManifest(new File(fileTmpdir,
+                        BlancoRestManifest.FILE_NAME));
+                manifest.load();
+                // 生成条件が変わった場合には全て生成し直します。
+                manifest.checkConfig(BlancoRestConstants.VERSION + ","
+                        + input.getSheetType() + "," + input.getNameAdjust()
+                        + "," + input.getEncoding() + ","
+                        + new File(input.getTargetdir()).getAbsolutePath()
+                        + "," + fJsonCodec + "," + fPrimitive + "," + fToString
+                        + "," + fValidate + "," + fDirect);
+            }
+
+            final List<File> listWorkbook = listWorkbook(fileMetadir);
+            if (manifest != null) {
+                // 削除された定義書の記録は破棄します。
+                final List<String> listKey = new ArrayList<String>();
+                for (File fileWorkbook : listWorkbook) {
+                    listKey.add(fileWorkbook.getName());
                 }
+                manifest.retain(listKey);
+            }
+
+            final List<File> listXml;
+            if (fDirect) {
+                // 定義書を直接読み込むため、中間XMLファイルへの変換は行いません。
+                listXml = listWorkbook;
+            } else {
+                listXml = processMeta2Xml(fileMetadir, fileTmpdir, manifest);
+                // xlsx 形式の定義書は中間XMLファイルに変換できないため、直接読み込みます。
+                for (File fileWorkbook : listWorkbook) {
+                    if (BlancoRestWorkbookReader.isXlsx(fileWorkbook)) {
+                        listXml.add(fileWorkbook);
+                    }
+                }
+            }
+
+            // 生成中は ValueObject の一覧が変わらないよう、スナップショットを引き回します。
+            final long startXml2Source = events.start();
+            processXml2Source(input, listXml, manifest, fRegistry.snapshot());
+            events.stage("xml2source", null, startXml2Source);
 
-                final BlancoRestXml2SourceFile xml2source = new BlancoRestXml2SourceFile();
-                xml2source.setEncoding(input.getEncoding());
-                xml2source.setSheetLang(new BlancoCgSupportedLang().convertToInt(input.getSheetType()));
-                xml2source.process(fileMeta2[index], "true".equals(input
-                        .getNameAdjust()), new File(input.getTargetdir()));
+            if (manifest != null) {
+                manifest.store();
             }
         } catch (IOException ex) {
             throw new IllegalArgumentException(ex.toString());
@@ -86,15 +361,314 @@ public class BlancoRestProcessImpl implements
         } catch (IllegalArgumentException ex) {
             ex.printStackTrace();
             throw ex;
+        } finally {
+            events.stage("execute", null, startExecute);
+            if (report != null) {
+                report.print(System.out);
+            }
+            if (timingTrace != null) {
+                try {
+                    timingTrace.write(new File(trace));
+                } catch (IOException ex) {
+                    System.out.println("BlancoRestProcessImpl: [" + trace
+                            + "] could not be written. " + ex.toString());
+                }
+            }
         }
         return 0;
     }
 
+    /**
+     * 処理ごとのイベントの通知先を作成します。
+     *
+     * @param input
+     *            処理の入力パラメータ。
+     * @return イベントの通知先。
+     */
+    private BlancoRestEvents createEvents(final BlancoRestProcessInput input) {
+        final BlancoRestEvents events = new BlancoRestEvents();
+        final String log = System.getProperty(PROPERTY_LOG, "info");
+        BlancoRestEventListener.Level level = BlancoRestEventListener.Level.INFO;
+        if ("quiet".equals(log)) {
+            level = BlancoRestEventListener.Level.WARNING;
+        } else if ("debug".equals(log) || input.getVerbose()) {
+            level = BlancoRestEventListener.Level.DEBUG;
+        } else if ("info".equals(log) == false) {
+            throw new IllegalArgumentException(PROPERTY_LOG
+                    + " には quiet、info、debug のいずれかを指定してください: " + log);
+        }
+        events.addListener(new BlancoRestConsoleLog(System.out, level));
+        events.setDebugEnabled(level == BlancoRestEventListener.Level.DEBUG);
+        for (BlancoRestEventListener listener : fListeners) {
+            events.addListener(listener);
+        }
+        return events;
+    }
+
+    /**
+     * 指定ディレクトリ内のExcelファイルを中間XMLファイルに変換し、中間XMLファイルのリストを取得します。
+     *
+     * @param fileMetadir
+     *            メタファイルが格納されている入力ディレクトリ。
+     * @param fileTmpdir
+     *            出力ディレクトリ。
+     * @param argManifest
+     *            マニフェスト。インクリメンタル生成を行わない場合は null。
+     * @return 中間XMLファイルのリスト。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     * @throws TransformerException
+     *             XML変換例外が発生した場合。
+     */
+    private List<File> processMeta2Xml(final File fileMetadir,
+            final File fileTmpdir, final BlancoRestManifest argManifest)
+            throws IOException, TransformerException {
+        // 指定されたメタディレクトリを処理します。
+        final long startMeta2Xml = fEvents.start();
+        if (argManifest == null) {
+            new BlancoRestMeta2Xml().processDirectory(fileMetadir,
+                    fileTmpdir.getPath());
+        } else {
+            processMeta2XmlIncremental(fileMetadir, fileTmpdir, argManifest);
+        }
+        fEvents.stage("meta2xml", null, startMeta2Xml);
+
+        // XML化された中間ファイルからソースコードを生成
+        final File[] fileMeta2 = fileTmpdir.listFiles();
+        // 出力やエラー報告の順序がファイルシステムに依存しないようにソートしておきます。
+        Arrays.sort(fileMeta2);
+        final List<File> listXml = new ArrayList<File>();
+        for (int index = 0; index < fileMeta2.length; index++) {
+            if (fileMeta2[index].getName().endsWith(".xml") == false) {
+                continue;
+            }
+            listXml.add(fileMeta2[index]);
+        }
+        return listXml;
+    }
+
+    /**
+     * 指定ディレクトリ内の定義書 (xls 形式と xlsx 形式) のリストを取得します。
+     *
+     * @param fileMetadir
+     *            メタファイルが格納されている入力ディレクトリ。
+     * @return 定義書のリスト。
+     */
+    private List<File> listWorkbook(final File fileMetadir) {
+        final File[] fileMeta = fileMetadir.listFiles();
+        if (fileMeta == null) {
+            throw new IllegalArgumentException(fBundle
+                    .getAnttaskErr001(fileMetadir.getAbsolutePath()));
+        }
+        // 出力やエラー報告の順序がファイルシステムに依存しないようにソートしておきます。
+        Arrays.sort(fileMeta);
+        final List<File> listWorkbook = new ArrayList<File>();
+        for (int index = 0; index < fileMeta.length; index++) {
+            if (BlancoRestWorkbookReader.isWorkbook(fileMeta[index]) == false) {
+                continue;
+            }
+            listWorkbook.add(fileMeta[index]);
+        }
+        return listWorkbook;
+    }
+
+    /**
+     * 指定ディレクトリ内のExcelファイルのうち、前回から変更のあったものだけをXMLファイルに変換します。
+     *
+     * @param fileMetadir
+     *            メタファイルが格納されている入力ディレクトリ。
+     * @param fileTmpdir
+     *            出力ディレクトリ。
+     * @param argManifest
+     *            マニフェスト。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private void processMeta2XmlIncremental(final File fileMetadir,
+            final File fileTmpdir, final BlancoRestManifest argManifest)
+            throws IOException {
+        final File[] fileMeta = fileMetadir.listFiles();
+        if (fileMeta == null) {
+            throw new IllegalArgumentException(fBundle
+                    .getAnttaskErr001(fileMetadir.getAbsolutePath()));
+        }
+        Arrays.sort(fileMeta);
+
+        final BlancoRestMeta2Xml meta2xml = new BlancoRestMeta2Xml();
+        int countConverted = 0;
+        int countSkipped = 0;
+        for (int index = 0; index < fileMeta.length; index++) {
+            // xlsx 形式の定義書は呼び出し元で直接読み込みます。
+            if (BlancoRestWorkbookReader.isWorkbook(fileMeta[index]) == false
+                    || BlancoRestWorkbookReader.isXlsx(fileMeta[index])) {
+                continue;
+            }
+            final String key = fileMeta[index].getName();
+
+            final File fileXml = new File(fileTmpdir, key + ".xml");
+            final String sheetDigest = BlancoRestManifest.digest(fileMeta[index]);
+            if (argManifest.isSheetUpToDate(key, sheetDigest, fileXml)) {
+                countSkipped++;
+                continue;
+            }
+
+            final long start = fEvents.start();
+            try {
+                meta2xml.process(fileMeta[index], fileXml);
+            } catch (Exception ex) {
+                throw new IllegalArgumentException("BlancoRestMeta2Xml: Exception occurs during processing the file ["
+                        + fileMeta[index].getAbsolutePath() + "]. " + ex.toString());
+            }
+            fEvents.stage("meta2xml.file", key, start);
+            argManifest.putSheet(key, sheetDigest);
+            countConverted++;
+        }
+
+        fEvents.count("meta2xml.files.converted", countConverted);
+        fEvents.count("meta2xml.files.skipped", countSkipped);
+        fEvents.info("BlancoRestProcessImpl", "m2x: incremental: " + countConverted
+                + " file converted, " + countSkipped + " file skipped.");
+    }
+
+    /**
+     * 中間XMLファイル (または定義書) のリストからソースコードを生成します。
+     *
+     * ファイル単位の生成はお互いに独立しているため、ワーカー数が 2 以上の場合は
+     * スレッドプールに分配して並列に処理します。いずれかのファイルで例外が発生しても
+     * 残りのファイルの処理は継続し、全ての例外をファイル名順にまとめて報告します。
+     *
+     * @param input
+     *            処理の入力パラメータ。
+     * @param argListXml
+     *            中間XMLファイルのリスト。定義書を直接読み込む場合は定義書のリスト。
+     * @param argManifest
+     *            マニフェスト。インクリメンタル生成を行わない場合は null。
+     * @param argObjects
+     *            ValueObject 名と ValueObject の構造の対応。
+     * @throws IOException
+     *             入出力例外が発生した場合。
+     */
+    private void processXml2Source(final BlancoRestProcessInput input,
+            final List<File> argListXml, final BlancoRestManifest argManifest,
+            final Map<String, BlancoValueObjectClassStructure> argObjects)
+            throws IOException {
+        // 全ワーカーで出力ステージを共有し、書き込み件数を集計します。
+        final BlancoRestEvents events = fEvents;
+        final BlancoRestSourceWriter sourceWriter = new BlancoRestSourceWriter();
+        sourceWriter.setEvents(events);
+        final List<Callable<Object>> listTask = new ArrayList<Callable<Object>>();
+        int countSkipped = 0;
+        for (final File fileXml : argListXml) {
+            // 定義書を直接読み込む場合も、中間XMLファイルと同じく定義書ファイル名をキーとします。
+            final String key = (fileXml.getName().endsWith(".xml") ? fileXml
+                    .getName().substring(0,
+                            fileXml.getName().length() - ".xml".length())
+                    : fileXml.getName());
+            final String xmlDigest = (argManifest == null ? null
+                    : BlancoRestManifest.digest(fileXml));
+            if (argManifest != null
+                    && argManifest.isSourceUpToDate(key, xmlDigest,
+                            argObjects)) {
+                countSkipped++;
+                continue;
+            }
+
+            listTask.add(new Callable<Object>() {
+                public Object call() throws Exception {
+                    if (argManifest != null) {
+                        // 生成に失敗した場合に次回必ず再生成されるよう、先に記録を破棄します。
+                        argManifest.removeSource(key);
+                    }
+
+                    final long start = events.start();
+                    final BlancoRestXml2SourceFile xml2source = new BlancoRestXml2SourceFile();
+                    xml2source.setEncoding(input.getEncoding());
+                    xml2source.setSheetLang(new BlancoCgSupportedLang().convertToInt(input.getSheetType()));
+                    xml2source.setSourceWriter(sourceWriter);
+                    xml2source.setObjects(argObjects);
+                    xml2source.setJsonCodec(fJsonCodec);
+                    xml2source.setPrimitive(fPrimitive);
+                    xml2source.setToString(fToString);
+                    xml2source.setValidate(fValidate);
+                    xml2source.setEvents(events);
+                    xml2source.process(fileXml, "true".equals(input
+                            .getNameAdjust()), new File(input.getTargetdir()));
+
+                    if (argManifest != null) {
+                        argManifest.putSource(key, xmlDigest,
+                                xml2source.getReferencedObjects(),
+                                argObjects,
+                                xml2source.getGeneratedFileMap());
+                    }
+                    events.stage("xml2source.file", fileXml.getName(), start);
+                    return null;
+                }
+            });
+        }
+        if (argManifest != null) {
+            events.count("xml2source.files.skipped", countSkipped);
+            events.info("BlancoRestProcessImpl", "x2s: incremental: " + listTask.size()
+                    + " file processed, " + countSkipped + " file skipped.");
+        }
+
+        final int parallel = Math.min(fParallel, listTask.size());
+        final List<Throwable> listError = new ArrayList<Throwable>();
+        if (parallel <= 1) {
+            for (Callable<Object> task : listTask) {
+                try {
+                    task.call();
+                } catch (Exception ex) {
+                    listError.add(ex);
+                }
+            }
+        } else {
+            final ExecutorService executor = Executors.newFixedThreadPool(parallel);
+            try {
+                final List<Future<Object>> listFuture = executor.invokeAll(listTask);
+                for (Future<Object> future : listFuture) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException ex) {
+                        listError.add(ex.getCause());
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalArgumentException(ex.toString());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        events.info("BlancoRestProcessImpl", "x2s: " + sourceWriter.getWrittenCount()
+                + " file written, " + sourceWriter.getSkippedCount()
+                + " file unchanged.");
+
+        if (listError.size() == 1) {
+            final Throwable cause = listError.get(0);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalArgumentException(cause.toString());
+        }
+        if (listError.size() > 1) {
+            final StringBuilder buf = new StringBuilder();
+            buf.append(listError.size() + " 件のファイルでソースコード生成に失敗しました。");
+            for (Throwable cause : listError) {
+                buf.append("\n  ").append(cause.toString());
+            }
+            throw new IllegalArgumentException(buf.toString());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     public boolean progress(final String argProgressMessage) {
-        System.out.println(argProgressMessage);
+        fEvents.info("BlancoRestProcessImpl", argProgressMessage);
         return false;
     }
 }
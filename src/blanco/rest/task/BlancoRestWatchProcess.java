@@ -0,0 +1,245 @@
+/*
+ * blanco Framework
+ * Copyright (C) 2004-2009 IGA Tosiki
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ */
+package blanco.rest.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import blanco.rest.BlancoRestConstants;
+import blanco.rest.BlancoRestWorkbookReader;
+import blanco.rest.task.valueobject.BlancoRestProcessInput;
+import blanco.valueobject.BlancoValueObjectConstants;
+
+/**
+ * 定義書の変更を監視して、ソースコードを自動生成し直す常駐処理です。
+ *
+ * 一つの BlancoRestProcessImpl を使い回すため、ValueObject のレジストリ、読み込み済みの
+ * クラス、JIT コンパイルの結果は生成のたびに捨てられません。生成はインクリメンタルに行い、
+ * 定義書を直接読み込むため、保存した定義書 (と、変更された ValueObject を参照する定義書)
+ * だけが生成し直されます。
+ *
+ * 監視するのはメタディレクトリと、blancoValueObject が ValueObject の中間XMLファイルを
+ * 出力するテンポラリディレクトリ (/valueobject) です。ValueObject の定義書を変更した場合は、
+ * 別途 blancoValueObject を実行して中間XMLファイルを更新してください。
+ *
+ * <P>呼び出し例。</P>
+ * <code>
+ * java -classpath (クラスパス) blanco.rest.task.BlancoRestWatchProcess -metadir=meta/api -sheetType=php
+ * </code>
+ */
+public class BlancoRestWatchProcess {
+    /**
+     * 変更を検知してから生成を始めるまでに、続く変更を待つ時間 (ミリ秒) を指定するシステムプロパティ名。
+     *
+     * 保存の途中の一時ファイルの作成や名前の変更をまとめて一回の生成にするために使います。
+     */
+    public static final String PROPERTY_QUIET = "blancorest.watch.quiet";
+
+    /**
+     * 続く変更を待つ時間 (ミリ秒)。
+     */
+    private long fQuietMillis = Long.getLong(PROPERTY_QUIET, 100).longValue();
+
+    /**
+     * 生成処理。ValueObject のレジストリを保持したまま使い回します。
+     */
+    private final BlancoRestProcessImpl fProcess = new BlancoRestProcessImpl();
+
+    /**
+     * BlancoRestWatchProcess のコンストラクタ。
+     */
+    public BlancoRestWatchProcess() {
+        fProcess.setIncremental(true);
+        fProcess.setDirect(true);
+    }
+
+    /**
+     * 続く変更を待つ時間を指定します。
+     *
+     * @param argQuietMillis
+     *            待つ時間 (ミリ秒)。
+     */
+    public void setQuietMillis(final long argQuietMillis) {
+        fQuietMillis = argQuietMillis;
+    }
+
+    /**
+     * コマンドラインから実行された際のエントリポイントです。
+     *
+     * 引数は BlancoRestBatchProcess と同じです。
+     *
+     * @param args
+     *            コンソールから引き継がれた引数。
+     */
+    public static final void main(final String[] args) {
+        final BlancoRestProcessInput input = new BlancoRestProcessInput();
+        boolean isFieldMetadirProcessed = false;
+        for (int index = 0; index < args.length; index++) {
+            final String arg = args[index];
+            if (arg.startsWith("-verbose=")) {
+                input.setVerbose(Boolean.valueOf(arg.substring(9)).booleanValue());
+            } else if (arg.startsWith("-metadir=")) {
+                input.setMetadir(arg.substring(9));
+                isFieldMetadirProcessed = true;
+            } else if (arg.startsWith("-targetdir=")) {
+                input.setTargetdir(arg.substring(11));
+            } else if (arg.startsWith("-tmpdir=")) {
+                input.setTmpdir(arg.substring(8));
+            } else if (arg.startsWith("-nameAdjust=")) {
+                input.setNameAdjust(arg.substring(12));
+            } else if (arg.startsWith("-encoding=")) {
+                input.setEncoding(arg.substring(10));
+            } else if (arg.startsWith("-sheetType=")) {
+                input.setSheetType(arg.substring(11));
+            } else if (arg.equals("-?") || arg.equals("-help")) {
+                BlancoRestBatchProcess.usage();
+                System.exit(BlancoRestBatchProcess.END_SUCCESS);
+            } else {
+                System.out.println("BlancoRestWatchProcess: 入力パラメータ[" + arg + "]は無視されました。");
+            }
+        }
+        if (isFieldMetadirProcessed == false) {
+            System.out.println("BlancoRestWatchProcess: 処理開始失敗。入力パラメータ[input]の必須フィールド値[metadir]に値が設定されていません。");
+            System.exit(BlancoRestBatchProcess.END_ILLEGAL_ARGUMENT_EXCEPTION);
+        }
+
+        try {
+            new BlancoRestWatchProcess().watch(input);
+        } catch (IOException ex) {
+            System.out.println("BlancoRestWatchProcess: 入出力例外が発生しました。監視を終了します。:" + ex.toString());
+            System.exit(BlancoRestBatchProcess.END_IO_EXCEPTION);
+        } catch (IllegalArgumentException ex) {
+            System.out.println("BlancoRestWatchProcess: 入力例外が発生しました。監視を終了します。:" + ex.getMessage());
+            System.exit(BlancoRestBatchProcess.END_ILLEGAL_ARGUMENT_EXCEPTION);
+        } catch (InterruptedException ex) {
+            System.exit(BlancoRestBatchProcess.END_SUCCESS);
+        }
+    }
+
+    /**
+     * 一度生成を行った後、変更を監視して生成を繰り返します。
+     *
+     * 生成に失敗しても監視は継続します。スレッドが割り込まれるまで戻りません。
+     *
+     * @param input
+     *            処理の入力パラメータ。
+     * @throws IOException
+     *             監視を開始できなかった場合。
+     * @throws InterruptedException
+     *             スレッドが割り込まれた場合。
+     */
+    public void watch(final BlancoRestProcessInput input) throws IOException,
+            InterruptedException {
+        final File fileMetadir = new File(input.getMetadir());
+        if (fileMetadir.isDirectory() == false) {
+            throw new IllegalArgumentException("BlancoRestWatchProcess: メタディレクトリ["
+                    + input.getMetadir() + "]が見つかりません。");
+        }
+        final File fileObjectsdir = new File(input.getTmpdir()
+                + BlancoValueObjectConstants.TARGET_SUBDIRECTORY);
+        fileObjectsdir.mkdirs();
+
+        final WatchService watchService = FileSystems.getDefault()
+                .newWatchService();
+        try {
+            // 生成したファイルの書き込みで再び生成しないよう、生成先と /rest は監視しません。
+            register(watchService, fileMetadir);
+            register(watchService, fileObjectsdir);
+
+            generate(input);
+            System.out.println("BlancoRestWatchProcess: watching "
+                    + fileMetadir.getPath() + ", " + fileObjectsdir.getPath()
+                    + " (" + BlancoRestConstants.PRODUCT_NAME + ")");
+
+            for (;;) {
+                WatchKey key = watchService.take();
+                boolean isChanged = poll(key);
+                // 保存は複数のイベントになることが多いため、変更が落ち着くまで待ちます。
+                while ((key = watchService.poll(fQuietMillis,
+                        TimeUnit.MILLISECONDS)) != null) {
+                    isChanged |= poll(key);
+                }
+                if (isChanged) {
+                    generate(input);
+                }
+            }
+        } finally {
+            watchService.close();
+        }
+    }
+
+    /**
+     * 生成を一回行います。失敗した場合は内容を表示して戻ります。
+     *
+     * @param input
+     *            処理の入力パラメータ。
+     * @return 生成に成功した場合は true。
+     */
+    public boolean generate(final BlancoRestProcessInput input) {
+        final long start = System.nanoTime();
+        try {
+            fProcess.execute(input);
+        } catch (IllegalArgumentException ex) {
+            System.out.println("BlancoRestWatchProcess: 生成に失敗しました。:" + ex.getMessage());
+            return false;
+        } catch (RuntimeException ex) {
+            System.out.println("BlancoRestWatchProcess: 生成に失敗しました。:" + ex.toString());
+            ex.printStackTrace();
+            return false;
+        }
+        System.out.println("BlancoRestWatchProcess: generated in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return true;
+    }
+
+    /**
+     * ディレクトリを監視対象に登録します。
+     */
+    private static void register(final WatchService argWatchService,
+            final File argDirectory) throws IOException {
+        argDirectory.toPath().register(argWatchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * 監視キーのイベントを取り出し、生成に関係する変更があったかどうかを判定します。
+     *
+     * @return 定義書または中間XMLファイルの変更があった場合は true。
+     */
+    private static boolean poll(final WatchKey argKey) {
+        boolean isChanged = false;
+        for (WatchEvent<?> event : argKey.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 取りこぼしがあった場合は、念のため生成し直します。
+                isChanged = true;
+                continue;
+            }
+            final File file = ((Path) event.context()).toFile();
+            if (BlancoRestWorkbookReader.isWorkbook(file)
+                    || file.getName().endsWith(".xml")) {
+                isChanged = true;
+            }
+        }
+        if (argKey.reset() == false) {
+            throw new IllegalArgumentException("BlancoRestWatchProcess: 監視中のディレクトリ["
+                    + argKey.watchable() + "]が削除されました。");
+        }
+        return isChanged;
+    }
+}